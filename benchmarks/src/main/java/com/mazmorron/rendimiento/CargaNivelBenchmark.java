@@ -0,0 +1,76 @@
+package com.mazmorron.rendimiento;
+
+import com.mazmorron.modelo.ModeloJuego;
+import com.mazmorron.modelo.Prota;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mide la carga de mapas y enemigos desde texto en función del tamaño del
+ * mapa y del número de enemigos, tanto desde un flujo en memoria como desde
+ * un fichero proyectado.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CargaNivelBenchmark {
+
+    @Param({"64", "512", "2048"})
+    public int lado;
+
+    @Param({"10", "1000"})
+    public int enemigos;
+
+    private byte[] textoMapa;
+    private byte[] textoEnemigos;
+    private Path ficheroMapa;
+    private ModeloJuego conMapa;
+
+    @Setup(Level.Trial)
+    public void generar() throws IOException {
+        textoMapa = NivelesSinteticos.mapa(lado);
+        textoEnemigos = NivelesSinteticos.enemigos(lado, enemigos);
+        ficheroMapa = Files.createTempFile("mapa", ".txt");
+        Files.write(ficheroMapa, textoMapa);
+    }
+
+    @TearDown(Level.Trial)
+    public void borrar() throws IOException {
+        Files.deleteIfExists(ficheroMapa);
+    }
+
+    @Setup(Level.Invocation)
+    public void prepararMapa() throws IOException {
+        conMapa = new ModeloJuego();
+        conMapa.setProtagonista(new Prota("Banco", 100, 10, 10, 10));
+        conMapa.cargarMapaDesde(new ByteArrayInputStream(textoMapa));
+    }
+
+    @Benchmark
+    public ModeloJuego cargarMapaDesde() throws IOException {
+        ModeloJuego modelo = new ModeloJuego();
+        modelo.cargarMapaDesde(new ByteArrayInputStream(textoMapa));
+        return modelo;
+    }
+
+    @Benchmark
+    public ModeloJuego cargarMapaProyectado() throws IOException {
+        ModeloJuego modelo = new ModeloJuego();
+        modelo.cargarMapaDesde(ficheroMapa);
+        return modelo;
+    }
+
+    @Benchmark
+    public ModeloJuego cargarEnemigosDesde() throws IOException {
+        conMapa.cargarEnemigosDesde(new ByteArrayInputStream(textoEnemigos));
+        return conMapa;
+    }
+}
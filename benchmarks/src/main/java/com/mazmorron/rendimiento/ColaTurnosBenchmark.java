@@ -0,0 +1,65 @@
+package com.mazmorron.rendimiento;
+
+import com.mazmorron.modelo.ColaIniciativa;
+import com.mazmorron.modelo.Enemigo;
+import com.mazmorron.modelo.Personaje;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compara el coste de repartir una ronda completa de turnos con la cola de
+ * iniciativa frente a la preparación anterior, que copiaba y ordenaba la lista
+ * de personajes en una LinkedList al empezar cada ronda.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ColaTurnosBenchmark {
+
+    @Param({"100", "10000"})
+    public int actores;
+
+    private List<Personaje> personajes;
+    private ColaIniciativa cola;
+
+    @Setup(Level.Trial)
+    public void preparar() {
+        Random r = new Random(42);
+        personajes = new ArrayList<>();
+        for (int i = 0; i < actores; i++) {
+            personajes.add(new Enemigo("E" + i, 30, 5, 2, 1 + r.nextInt(20), 3));
+        }
+        cola = new ColaIniciativa();
+        for (Personaje p : personajes) {
+            cola.agregar(p);
+        }
+    }
+
+    @Benchmark
+    public void rondaColaIniciativa(Blackhole bh) {
+        for (int i = 0; i < actores; i++) {
+            bh.consume(cola.siguiente());
+        }
+    }
+
+    @Benchmark
+    public void rondaListaOrdenada(Blackhole bh) {
+        List<Personaje> all = new ArrayList<>(personajes);
+        all.sort((a, b) -> Integer.compare(b.getVelocidad(), a.getVelocidad()));
+        Queue<Personaje> colaTurnos = new LinkedList<>(all);
+        Personaje p;
+        while ((p = colaTurnos.poll()) != null) {
+            bh.consume(p);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.mazmorron.rendimiento;
+
+import com.mazmorron.modelo.EstadoJuego;
+import com.mazmorron.modelo.ModeloJuego;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mide el estado inmutable de la partida: capturarlo de un modelo y avanzar
+ * un turno completo con la transición pura desde un estado fijo, que es lo
+ * que hace cada rama de una búsqueda de anticipación. Con varios hilos
+ * ({@code -t}) todos avanzan el mismo estado sin bloquearse.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EstadoBenchmark {
+
+    @Param({"64", "512"})
+    public int lado;
+
+    @Param({"10", "1000"})
+    public int enemigos;
+
+    private ModeloJuego modelo;
+    private EstadoJuego raiz;
+
+    @Setup(Level.Trial)
+    public void preparar() throws IOException {
+        modelo = ModeloPreparado.crear(NivelesSinteticos.mapa(lado), NivelesSinteticos.enemigos(lado, enemigos));
+        raiz = EstadoJuego.de(modelo);
+    }
+
+    @Benchmark
+    public EstadoJuego capturar() {
+        return EstadoJuego.de(modelo);
+    }
+
+    @Benchmark
+    public EstadoJuego paso() {
+        // Pasillo libre junto al origen, como en TurnoBenchmark
+        return raiz.paso(0, 1);
+    }
+}
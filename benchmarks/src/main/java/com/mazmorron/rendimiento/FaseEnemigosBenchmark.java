@@ -0,0 +1,49 @@
+package com.mazmorron.rendimiento;
+
+import com.mazmorron.modelo.ModeloJuego;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mide una acción completa del protagonista, con los turnos de todos los
+ * enemigos que la siguen, resolviendo la IA uno a uno o calculando en
+ * paralelo las intenciones de cada grupo de enemigos. Las dos variantes
+ * juegan exactamente la misma partida.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FaseEnemigosBenchmark {
+
+    @Param({"512"})
+    public int lado;
+
+    @Param({"1000", "10000"})
+    public int enemigos;
+
+    @Param({"2147483647", "256"})
+    public int umbral;
+
+    private ModeloJuego modelo;
+    private int paso = 1;
+
+    @Setup(Level.Trial)
+    public void preparar() throws IOException {
+        modelo = ModeloPreparado.crear(NivelesSinteticos.mapa(lado), NivelesSinteticos.enemigos(lado, enemigos));
+        modelo.setUmbralParalelo(umbral);
+    }
+
+    @Benchmark
+    public boolean ronda() {
+        // Ida y vuelta por el pasillo libre junto al origen
+        boolean hecho = modelo.accionProtagonista(0, paso);
+        paso = -paso;
+        modelo.notificarEscuchas();
+        return hecho;
+    }
+}
@@ -0,0 +1,108 @@
+package com.mazmorron.rendimiento;
+
+import com.mazmorron.modelo.Enemigo;
+import com.mazmorron.modelo.Mapa;
+import com.mazmorron.modelo.MapaPlano;
+import com.mazmorron.modelo.Personaje;
+import com.mazmorron.modelo.TipoCelda;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compara el mapa compacto (un byte por celda y ocupantes dispersos) con la
+ * representación anterior de un objeto por celda. Ejecutado con
+ * {@code -prof gc}, los benchmarks de construcción muestran en B/op la memoria
+ * que ocupa cada representación.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MapaBenchmark {
+
+    /**
+     * Celda con tipo y ocupante como objeto independiente, igual que la
+     * representación que sustituyó a {@link Mapa}.
+     */
+    static final class CeldaObjeto {
+        final TipoCelda tipo;
+        Personaje ocupante;
+
+        CeldaObjeto(TipoCelda tipo) {
+            this.tipo = tipo;
+        }
+    }
+
+    @Param({"512", "2048"})
+    public int lado;
+
+    private TipoCelda[] tipos;
+    private Mapa mapa;
+    private CeldaObjeto[][] matriz;
+
+    @Setup(Level.Trial)
+    public void preparar() {
+        Random r = new Random(42);
+        tipos = new TipoCelda[lado * lado];
+        for (int i = 0; i < tipos.length; i++) {
+            double p = r.nextDouble();
+            tipos[i] = p < 0.10 ? TipoCelda.MURO : p < 0.12 ? TipoCelda.TRAMPA : TipoCelda.SUELO;
+        }
+        mapa = construirMapaCompacto();
+        matriz = construirMatrizObjetos();
+        for (int i = 0; i < lado; i += 7) {
+            Enemigo e = new Enemigo("E", 30, 5, 2, 1, 3);
+            mapa.setOcupante(i, i, e);
+            matriz[i][i].ocupante = e;
+        }
+    }
+
+    @Benchmark
+    public Mapa construirMapaCompacto() {
+        Mapa m = new MapaPlano(lado, lado);
+        for (int i = 0; i < lado; i++) {
+            for (int j = 0; j < lado; j++) {
+                m.setTipo(i, j, tipos[i * lado + j]);
+            }
+        }
+        return m;
+    }
+
+    @Benchmark
+    public CeldaObjeto[][] construirMatrizObjetos() {
+        CeldaObjeto[][] m = new CeldaObjeto[lado][lado];
+        for (int i = 0; i < lado; i++) {
+            for (int j = 0; j < lado; j++) {
+                m[i][j] = new CeldaObjeto(tipos[i * lado + j]);
+            }
+        }
+        return m;
+    }
+
+    @Benchmark
+    public int recorrerMapaCompacto() {
+        int muros = 0;
+        for (int i = 0; i < lado; i++) {
+            for (int j = 0; j < lado; j++) {
+                if (mapa.esMuro(i, j) || mapa.getOcupante(i, j) != null) muros++;
+            }
+        }
+        return muros;
+    }
+
+    @Benchmark
+    public int recorrerMatrizObjetos() {
+        int muros = 0;
+        for (int i = 0; i < lado; i++) {
+            for (int j = 0; j < lado; j++) {
+                CeldaObjeto c = matriz[i][j];
+                if (c.tipo == TipoCelda.MURO || c.ocupante != null) muros++;
+            }
+        }
+        return muros;
+    }
+}
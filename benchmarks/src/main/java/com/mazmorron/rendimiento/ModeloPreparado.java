@@ -0,0 +1,39 @@
+package com.mazmorron.rendimiento;
+
+import com.mazmorron.modelo.Azar;
+import com.mazmorron.modelo.ModeloJuego;
+import com.mazmorron.modelo.Prota;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+/**
+ * Construye modelos listos para jugar a partir de niveles sintéticos, con un
+ * protagonista de salud muy alta para que las mediciones no terminen la partida.
+ */
+final class ModeloPreparado {
+
+    private ModeloPreparado() {
+    }
+
+    /**
+     * Crea un modelo con el nivel cargado y el turno en manos del protagonista.
+     * @param mapa Contenido del fichero de mapa.
+     * @param enemigos Contenido del fichero de enemigos.
+     * @return Modelo preparado.
+     * @throws IOException Si el nivel está mal formado.
+     */
+    static ModeloJuego crear(byte[] mapa, byte[] enemigos) throws IOException {
+        ModeloJuego modelo = new ModeloJuego();
+        modelo.setAleatorio(new Azar(7));
+        Prota prota = new Prota("Banco", 1_000_000, 20, 10, 50);
+        prota.setPosicion(1, 1);
+        modelo.setProtagonista(prota);
+        modelo.cargarMapaDesde(new ByteArrayInputStream(mapa));
+        modelo.cargarEnemigosDesde(new ByteArrayInputStream(enemigos));
+        modelo.colocarProtagonista();
+        modelo.turnoSiguiente();
+        modelo.notificarEscuchas();
+        return modelo;
+    }
+}
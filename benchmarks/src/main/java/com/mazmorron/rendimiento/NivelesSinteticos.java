@@ -0,0 +1,75 @@
+package com.mazmorron.rendimiento;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * Genera niveles de prueba en el formato de texto del juego para los benchmarks:
+ * un mapa cuadrado con muro perimetral, muros y trampas interiores al azar y un
+ * pasillo libre junto a la posición inicial del protagonista, más un fichero
+ * de enemigos repartidos por el suelo. La semilla es fija para que todas las
+ * ejecuciones midan exactamente los mismos niveles.
+ */
+final class NivelesSinteticos {
+
+    private static final long SEMILLA = 42L;
+
+    private NivelesSinteticos() {
+    }
+
+    /**
+     * Genera el texto de un mapa.
+     * @param lado Número de filas y de columnas.
+     * @return Contenido del fichero de mapa.
+     */
+    static byte[] mapa(int lado) {
+        char[][] celdas = celdas(lado);
+        StringBuilder sb = new StringBuilder(lado * (lado + 1));
+        for (char[] fila : celdas) {
+            sb.append(fila).append('\n');
+        }
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Genera el texto de un fichero de enemigos para el mapa del mismo lado.
+     * Si no caben tantos enemigos en el suelo libre se generan los que quepan.
+     * @param lado Lado del mapa.
+     * @param cantidad Número de enemigos deseado.
+     * @return Contenido del fichero de enemigos.
+     */
+    static byte[] enemigos(int lado, int cantidad) {
+        char[][] celdas = celdas(lado);
+        Random r = new Random(SEMILLA + 1);
+        StringBuilder sb = new StringBuilder();
+        int colocados = 0;
+        for (int intentos = 0; colocados < cantidad && intentos < cantidad * 20; intentos++) {
+            int x = 1 + r.nextInt(lado - 2);
+            int y = 1 + r.nextInt(lado - 2);
+            if (celdas[x][y] != '.' || (x <= 2 && y <= 4)) continue;
+            celdas[x][y] = 'E';
+            String nombre = r.nextBoolean() ? "Zombi" : "Pambisito";
+            sb.append(nombre).append(',').append(x).append(',').append(y)
+              .append(",30,5,2,").append(1 + r.nextInt(4)).append(',').append(3 + r.nextInt(2)).append('\n');
+            colocados++;
+        }
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static char[][] celdas(int lado) {
+        Random r = new Random(SEMILLA);
+        char[][] celdas = new char[lado][lado];
+        for (int i = 0; i < lado; i++) {
+            for (int j = 0; j < lado; j++) {
+                boolean borde = i == 0 || j == 0 || i == lado - 1 || j == lado - 1;
+                double p = r.nextDouble();
+                celdas[i][j] = borde || p < 0.10 ? '#' : p < 0.12 ? '@' : '.';
+            }
+        }
+        // Pasillo libre para que el protagonista pueda moverse desde (1, 1)
+        for (int j = 1; j < Math.min(5, lado - 1); j++) {
+            celdas[1][j] = '.';
+        }
+        return celdas;
+    }
+}
@@ -0,0 +1,95 @@
+package com.mazmorron.rendimiento;
+
+import com.mazmorron.controlador.AtlasSprites;
+import com.mazmorron.controlador.RenderizadorCuadricula;
+import com.mazmorron.controlador.RenderizadorMapa;
+import com.mazmorron.modelo.CambiosModelo;
+import com.mazmorron.modelo.Mapa;
+import com.mazmorron.modelo.ModeloJuego;
+import javafx.application.Platform;
+import javafx.scene.layout.GridPane;
+import javafx.scene.paint.Color;
+import javafx.scene.shape.Rectangle;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mide el dibujado del mapa que hace {@code ControladorApp.dibujarMapa} sobre el
+ * toolkit de JavaFX sin pantalla (Monocle): el redibujado completo, la
+ * actualización tras un turno y, como referencia, la reconstrucción de toda la
+ * cuadrícula en cada turno que se hacía antes. Se mide con colores planos y
+ * con los rellenos de sprites del atlas. Los nodos no están en ninguna
+ * escena visible, por lo que pueden crearse fuera del hilo de JavaFX.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Dglass.platform=Monocle", "-Dmonocle.platform=Headless", "-Dprism.order=sw"})
+public class RenderizadoBenchmark {
+
+    @Param({"16", "64", "128"})
+    public int lado;
+
+    @Param({"10", "100"})
+    public int enemigos;
+
+    @Param({"false", "true"})
+    public boolean sprites;
+
+    private ModeloJuego modelo;
+    private RenderizadorMapa renderizador;
+    private CambiosModelo cambiosTurno;
+    private GridPane cuadriculaReferencia;
+
+    @Setup(Level.Trial)
+    public void preparar() throws InterruptedException, IOException {
+        CountDownLatch listo = new CountDownLatch(1);
+        try {
+            Platform.startup(listo::countDown);
+        } catch (IllegalStateException yaIniciado) {
+            listo.countDown();
+        }
+        listo.await();
+
+        modelo = ModeloPreparado.crear(NivelesSinteticos.mapa(lado), NivelesSinteticos.enemigos(lado, enemigos));
+        renderizador = new RenderizadorCuadricula(sprites ? AtlasSprites.porDefecto() : null);
+        renderizador.dibujar(modelo);
+        cuadriculaReferencia = new GridPane();
+
+        // Captura los cambios de un turno real para repetir su actualización
+        modelo.agregarEscucha(cambios -> cambiosTurno = cambios);
+        modelo.accionProtagonista(0, 1);
+    }
+
+    @Benchmark
+    public RenderizadorMapa dibujarMapaCompleto() {
+        renderizador.dibujar(modelo);
+        return renderizador;
+    }
+
+    @Benchmark
+    public RenderizadorMapa actualizarTrasTurno() {
+        renderizador.actualizar(modelo, cambiosTurno);
+        return renderizador;
+    }
+
+    @Benchmark
+    public GridPane reconstruirCuadricula() {
+        cuadriculaReferencia.getChildren().clear();
+        Mapa mapa = modelo.getMapa();
+        for (int i = 0; i < mapa.getFilas(); i++) {
+            for (int j = 0; j < mapa.getColumnas(); j++) {
+                Rectangle celda = new Rectangle(40, 40);
+                celda.setStroke(Color.BLACK);
+                celda.setFill(mapa.esMuro(i, j) ? Color.DARKGRAY : Color.BEIGE);
+                cuadriculaReferencia.add(celda, j, i);
+            }
+        }
+        return cuadriculaReferencia;
+    }
+}
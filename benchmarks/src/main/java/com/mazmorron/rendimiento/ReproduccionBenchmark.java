@@ -0,0 +1,73 @@
+package com.mazmorron.rendimiento;
+
+import com.mazmorron.modelo.ModeloJuego;
+import com.mazmorron.modelo.RegistroPartida;
+import com.mazmorron.simulacion.ReproductorPartida;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mide la reproducción sin interfaz de un registro de partida completo, con
+ * verificación de los puntos de control. Por defecto graba una partida
+ * aleatoria sobre un nivel sintético; con {@code -p registro=ruta} reproduce
+ * un registro real, por ejemplo el de una partida que se quiere vigilar.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReproduccionBenchmark {
+
+    /** Acciones de la partida sintética. */
+    private static final int ACCIONES = 2_000;
+
+    @Param({""})
+    public String registro;
+
+    @Param({"64"})
+    public int lado;
+
+    @Param({"100"})
+    public int enemigos;
+
+    private byte[] datos;
+
+    @Setup(Level.Trial)
+    public void preparar() throws IOException {
+        if (!registro.isEmpty()) {
+            datos = Files.readAllBytes(Paths.get(registro));
+            return;
+        }
+        ModeloJuego modelo = ModeloPreparado.crear(NivelesSinteticos.mapa(lado), NivelesSinteticos.enemigos(lado, enemigos));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (RegistroPartida grabacion = new RegistroPartida(bytes, 200)) {
+            grabacion.empezarNivel(modelo, 0);
+            Random aleatorio = new Random(42);
+            for (int i = 0; i < ACCIONES && !modelo.isTerminado(); i++) {
+                int[] d = RegistroPartida.DIRECCIONES[aleatorio.nextInt(RegistroPartida.DIRECCIONES.length)];
+                grabacion.anotar(d[0], d[1]);
+                modelo.accionProtagonista(d[0], d[1]);
+            }
+        }
+        datos = bytes.toByteArray();
+    }
+
+    @Benchmark
+    public ModeloJuego reproducir() throws IOException {
+        ReproductorPartida reproductor = new ReproductorPartida(-1);
+        reproductor.reproducir(new ByteArrayInputStream(datos));
+        if (reproductor.getDivergencias() > 0) {
+            throw new IllegalStateException("La reproducción se desvió del registro.");
+        }
+        return reproductor.getModelo();
+    }
+}
@@ -0,0 +1,56 @@
+package com.mazmorron.rendimiento;
+
+import com.mazmorron.modelo.Enemigo;
+import com.mazmorron.modelo.ModeloJuego;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mide las acciones de un turno sobre un nivel ya cargado: el movimiento del
+ * protagonista (incluida la visión) y la acción de un enemigo (campo de flujo,
+ * persecución o paseo aleatorio).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TurnoBenchmark {
+
+    @Param({"64", "512", "2048"})
+    public int lado;
+
+    @Param({"10", "1000", "10000"})
+    public int enemigos;
+
+    private ModeloJuego modelo;
+    private Enemigo[] listaEnemigos;
+    private int siguienteEnemigo;
+    private int paso = 1;
+
+    @Setup(Level.Trial)
+    public void preparar() throws IOException {
+        modelo = ModeloPreparado.crear(NivelesSinteticos.mapa(lado), NivelesSinteticos.enemigos(lado, enemigos));
+        listaEnemigos = modelo.getEnemigos().toArray(new Enemigo[0]);
+    }
+
+    @Benchmark
+    public boolean moverProtagonista() {
+        // Ida y vuelta por el pasillo libre junto al origen
+        boolean movido = modelo.moverProtagonista(0, paso);
+        paso = -paso;
+        modelo.notificarEscuchas();
+        return movido;
+    }
+
+    @Benchmark
+    public ModeloJuego accionEnemigo() {
+        Enemigo e = listaEnemigos[siguienteEnemigo++ % listaEnemigos.length];
+        modelo.accionEnemigoParaBenchmark(e);
+        modelo.notificarEscuchas();
+        return modelo;
+    }
+}
@@ -1,21 +1,39 @@
 package com.mazmorron;
 
+import com.mazmorron.controlador.BucleJuego;
 import com.mazmorron.controlador.ControladorApp;
 import com.mazmorron.controlador.ControladorInicio;
+import com.mazmorron.modelo.Azar;
+import com.mazmorron.modelo.CacheNiveles;
+import com.mazmorron.modelo.GeneradorMazmorra;
+import com.mazmorron.modelo.LectorNivel;
+import com.mazmorron.modelo.MapaPlano;
 import com.mazmorron.modelo.ModeloJuego;
+import com.mazmorron.modelo.MundoTroceado;
+import com.mazmorron.modelo.PlantillaNivel;
 import com.mazmorron.modelo.Prota;
-import com.mazmorron.modelo.Celda;
+import com.mazmorron.modelo.RegistroPartida;
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
+import javafx.scene.control.Alert;
+import javafx.scene.input.KeyCode;
 import javafx.stage.Stage;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.InputStream;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.Files;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * Clase principal de la aplicación JavaFX.
@@ -25,9 +43,46 @@ import java.nio.file.Files;
  */
 public class AppJuego extends Application {
 
+    /**
+     * Vista y modelo de un nivel listos para mostrarse. La escena no se crea
+     * hasta mostrarlo, porque JavaFX exige construirla en su hilo.
+     */
+    private static final class NivelPreparado {
+        final int nivel;
+        final Parent raiz;
+        final ControladorApp controlador;
+        final ModeloJuego modelo;
+
+        NivelPreparado(int nivel, Parent raiz, ControladorApp controlador, ModeloJuego modelo) {
+            this.nivel = nivel;
+            this.raiz = raiz;
+            this.controlador = controlador;
+            this.modelo = modelo;
+        }
+    }
+
     private Stage escenario;
     private ModeloJuego modelo;
     private ControladorApp controlador;
+    private final CacheNiveles cacheNiveles = new CacheNiveles();
+    private final GestorPartidas gestorPartidas = GestorPartidas.porDefecto();
+    private final long semilla = Long.getLong("mazmorron.semilla", System.nanoTime());
+    private final GeneradorMazmorra generador = new GeneradorMazmorra(semilla);
+    private final ExecutorService precarga = Executors.newSingleThreadExecutor(r -> {
+        Thread hilo = new Thread(r, "precarga-niveles");
+        hilo.setDaemon(true);
+        return hilo;
+    });
+    private CompletableFuture<NivelPreparado> siguienteNivel;
+    private RegistroPartida registro;
+    /**
+     * Bucle que resuelve los turnos de los enemigos y anima la vista;
+     * {@code -Dmazmorron.tics} fija las rondas de enemigos por segundo y
+     * {@code -Dmazmorron.turnosRapidos} resuelve cada ronda sin esperar al tic.
+     */
+    private final BucleJuego bucle = new BucleJuego(
+        Double.parseDouble(System.getProperty("mazmorron.tics", "10")),
+        Boolean.getBoolean("mazmorron.turnosRapidos"));
 
     private int nivelActual = 0;
     private final String[] mapas = {
@@ -48,6 +103,13 @@ public class AppJuego extends Application {
     @Override
     public void start(Stage primaryStage) {
         this.escenario = primaryStage;
+        System.out.println("Semilla de la partida: " + semilla);
+        registro = abrirRegistro();
+        bucle.iniciar();
+        // Sin foco no llegan las teclas soltadas: se dejan de repetir los movimientos
+        escenario.focusedProperty().addListener((obs, antes, enFoco) -> {
+            if (!enFoco && controlador != null) controlador.soltarTeclas();
+        });
         mostrarPantallaInicio();
     }
 
@@ -63,8 +125,14 @@ public class AppJuego extends Application {
             Stage inicio = new Stage();
             inicio.setTitle("Mazmorron – Inicio");
             inicio.setScene(new Scene(root));
+            Optional<Path> guardada = gestorPartidas.masReciente();
+            ctrl.setPartidaGuardada(guardada.isPresent());
             inicio.showAndWait();
 
+            if (ctrl.isContinuar()) {
+                continuarPartida(guardada.get());
+                return;
+            }
             if (!ctrl.isDatosConfirmados()) {
                 System.exit(0);
             }
@@ -84,6 +152,28 @@ public class AppJuego extends Application {
         }
     }
 
+    /**
+     * Abre el registro de entradas de esta sesión, por defecto en el directorio
+     * de partidas; {@code -Dmazmorron.registro} cambia el fichero o, con
+     * {@code no}, lo desactiva, y {@code -Dmazmorron.registro.control} fija las
+     * acciones entre puntos de control.
+     * @return Registro abierto, o null si está desactivado o no se pudo crear.
+     */
+    private RegistroPartida abrirRegistro() {
+        String ruta = System.getProperty("mazmorron.registro");
+        if ("no".equals(ruta)) return null;
+        Path destino = ruta != null ? Paths.get(ruta) : gestorPartidas.getRegistro();
+        try {
+            Path padre = destino.toAbsolutePath().getParent();
+            if (padre != null) Files.createDirectories(padre);
+            return new RegistroPartida(new BufferedOutputStream(Files.newOutputStream(destino)),
+                Integer.getInteger("mazmorron.registro.control", 200));
+        } catch (IOException e) {
+            System.err.println("No se pudo crear el registro " + destino + ": " + e.getMessage());
+            return null;
+        }
+    }
+
     /**
      * Intenta abrir un recurso dado su ruta, buscando en classpath o en disco.
      * @param ruta Ruta del recurso.
@@ -108,58 +198,311 @@ public class AppJuego extends Application {
     }
 
     /**
-     * Configura la escena de juego para el nivel actual, carga mapa y enemigos,
-     * inicializa modelo y controlador y muestra la ventana.
+     * Obtiene la plantilla de un nivel desde la caché. La primera vez la
+     * genera si se ha pedido con {@code -Dmazmorron.generar=ANCHOxALTO} y, si
+     * no, la lee del nivel compilado o de los ficheros de texto.
+     * @param nivel Índice del nivel.
+     * @return Plantilla del nivel.
+     * @throws IOException Si no se puede leer el nivel o está mal formado.
+     */
+    private PlantillaNivel plantillaNivel(int nivel) throws IOException {
+        String generar = System.getProperty("mazmorron.generar");
+        if (generar != null) {
+            String[] medidas = generar.toLowerCase().split("x");
+            int columnas = Integer.parseInt(medidas[0].trim());
+            int filas = Integer.parseInt(medidas[1].trim());
+            return cacheNiveles.obtener("generado:" + nivel, () -> generador.generar(filas, columnas, nivel + 1));
+        }
+        return cacheNiveles.obtener(mapas[nivel], () -> {
+            try (InputStream in = getClass().getResourceAsStream(CompiladorNiveles.rutaCompilada(mapas[nivel]))) {
+                if (in != null) {
+                    return PlantillaNivel.leer(new BufferedInputStream(in));
+                }
+            }
+            try (LectorNivel mapa = LectorNivel.de(abrirRecurso(mapas[nivel]), mapas[nivel]);
+                 LectorNivel enem = LectorNivel.de(abrirRecurso(enemigos[nivel]), enemigos[nivel])) {
+                return PlantillaNivel.desdeTexto(mapa, enem);
+            }
+        });
+    }
+
+    /**
+     * Crea un mundo troceado a partir de {@code -Dmazmorron.mundo=ANCHOxALTO},
+     * medido en trozos. {@code -Dmazmorron.mundo.trozos} fija los trozos en
+     * memoria y {@code -Dmazmorron.mundo.desalojo=descartar} descarta los
+     * desalojados en lugar de guardarlos en un directorio temporal.
+     * @param medidas Ancho y alto en trozos.
+     * @param nivel Índice del nivel, para variar la semilla.
+     * @return Mundo sin trozos cargados.
+     * @throws IOException Si no se puede crear el directorio de desalojo.
+     */
+    private MundoTroceado crearMundo(String medidas, int nivel) throws IOException {
+        String[] partes = medidas.toLowerCase().split("x");
+        int ancho = Integer.parseInt(partes[0].trim());
+        int alto = Integer.parseInt(partes[1].trim());
+        int trozos = Integer.getInteger("mazmorron.mundo.trozos", 4 * MundoTroceado.MIN_TROZOS);
+        Path directorio = "descartar".equals(System.getProperty("mazmorron.mundo.desalojo"))
+            ? null : Files.createTempDirectory("mazmorron-mundo");
+        MundoTroceado mundo = new MundoTroceado(alto, ancho, semilla + nivel, trozos, directorio);
+        if (directorio != null) {
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                mundo.borrarDesalojados();
+                try {
+                    Files.deleteIfExists(directorio);
+                } catch (IOException e) {
+                    System.err.println("No se pudo borrar " + directorio + ": " + e.getMessage());
+                }
+            }));
+        }
+        return mundo;
+    }
+
+    /**
+     * Prepara en segundo plano lo que un nivel necesita antes de mostrarse:
+     * un modelo con la plantilla del nivel ya clonada y los nodos de la vista
+     * cargados desde FXML con su controlador. Los nodos aún no pertenecen a
+     * ninguna escena, así que pueden crearse fuera del hilo de JavaFX; la
+     * escena se crea al mostrar el nivel.
+     * @param nivel Índice del nivel.
+     * @return Nivel preparado, cuando termine.
+     */
+    private CompletableFuture<NivelPreparado> preparar(int nivel) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                ModeloJuego m = new ModeloJuego();
+                m.setAleatorio(new Azar(semilla + nivel));
+                String mundo = System.getProperty("mazmorron.mundo");
+                if (mundo != null) {
+                    m.cargarMundo(crearMundo(mundo, nivel));
+                } else {
+                    m.cargarPlantilla(plantillaNivel(nivel));
+                }
+                return prepararVista(nivel, m);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, precarga);
+    }
+
+    /**
+     * Carga los nodos y el controlador de la vista principal para un modelo
+     * ya listo, sin crear todavía su escena.
+     * @param nivel Índice del nivel.
+     * @param m Modelo del nivel.
+     * @return Nivel preparado.
+     * @throws IOException Si no se puede cargar la vista.
+     */
+    private NivelPreparado prepararVista(int nivel, ModeloJuego m) throws IOException {
+        FXMLLoader loader = new FXMLLoader(getClass().getResource("/vista/VistaPrincipal.fxml"));
+        Parent root = loader.load();
+        return new NivelPreparado(nivel, root, loader.getController(), m);
+    }
+
+    /**
+     * Obtiene el nivel actual ya preparado. Si la precarga no lo tenía o
+     * falló, lo prepara de nuevo y espera a que termine.
+     * @return Nivel preparado.
+     */
+    private NivelPreparado nivelActualPreparado() {
+        CompletableFuture<NivelPreparado> pendiente = siguienteNivel;
+        siguienteNivel = null;
+        if (pendiente != null) {
+            try {
+                NivelPreparado preparado = pendiente.join();
+                if (preparado.nivel == nivelActual) {
+                    return preparado;
+                }
+            } catch (CompletionException e) {
+                System.err.println("Falló la precarga del nivel, se reintenta: " + e.getCause());
+            }
+        }
+        return preparar(nivelActual).join();
+    }
+
+    /**
+     * Muestra el nivel actual, tomando la vista y el modelo preparados en
+     * segundo plano, y empieza a preparar el siguiente mientras se juega.
      * @param protagonista Instancia del personaje principal.
      */
     private void lanzarJuego(Prota protagonista) {
         try {
-            FXMLLoader loader = new FXMLLoader(getClass().getResource("/vista/VistaPrincipal.fxml"));
-            Parent root = loader.load();
-            controlador = loader.getController();
+            NivelPreparado preparado = nivelActualPreparado();
+            preparado.modelo.setProtagonista(protagonista);
+            mostrar(preparado, true);
+        } catch (RuntimeException e) {
+            abortar("No se pudo cargar el nivel " + (nivelActual + 1), causa(e));
+        }
+    }
+
+    /**
+     * @param e Error de una tarea en segundo plano.
+     * @return Error original, sin el envoltorio de {@link CompletionException}.
+     */
+    private static Throwable causa(Throwable e) {
+        return e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+    }
 
-            modelo = new ModeloJuego();
-            modelo.setProtagonista(protagonista);
+    /**
+     * Informa de un error que impide seguir jugando, por la salida de error
+     * y en un diálogo, y cierra la aplicación. Un nivel mal formado llega con
+     * el fichero, la línea y la columna en el mensaje.
+     * @param titulo Qué se estaba haciendo.
+     * @param causa Error ocurrido.
+     */
+    private void abortar(String titulo, Throwable causa) {
+        String mensaje = causa.getMessage() != null ? causa.getMessage() : causa.toString();
+        System.err.println(titulo + ": " + mensaje);
+        Alert alerta = new Alert(Alert.AlertType.ERROR);
+        alerta.setTitle("Mazmorron");
+        alerta.setHeaderText(titulo);
+        alerta.setContentText(mensaje);
+        alerta.showAndWait();
+        System.exit(1);
+    }
 
-            modelo.setAccionFin(() -> {
-                boolean victoria = modelo.getProtagonista().getSalud() > 0;
-                if (victoria && ++nivelActual < mapas.length) {
-                    lanzarJuego(protagonista);
-                } else {
-                    System.out.println(victoria
-                        ? "¡Has completado todos los niveles!"
-                        : "Has sido derrotado.");
-                    System.exit(0);
+    /**
+     * Lee una partida guardada y prepara su vista, en segundo plano.
+     * @param ruta Fichero de partida.
+     * @return Partida preparada, cuando termine.
+     */
+    private CompletableFuture<NivelPreparado> prepararPartida(Path ruta) {
+        return gestorPartidas.cargar(ruta)
+            .thenApplyAsync(partida -> {
+                try {
+                    return prepararVista(partida.getNivel(), partida.getModelo());
+                } catch (IOException e) {
+                    throw new CompletionException(e);
                 }
-            });
+            }, precarga);
+    }
 
-            InputStream mapaStream = abrirRecurso(mapas[nivelActual]);
-            modelo.cargarMapaDesde(mapaStream);
+    /**
+     * Continúa la partida guardada desde la pantalla de inicio. Como al
+     * lanzar un nivel, espera a que esté preparada: la pantalla de inicio ya
+     * se ha cerrado y sin ninguna ventana abierta JavaFX podría terminar
+     * antes de mostrarla.
+     * @param ruta Fichero de partida.
+     */
+    private void continuarPartida(Path ruta) {
+        try {
+            mostrarPartida(prepararPartida(ruta).join());
+        } catch (RuntimeException e) {
+            abortar("No se pudo cargar la partida", causa(e));
+        }
+    }
 
-            InputStream enemStream = abrirRecurso(enemigos[nivelActual]);
-            modelo.cargarEnemigosDesde(enemStream);
+    /**
+     * Lee una partida guardada en segundo plano mientras se sigue jugando y
+     * la muestra al terminar.
+     * @param ruta Fichero de partida.
+     */
+    private void cargarPartida(Path ruta) {
+        prepararPartida(ruta).whenComplete((preparado, error) -> Platform.runLater(() -> {
+            if (error != null) {
+                abortar("No se pudo cargar la partida", causa(error));
+                return;
+            }
+            mostrarPartida(preparado);
+        }));
+    }
 
-            Celda[][] m = modelo.getMapa();
-            m[protagonista.getX()][protagonista.getY()].setOcupante(protagonista);
-            modelo.notificarEscuchas();
+    /**
+     * Muestra una partida restaurada en lugar del nivel en curso.
+     * @param preparado Partida preparada.
+     */
+    private void mostrarPartida(NivelPreparado preparado) {
+        nivelActual = preparado.nivel;
+        siguienteNivel = null;
+        mostrar(preparado, false);
+    }
 
-            controlador.setModelo(modelo);
-            controlador.inicializarJuego();
-            modelo.turnoSiguiente();
+    /**
+     * Conecta un nivel preparado con su controlador, lo muestra en la ventana
+     * y empieza a preparar el siguiente.
+     * @param preparado Nivel a mostrar.
+     * @param colocar True si hay que colocar al protagonista en la salida; una partida
+     *                restaurada ya lo tiene en su sitio.
+     */
+    private void mostrar(NivelPreparado preparado, boolean colocar) {
+        // Antes de inicializar el controlador, que pide el foco para el mapa
+        Scene escena = new Scene(preparado.raiz);
+        controlador = preparado.controlador;
+        modelo = preparado.modelo;
+        bucle.vaciar();
+        modelo.setPlanificador(bucle);
 
-            Scene escena = new Scene(root);
-            escena.setOnKeyPressed(controlador::alPresionarTecla);
-            escenario.setTitle("Mazmorron – Nivel " + (nivelActual + 1));
-            escenario.setScene(escena);
-            escenario.setMaximized(true);
-            escenario.centerOnScreen();
-            escenario.show();
+        modelo.setAccionFin(() -> {
+            Prota protagonista = modelo.getProtagonista();
+            boolean victoria = protagonista.getSalud() > 0;
+            if (victoria && ++nivelActual < mapas.length) {
+                lanzarJuego(protagonista);
+            } else {
+                System.out.println(victoria
+                    ? "¡Has completado todos los niveles!"
+                    : "Has sido derrotado.");
+                System.exit(0);
+            }
+        });
+        ModeloJuego actual = modelo;
+        modelo.agregarEscucha(cambios -> {
+            if (actual == modelo && puedeGuardarse()) gestorPartidas.autoguardar(actual, nivelActual);
+        });
 
-        } catch (Exception e) {
-            e.printStackTrace();
+        if (colocar) modelo.colocarProtagonistaEnSalida();
+        modelo.notificarEscuchas();
+
+        // Rebobinar, registrar y guardar necesitan el mapa entero, no uno troceado
+        boolean plano = modelo.getMapa() instanceof MapaPlano;
+        if (plano) modelo.activarHistorial(Integer.getInteger("mazmorron.historial", 10_000));
+        boolean registrable = registro != null && plano;
+        if (registrable) registro.empezarNivel(modelo, nivelActual);
+        controlador.setRegistro(registrable ? registro : null);
+        controlador.setModelo(modelo);
+        controlador.setBucle(bucle);
+        controlador.inicializarJuego();
+
+        escena.setOnKeyPressed(evento -> {
+            if (evento.getCode() == KeyCode.F5) {
+                guardarRapido();
+            } else if (evento.getCode() == KeyCode.F9) {
+                gestorPartidas.masReciente().ifPresent(this::cargarPartida);
+            } else if (evento.getCode() == KeyCode.F4) {
+                bucle.setTurnosRapidos(!bucle.isTurnosRapidos());
+            } else {
+                controlador.alPresionarTecla(evento);
+            }
+        });
+        escena.setOnKeyReleased(controlador::alSoltarTecla);
+        escenario.setTitle("Mazmorron – Nivel " + (nivelActual + 1));
+        escenario.setScene(escena);
+        escenario.setMaximized(true);
+        escenario.centerOnScreen();
+        escenario.show();
+
+        if (nivelActual + 1 < mapas.length) {
+            siguienteNivel = preparar(nivelActual + 1);
         }
     }
 
+    /** @return True si la partida en curso está en un punto en que se puede guardar. */
+    private boolean puedeGuardarse() {
+        return !modelo.isTerminado()
+            && modelo.getPersonajeActual() == modelo.getProtagonista()
+            && modelo.getMapa() instanceof MapaPlano;
+    }
+
+    /**
+     * Guarda la partida en el fichero de guardado rápido si es el turno del protagonista.
+     */
+    private void guardarRapido() {
+        if (!puedeGuardarse()) return;
+        gestorPartidas.guardar(modelo, nivelActual, gestorPartidas.getRapida())
+            .whenComplete((ruta, error) -> {
+                if (error != null) System.err.println("No se pudo guardar la partida: " + error.getCause());
+                else System.out.println("Partida guardada en " + ruta);
+            });
+    }
+
     /**
      * Punto de entrada de la aplicación.
      * @param args Argumentos de línea de comandos.
@@ -0,0 +1,99 @@
+package com.mazmorron;
+
+import com.mazmorron.modelo.LectorNivel;
+import com.mazmorron.modelo.PlantillaNivel;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Compila niveles de texto al formato binario de {@link PlantillaNivel}.
+ *
+ * <p>Sin argumentos, o con un directorio de recursos, compila cada
+ * {@code mapas/nivelN.txt} junto a su {@code enemigos/enemigosN.txt} en
+ * {@code niveles/nivelN.mzn}, que el juego usa en lugar del texto cuando está
+ * en el classpath. Con un segundo directorio, los compilados se escriben ahí
+ * en lugar de junto a los recursos; así lo invoca la compilación de Maven
+ * sobre {@code target/classes}, para que el juego empaquetado nunca lleve un
+ * compilado más antiguo que su texto. Con tres argumentos compila un único
+ * nivel: {@code mapa.txt enemigos.txt salida.mzn}.</p>
+ */
+public class CompiladorNiveles {
+
+    /** Directorio, relativo a los recursos, de los niveles compilados. */
+    public static final String DIRECTORIO_COMPILADOS = "niveles";
+
+    /**
+     * Obtiene la ruta del nivel compilado que corresponde a un mapa de texto.
+     * @param rutaMapa Ruta del mapa, por ejemplo {@code /mapas/nivel1.txt}.
+     * @return Ruta del compilado, por ejemplo {@code /niveles/nivel1.mzn}.
+     */
+    public static String rutaCompilada(String rutaMapa) {
+        String nombre = rutaMapa.substring(rutaMapa.lastIndexOf('/') + 1);
+        int punto = nombre.lastIndexOf('.');
+        return "/" + DIRECTORIO_COMPILADOS + "/" + (punto > 0 ? nombre.substring(0, punto) : nombre)
+            + PlantillaNivel.EXTENSION;
+    }
+
+    /**
+     * Compila un nivel.
+     * @param mapa Fichero de mapa.
+     * @param enemigos Fichero de enemigos.
+     * @param salida Fichero binario de salida.
+     * @return Plantilla compilada.
+     * @throws IOException Si algún fichero no se puede leer o está mal formado.
+     */
+    public static PlantillaNivel compilar(Path mapa, Path enemigos, Path salida) throws IOException {
+        PlantillaNivel plantilla;
+        try (LectorNivel m = LectorNivel.abrir(mapa); LectorNivel e = LectorNivel.abrir(enemigos)) {
+            plantilla = PlantillaNivel.desdeTexto(m, e);
+        }
+        if (salida.getParent() != null) Files.createDirectories(salida.getParent());
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(salida))) {
+            plantilla.escribir(out);
+        }
+        return plantilla;
+    }
+
+    /**
+     * Punto de entrada del compilador.
+     * @param args Directorio de recursos y, opcionalmente, de salida; o mapa, enemigos y salida.
+     * @throws IOException Si falla la compilación de algún nivel.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length == 3) {
+            informar(Paths.get(args[2]), compilar(Paths.get(args[0]), Paths.get(args[1]), Paths.get(args[2])));
+            return;
+        }
+        Path recursos = Paths.get(args.length > 0 ? args[0] : "src/main/resources");
+        Path destino = args.length > 1 ? Paths.get(args[1]) : recursos;
+        try (DirectoryStream<Path> mapas = Files.newDirectoryStream(recursos.resolve("mapas"), "nivel*.txt")) {
+            for (Path mapa : mapas) {
+                String n = mapa.getFileName().toString().replaceAll("\\D", "");
+                Path enemigos = recursos.resolve("enemigos").resolve("enemigos" + n + ".txt");
+                if (!Files.exists(enemigos)) {
+                    System.err.println("Sin enemigos para " + mapa + ", se omite.");
+                    continue;
+                }
+                Path salida = destino.resolve(rutaCompilada(mapa.getFileName().toString()).substring(1));
+                informar(salida, compilar(mapa, enemigos, salida));
+            }
+        }
+    }
+
+    /**
+     * Muestra el resultado de compilar un nivel.
+     * @param salida Fichero escrito.
+     * @param plantilla Plantilla compilada.
+     * @throws IOException Si no se puede consultar el tamaño del fichero.
+     */
+    private static void informar(Path salida, PlantillaNivel plantilla) throws IOException {
+        System.out.printf("%s: %dx%d, %d enemigos, %d bytes%n", salida, plantilla.getFilas(),
+            plantilla.getColumnas(), plantilla.getNumeroEnemigos(), Files.size(salida));
+    }
+}
@@ -0,0 +1,148 @@
+package com.mazmorron;
+
+import com.mazmorron.modelo.ModeloJuego;
+import com.mazmorron.modelo.SerializadorPartida;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+/**
+ * Gestiona los ficheros de partida: guardado rápido, autoguardado y carga.
+ * El estado se serializa en memoria en el hilo que llama, que es el único que
+ * modifica el modelo y tarda milisegundos; la escritura en disco y la lectura
+ * se hacen en un hilo propio, de modo que nunca bloquean la interfaz.
+ */
+public class GestorPartidas {
+
+    /** Tiempo mínimo entre dos autoguardados. */
+    private static final long PAUSA_AUTOGUARDADO_NS = 10_000_000_000L;
+
+    private final Path directorio;
+    private final ExecutorService disco = Executors.newSingleThreadExecutor(r -> {
+        Thread hilo = new Thread(r, "partidas");
+        hilo.setDaemon(true);
+        return hilo;
+    });
+    private final AtomicBoolean autoguardando = new AtomicBoolean();
+    private long ultimoAutoguardado = Long.MIN_VALUE;
+
+    /**
+     * Crea el gestor sobre un directorio de partidas.
+     * @param directorio Directorio donde se guardan las partidas; se crea si no existe.
+     */
+    public GestorPartidas(Path directorio) {
+        this.directorio = directorio;
+    }
+
+    /** @return Gestor sobre {@code ~/.mazmorron}. */
+    public static GestorPartidas porDefecto() {
+        return new GestorPartidas(Paths.get(System.getProperty("user.home"), ".mazmorron"));
+    }
+
+    /** @return Fichero del guardado rápido. */
+    public Path getRapida() {
+        return directorio.resolve("rapida.sav");
+    }
+
+    /** @return Fichero del autoguardado. */
+    public Path getAutomatica() {
+        return directorio.resolve("auto.sav");
+    }
+
+    /** @return Fichero del registro de entradas de la última sesión. */
+    public Path getRegistro() {
+        return directorio.resolve("ultima.mzr");
+    }
+
+    /** @return La partida guardada más reciente, si hay alguna. */
+    public Optional<Path> masReciente() {
+        return Stream.of(getRapida(), getAutomatica())
+            .filter(Files::isRegularFile)
+            .max((a, b) -> {
+                try {
+                    return Files.getLastModifiedTime(a).compareTo(Files.getLastModifiedTime(b));
+                } catch (IOException e) {
+                    return 0;
+                }
+            });
+    }
+
+    /**
+     * Guarda la partida. La serialización ocurre ahora; la escritura, en
+     * segundo plano y de forma atómica, de modo que un fallo a mitad nunca
+     * deja una partida corrupta.
+     * @param modelo Modelo en el turno del protagonista.
+     * @param nivel Índice del nivel de la aplicación.
+     * @param destino Fichero de partida.
+     * @return Futuro que termina cuando la partida está en disco.
+     * @throws IllegalStateException Si el modelo no se puede guardar ahora.
+     */
+    public CompletableFuture<Path> guardar(ModeloJuego modelo, int nivel, Path destino) {
+        byte[] datos = serializar(modelo, nivel);
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                Files.createDirectories(directorio);
+                Path temporal = Files.createTempFile(directorio, "partida", ".tmp");
+                Files.write(temporal, datos);
+                return Files.move(temporal, destino, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, disco);
+    }
+
+    /**
+     * Autoguarda si ha pasado suficiente tiempo desde el último autoguardado
+     * y no hay otro escribiéndose.
+     * @param modelo Modelo en el turno del protagonista.
+     * @param nivel Índice del nivel de la aplicación.
+     */
+    public void autoguardar(ModeloJuego modelo, int nivel) {
+        long ahora = System.nanoTime();
+        if (ultimoAutoguardado != Long.MIN_VALUE && ahora - ultimoAutoguardado < PAUSA_AUTOGUARDADO_NS) return;
+        if (!autoguardando.compareAndSet(false, true)) return;
+        ultimoAutoguardado = ahora;
+        guardar(modelo, nivel, getAutomatica()).whenComplete((ruta, error) -> {
+            autoguardando.set(false);
+            if (error != null) System.err.println("Falló el autoguardado: " + error.getCause());
+        });
+    }
+
+    /**
+     * Lee una partida en segundo plano.
+     * @param origen Fichero de partida.
+     * @return Futuro con la partida restaurada.
+     */
+    public CompletableFuture<SerializadorPartida.Partida> cargar(Path origen) {
+        return CompletableFuture.supplyAsync(() -> {
+            try (InputStream in = new BufferedInputStream(Files.newInputStream(origen))) {
+                return SerializadorPartida.leer(in);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, disco);
+    }
+
+    private static byte[] serializar(ModeloJuego modelo, int nivel) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(1 << 16);
+        try {
+            SerializadorPartida.escribir(modelo, nivel, bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+}
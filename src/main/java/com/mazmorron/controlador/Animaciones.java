@@ -0,0 +1,161 @@
+package com.mazmorron.controlador;
+
+import com.mazmorron.modelo.CambiosModelo;
+import com.mazmorron.modelo.EventoModelo;
+import com.mazmorron.modelo.Personaje;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Movimientos de personajes en curso en la vista. El modelo cambia de celda a
+ * un personaje de golpe; aquí se recuerda de dónde venía para que los
+ * renderizadores lo dibujen desplazándose entre las dos celdas durante una
+ * duración fija. Todos los movimientos avanzan a la vez, así que una ronda
+ * entera de enemigos resuelta en un fotograma se ve como un único paso.
+ */
+public class Animaciones {
+
+    /**
+     * Desplazamiento de un personaje hacia una celda.
+     */
+    public static final class Movimiento {
+        private final Personaje personaje;
+        private final double desdeX;
+        private final double desdeY;
+        private final int haciaX;
+        private final int haciaY;
+        private final long inicio;
+
+        private Movimiento(Personaje personaje, double desdeX, double desdeY, int haciaX, int haciaY, long inicio) {
+            this.personaje = personaje;
+            this.desdeX = desdeX;
+            this.desdeY = desdeY;
+            this.haciaX = haciaX;
+            this.haciaY = haciaY;
+            this.inicio = inicio;
+        }
+
+        /** @return Personaje que se mueve. */
+        public Personaje getPersonaje() { return personaje; }
+
+        /** @return Fila de la que sale, redondeada a la celda más cercana. */
+        public int getFilaOrigen() { return (int) Math.round(desdeX); }
+
+        /** @return Columna de la que sale, redondeada a la celda más cercana. */
+        public int getColumnaOrigen() { return (int) Math.round(desdeY); }
+
+        /** @return Fila de destino. */
+        public int getFilaDestino() { return haciaX; }
+
+        /** @return Columna de destino. */
+        public int getColumnaDestino() { return haciaY; }
+    }
+
+    private final Map<Personaje, Movimiento> enCurso = new IdentityHashMap<>();
+    private final long duracion;
+
+    /**
+     * Crea el registro de animaciones.
+     * @param duracion Duración de cada movimiento en nanosegundos; 0 para
+     *                 que los personajes salten de celda sin animación.
+     */
+    public Animaciones(long duracion) {
+        this.duracion = duracion;
+    }
+
+    /**
+     * Empieza las animaciones de los movimientos de un lote de cambios. Si un
+     * personaje ya se estaba moviendo, el nuevo movimiento sale de donde se
+     * le ve ahora. Una muerte o la salida del nivel termina su animación y una carga de nivel las
+     * termina todas.
+     * @param cambios Lote de cambios del modelo.
+     * @param ahora Instante actual, en nanosegundos de {@link System#nanoTime()}.
+     */
+    public void anotar(CambiosModelo cambios, long ahora) {
+        if (cambios.contiene(EventoModelo.TipoEvento.NIVEL_CARGADO)) {
+            enCurso.clear();
+            return;
+        }
+        if (duracion <= 0) return;
+        for (EventoModelo e : cambios.getEventos()) {
+            Personaje p = e.getPersonaje();
+            if (e.getTipo() == EventoModelo.TipoEvento.PERSONAJE_MUERTO
+                || e.getTipo() == EventoModelo.TipoEvento.PERSONAJE_RETIRADO) {
+                enCurso.remove(p);
+            } else if (e.getTipo() == EventoModelo.TipoEvento.OCUPANTE_MOVIDO) {
+                Movimiento previo = enCurso.get(p);
+                double desdeX = previo == null ? e.getXOrigen() : fila(previo, ahora);
+                double desdeY = previo == null ? e.getYOrigen() : columna(previo, ahora);
+                enCurso.put(p, new Movimiento(p, desdeX, desdeY, e.getX(), e.getY(), ahora));
+            }
+        }
+    }
+
+    /** @return True si algún personaje se está moviendo. */
+    public boolean isActiva() {
+        return !enCurso.isEmpty();
+    }
+
+    /**
+     * @param p Personaje.
+     * @return True si se está moviendo, en cuyo caso su celda de destino se
+     *         dibuja sin él y él aparte.
+     */
+    public boolean seMueve(Personaje p) {
+        return !enCurso.isEmpty() && enCurso.containsKey(p);
+    }
+
+    /** @return Movimientos en curso. */
+    public Collection<Movimiento> getMovimientos() {
+        return enCurso.values();
+    }
+
+    /**
+     * Quita los movimientos que ya han llegado a su destino.
+     * @param ahora Instante actual.
+     * @return Movimientos terminados, para repintar sus celdas.
+     */
+    public List<Movimiento> terminar(long ahora) {
+        if (enCurso.isEmpty()) return List.of();
+        List<Movimiento> terminados = new ArrayList<>();
+        for (Iterator<Movimiento> it = enCurso.values().iterator(); it.hasNext(); ) {
+            Movimiento m = it.next();
+            if (ahora - m.inicio >= duracion) {
+                terminados.add(m);
+                it.remove();
+            }
+        }
+        return terminados;
+    }
+
+    /**
+     * @param m Movimiento.
+     * @param ahora Instante actual.
+     * @return Fila, con decimales, en que se ve al personaje.
+     */
+    public double fila(Movimiento m, long ahora) {
+        return m.desdeX + (m.haciaX - m.desdeX) * progreso(m, ahora);
+    }
+
+    /**
+     * @param m Movimiento.
+     * @param ahora Instante actual.
+     * @return Columna, con decimales, en que se ve al personaje.
+     */
+    public double columna(Movimiento m, long ahora) {
+        return m.desdeY + (m.haciaY - m.desdeY) * progreso(m, ahora);
+    }
+
+    /**
+     * Fracción recorrida, suavizada al arrancar y al llegar.
+     */
+    private double progreso(Movimiento m, long ahora) {
+        double t = Math.min(1.0, Math.max(0.0, (ahora - m.inicio) / (double) duracion));
+        return t * t * (3 - 2 * t);
+    }
+}
@@ -0,0 +1,215 @@
+package com.mazmorron.controlador;
+
+import com.mazmorron.modelo.Personaje;
+import com.mazmorron.modelo.Prota;
+import com.mazmorron.modelo.TipoCelda;
+import javafx.scene.image.Image;
+import javafx.scene.image.PixelReader;
+import javafx.scene.image.PixelWriter;
+import javafx.scene.image.WritableImage;
+import javafx.scene.paint.ImagePattern;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Sprites del mapa, leídos una sola vez de una única imagen con todos ellos
+ * y un índice de texto con una línea {@code nombre,x,y,ancho,alto} por
+ * sprite. Hay sprites para el suelo, el muro, la trampa, el protagonista y
+ * cada nombre de enemigo, con {@code enemigo} para los que no tienen uno
+ * propio. Junto a la imagen se guarda una copia oscurecida igual que los
+ * colores de la niebla de guerra, y cada sprite guarda los patrones de
+ * relleno de sus dos versiones para no crearlos en cada dibujado.
+ */
+public final class AtlasSprites {
+
+    /** Ruta de la imagen del atlas en los recursos. */
+    public static final String RUTA_IMAGEN = "/sprites/atlas.png";
+    /** Ruta del índice del atlas en los recursos. */
+    public static final String RUTA_INDICE = "/sprites/atlas.txt";
+
+    /** Factor de brillo de la niebla: el de dos {@code Color.darker()} seguidos. */
+    private static final double BRILLO_NIEBLA = 0.7 * 0.7;
+
+    private static AtlasSprites porDefecto;
+    private static boolean intentado;
+
+    /**
+     * Región del atlas con un sprite.
+     */
+    public static final class Sprite {
+        private final int x;
+        private final int y;
+        private final int ancho;
+        private final int alto;
+        private final ImagePattern patron;
+        private final ImagePattern patronNiebla;
+
+        private Sprite(int x, int y, int ancho, int alto, Image imagen, Image niebla) {
+            this.x = x;
+            this.y = y;
+            this.ancho = ancho;
+            this.alto = alto;
+            this.patron = new ImagePattern(new WritableImage(imagen.getPixelReader(), x, y, ancho, alto));
+            this.patronNiebla = new ImagePattern(new WritableImage(niebla.getPixelReader(), x, y, ancho, alto));
+        }
+
+        /** @return Columna de píxeles del atlas donde empieza. */
+        public int getX() { return x; }
+
+        /** @return Fila de píxeles del atlas donde empieza. */
+        public int getY() { return y; }
+
+        /** @return Ancho en píxeles. */
+        public int getAncho() { return ancho; }
+
+        /** @return Alto en píxeles. */
+        public int getAlto() { return alto; }
+
+        /** @return Relleno con el sprite, para una forma del tamaño de una celda. */
+        public ImagePattern getPatron() { return patron; }
+
+        /** @return Relleno con el sprite oscurecido por la niebla. */
+        public ImagePattern getPatronNiebla() { return patronNiebla; }
+    }
+
+    private final Image imagen;
+    private final Image imagenNiebla;
+    private final Map<String, Sprite> sprites = new HashMap<>();
+    private final Sprite suelo;
+    private final Sprite muro;
+    private final Sprite trampa;
+    private final Sprite prota;
+    private final Sprite enemigo;
+
+    /**
+     * Lee un atlas.
+     * @param imagen Flujo con la imagen.
+     * @param indice Flujo con el índice.
+     * @throws IOException Si no se puede leer, el índice está mal formado o
+     *                     le falta alguno de los sprites obligatorios.
+     */
+    public AtlasSprites(InputStream imagen, InputStream indice) throws IOException {
+        this.imagen = new Image(imagen);
+        if (this.imagen.isError()) throw new IOException("No se pudo decodificar la imagen del atlas.");
+        this.imagenNiebla = oscurecer(this.imagen);
+        leerIndice(indice);
+        this.suelo = obligatorio("suelo");
+        this.muro = obligatorio("muro");
+        this.trampa = obligatorio("trampa");
+        this.prota = obligatorio("prota");
+        this.enemigo = obligatorio("enemigo");
+    }
+
+    /**
+     * Obtiene el atlas de los recursos del juego, leyéndolo la primera vez.
+     * Con {@code -Dmazmorron.sprites=no} el mapa se dibuja con colores planos.
+     * @return Atlas, o null si está desactivado o no se pudo leer.
+     */
+    public static synchronized AtlasSprites porDefecto() {
+        if (intentado) return porDefecto;
+        intentado = true;
+        if ("no".equals(System.getProperty("mazmorron.sprites"))) return null;
+        try (InputStream imagen = AtlasSprites.class.getResourceAsStream(RUTA_IMAGEN);
+             InputStream indice = AtlasSprites.class.getResourceAsStream(RUTA_INDICE)) {
+            if (imagen == null || indice == null) throw new IOException("No se encontró " + RUTA_IMAGEN + " o " + RUTA_INDICE);
+            porDefecto = new AtlasSprites(imagen, indice);
+        } catch (IOException e) {
+            System.err.println("Se dibuja el mapa sin sprites: " + e.getMessage());
+        }
+        return porDefecto;
+    }
+
+    /**
+     * @param niebla True para la versión oscurecida por la niebla.
+     * @return Imagen completa del atlas.
+     */
+    public Image getImagen(boolean niebla) {
+        return niebla ? imagenNiebla : imagen;
+    }
+
+    /**
+     * @param tipo Tipo de celda.
+     * @return Sprite de su terreno.
+     */
+    public Sprite terreno(TipoCelda tipo) {
+        return switch (tipo) {
+            case MURO -> muro;
+            case TRAMPA -> trampa;
+            default -> suelo;
+        };
+    }
+
+    /**
+     * @param p Personaje.
+     * @return Sprite del protagonista, el del nombre del enemigo o el genérico de enemigo.
+     */
+    public Sprite personaje(Personaje p) {
+        if (p instanceof Prota) return prota;
+        return sprites.getOrDefault(p.getNombre(), enemigo);
+    }
+
+    /**
+     * Lee el índice del atlas.
+     * @param indice Flujo con el índice.
+     * @throws IOException Si una línea está mal formada o se sale de la imagen.
+     */
+    private void leerIndice(InputStream indice) throws IOException {
+        BufferedReader lector = new BufferedReader(new InputStreamReader(indice, StandardCharsets.UTF_8));
+        String linea;
+        int numero = 0;
+        while ((linea = lector.readLine()) != null) {
+            numero++;
+            if (linea.isBlank()) continue;
+            String[] campos = linea.split(",");
+            if (campos.length != 5) throw new IOException("Línea " + numero + " del índice: se esperaban 5 campos.");
+            try {
+                int x = Integer.parseInt(campos[1].trim());
+                int y = Integer.parseInt(campos[2].trim());
+                int ancho = Integer.parseInt(campos[3].trim());
+                int alto = Integer.parseInt(campos[4].trim());
+                if (x < 0 || y < 0 || ancho <= 0 || alto <= 0
+                    || x + ancho > imagen.getWidth() || y + alto > imagen.getHeight()) {
+                    throw new IOException("Línea " + numero + " del índice: región fuera de la imagen.");
+                }
+                sprites.put(campos[0].trim(), new Sprite(x, y, ancho, alto, imagen, imagenNiebla));
+            } catch (NumberFormatException e) {
+                throw new IOException("Línea " + numero + " del índice: " + e.getMessage());
+            }
+        }
+    }
+
+    private Sprite obligatorio(String nombre) throws IOException {
+        Sprite s = sprites.get(nombre);
+        if (s == null) throw new IOException("Falta el sprite " + nombre + " en el índice.");
+        return s;
+    }
+
+    /**
+     * Copia una imagen multiplicando el brillo de cada píxel por el de la niebla.
+     * @param original Imagen original.
+     * @return Copia oscurecida.
+     */
+    private static Image oscurecer(Image original) {
+        int ancho = (int) original.getWidth();
+        int alto = (int) original.getHeight();
+        PixelReader lector = original.getPixelReader();
+        WritableImage copia = new WritableImage(ancho, alto);
+        PixelWriter escritor = copia.getPixelWriter();
+        for (int y = 0; y < alto; y++) {
+            for (int x = 0; x < ancho; x++) {
+                int argb = lector.getArgb(x, y);
+                int r = (int) (((argb >> 16) & 0xff) * BRILLO_NIEBLA);
+                int g = (int) (((argb >> 8) & 0xff) * BRILLO_NIEBLA);
+                int b = (int) ((argb & 0xff) * BRILLO_NIEBLA);
+                escritor.setArgb(x, y, (argb & 0xff000000) | (r << 16) | (g << 8) | b);
+            }
+        }
+        return copia;
+    }
+}
@@ -0,0 +1,130 @@
+package com.mazmorron.controlador;
+
+import com.mazmorron.modelo.PlanificadorTurnos;
+import javafx.animation.AnimationTimer;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.function.LongConsumer;
+
+/**
+ * Bucle de juego de la interfaz gráfica, movido por un único
+ * {@link AnimationTimer} en el hilo de JavaFX. La lógica avanza a paso fijo,
+ * sea cual sea la frecuencia de pantalla: cada tic resuelve la ronda de
+ * enemigos pendiente, todos los turnos seguidos hasta el del protagonista,
+ * y después cada fotograma se entrega a la vista para que anime los
+ * movimientos en curso. Así los enemigos de una ronda se mueven a la vez en
+ * lugar de uno tras otro. Con los turnos rápidos activados, la ronda se
+ * resuelve en el primer fotograma sin esperar al tic.
+ */
+public class BucleJuego implements PlanificadorTurnos {
+
+    /** Turnos como máximo por fotograma, para no congelar la ventana. */
+    private static final int MAX_TURNOS_FOTOGRAMA = 100_000;
+    /** Duración máxima de la animación de un movimiento. */
+    private static final long MAX_ANIMACION_NS = 150_000_000L;
+
+    private final Deque<Runnable> pendientes = new ArrayDeque<>();
+    private final long periodo;
+    private final AnimationTimer temporizador;
+    private boolean turnosRapidos;
+    private long anterior;
+    private long acumulado;
+    private LongConsumer alFotograma;
+
+    /**
+     * Crea el bucle, parado.
+     * @param ticsPorSegundo Rondas de enemigos que se resuelven por segundo.
+     * @param turnosRapidos True para resolver cada ronda de enemigos sin esperar al tic.
+     */
+    public BucleJuego(double ticsPorSegundo, boolean turnosRapidos) {
+        if (!(ticsPorSegundo > 0)) throw new IllegalArgumentException("Tics por segundo no válidos: " + ticsPorSegundo);
+        this.periodo = (long) (1e9 / ticsPorSegundo);
+        this.turnosRapidos = turnosRapidos;
+        this.temporizador = new AnimationTimer() {
+            @Override
+            public void handle(long ahora) {
+                alPulsar(ahora);
+            }
+        };
+    }
+
+    /** Arranca el bucle. */
+    public void iniciar() {
+        anterior = 0;
+        temporizador.start();
+    }
+
+    /** Para el bucle; los turnos pendientes esperan a que vuelva a arrancar. */
+    public void detener() {
+        temporizador.stop();
+    }
+
+    /**
+     * Descarta los turnos pendientes, por ejemplo al cambiar de nivel o cargar
+     * una partida, para que no se ejecuten sobre un modelo que ya no se muestra.
+     */
+    public void vaciar() {
+        pendientes.clear();
+        acumulado = 0;
+    }
+
+    /**
+     * Establece quién recibe cada fotograma, después de avanzar la lógica.
+     * @param alFotograma Receptor del instante del fotograma, en nanosegundos.
+     */
+    public void setAlFotograma(LongConsumer alFotograma) {
+        this.alFotograma = alFotograma;
+    }
+
+    /** @return True si cada ronda de enemigos se resuelve sin esperar al tic. */
+    public boolean isTurnosRapidos() {
+        return turnosRapidos;
+    }
+
+    /**
+     * Activa o desactiva los turnos rápidos de los enemigos.
+     * @param turnosRapidos True para resolver cada ronda sin esperar al tic.
+     */
+    public void setTurnosRapidos(boolean turnosRapidos) {
+        this.turnosRapidos = turnosRapidos;
+    }
+
+    /**
+     * @return Duración de la animación de los movimientos de una ronda: un
+     *         tic, sin pasar de 150 ms.
+     */
+    public long getDuracionMovimiento() {
+        return Math.min(periodo, MAX_ANIMACION_NS);
+    }
+
+    @Override
+    public void programar(Runnable turno) {
+        pendientes.add(turno);
+    }
+
+    /**
+     * Avanza la lógica lo que corresponda al tiempo transcurrido y entrega el fotograma.
+     * @param ahora Instante del fotograma.
+     */
+    private void alPulsar(long ahora) {
+        long delta = anterior == 0 ? 0 : ahora - anterior;
+        anterior = ahora;
+
+        if (pendientes.isEmpty()) {
+            // Sin turnos que resolver no se acumula tiempo: la ronda siguiente espera un tic entero
+            acumulado = 0;
+        } else {
+            acumulado += delta;
+            if (turnosRapidos || acumulado >= periodo) {
+                // Cada turno programa el siguiente: se sigue hasta el del protagonista
+                for (int n = 0; n < MAX_TURNOS_FOTOGRAMA && !pendientes.isEmpty(); n++) {
+                    pendientes.poll().run();
+                }
+                acumulado = 0;
+            }
+        }
+
+        if (alFotograma != null) alFotograma.accept(ahora);
+    }
+}
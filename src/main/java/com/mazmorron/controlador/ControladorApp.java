@@ -3,14 +3,19 @@ package com.mazmorron.controlador;
 import javafx.fxml.FXML;
 import javafx.scene.control.Label;
 import javafx.scene.control.ListView;
+import javafx.scene.input.KeyCode;
 import javafx.scene.input.KeyEvent;
-import javafx.scene.layout.GridPane;
-import javafx.scene.shape.Rectangle;
-import javafx.scene.paint.Color;
+import javafx.scene.layout.StackPane;
+import com.mazmorron.diagnostico.EventoDibujado;
 import com.mazmorron.modelo.*;
 
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Map;
 
 /**
  * Controlador principal de la aplicación de juego de mazmorras.
@@ -19,12 +24,37 @@ import java.util.ArrayList;
  */
 public class ControladorApp implements ModeloJuego.EscuchaModelo {
 
-    @FXML private GridPane panelCuadricula;
+    /** Número de celdas a partir del cual el mapa se dibuja sobre un lienzo. */
+    private static final int MAX_CELDAS_CUADRICULA = 2500;
+    /** Movimientos que se guardan como máximo mientras no es el turno del protagonista. */
+    private static final int MAX_ENTRADAS = 4;
+    /** Tiempo que hay que mantener una tecla antes de que el movimiento se repita. */
+    private static final long RETARDO_REPETICION_NS = 250_000_000L;
+
+    @FXML private StackPane panelMapa;
     @FXML private Label lblSalud, lblAtaque, lblDefensa, lblVelocidad;
     @FXML private Label lblTurnoActual;
     @FXML private ListView<String> lvOrdenTurnos;
+    @FXML private Label lblMetricas;
 
     private ModeloJuego modelo;
+    private RenderizadorMapa renderizador;
+    private RegistroPartida registro;
+    private MonitorRendimiento monitor;
+    private BucleJuego bucle;
+    private Animaciones animaciones = new Animaciones(0);
+
+    // Movimientos pulsados que esperan al turno del protagonista y tecla de
+    // movimiento mantenida, cuya repetición se genera aquí y no en el sistema
+    private final Deque<int[]> entradas = new ArrayDeque<>();
+    private final long intervaloRepeticion = Long.getLong("mazmorron.repeticion", 120) * 1_000_000L;
+    private KeyCode teclaMantenida;
+    private long proximaRepeticion;
+
+    // Personajes en el mismo orden que las entradas de lvOrdenTurnos y
+    // posición de cada uno, para no recorrer la lista en cada evento
+    private final List<Personaje> ordenMostrado = new ArrayList<>();
+    private final Map<Personaje, Integer> posicionMostrada = new IdentityHashMap<>();
 
     /**
      * Asocia el modelo de juego al controlador y registra este controlador como escucha.
@@ -35,61 +65,113 @@ public class ControladorApp implements ModeloJuego.EscuchaModelo {
         modelo.agregarEscucha(this);
     }
 
+    /**
+     * Establece el registro donde anotar cada acción del jugador antes de aplicarla.
+     * @param registro Registro de la partida, o null para no registrar.
+     */
+    public void setRegistro(RegistroPartida registro) {
+        this.registro = registro;
+    }
+
+    /**
+     * Establece el bucle que resuelve los turnos de los enemigos y hace que
+     * entregue sus fotogramas a este controlador para animar el mapa.
+     * @param bucle Bucle de juego.
+     */
+    public void setBucle(BucleJuego bucle) {
+        this.bucle = bucle;
+        bucle.setAlFotograma(this::alFotograma);
+    }
+
+    /**
+     * En cada fotograma del bucle atiende la entrada pendiente si ya le toca
+     * al protagonista y avanza las animaciones del mapa.
+     * @param ahora Instante del fotograma.
+     */
+    private void alFotograma(long ahora) {
+        if (modelo != null) atenderEntradas(ahora);
+        if (renderizador != null) renderizador.animar(modelo, ahora);
+    }
+
     /**
      * Inicializa la vista del juego: dibuja el mapa, las estadísticas y el orden de turnos,
      * asegura el foco en el tablero y arranca la secuencia de turnos.
      */
     public void inicializarJuego() {
+        renderizador = crearRenderizador(modelo.getMapa());
+        animaciones = new Animaciones(bucle == null ? 0 : bucle.getDuracionMovimiento());
+        renderizador.setAnimaciones(animaciones);
+        panelMapa.getChildren().setAll(renderizador.getNodo());
+        if (monitor == null && lblMetricas != null) monitor = new MonitorRendimiento(lblMetricas);
+        if (monitor != null) monitor.setObjetivo(modelo, renderizador.getNodo());
+
         dibujarMapa();
         actualizarEstadisticas();
         actualizarOrdenTurnos();
 
-        // Mantener foco en el panel de cuadrícula
-        panelCuadricula.requestFocus();
-        panelCuadricula.focusedProperty().addListener((obs, oldV, newV) -> {
-            if (!newV) panelCuadricula.requestFocus();
+        // Mantener foco en el panel del mapa
+        panelMapa.requestFocus();
+        panelMapa.focusedProperty().addListener((obs, oldV, newV) -> {
+            if (!newV) panelMapa.requestFocus();
         });
 
-        // Arranca la secuencia de turnos para el protagonista
-        modelo.turnoSiguiente();
+        // Arranca la secuencia de turnos, salvo en una partida restaurada,
+        // que ya espera la entrada del protagonista
+        if (modelo.getPersonajeActual() == null) {
+            modelo.turnoSiguiente();
+        }
     }
 
     /**
-     * Dibuja el mapa de juego en la cuadrícula, colorea muros, suelo,
-     * protagonista y enemigos, y actualiza la etiqueta del turno actual.
+     * Dibuja el mapa de juego con el renderizador activo y actualiza
+     * la etiqueta del turno actual.
      */
     public void dibujarMapa() {
-        panelCuadricula.getChildren().clear();
-        Celda[][] mapa = modelo.getMapa();
-        for (int i = 0; i < mapa.length; i++) {
-            for (int j = 0; j < mapa[i].length; j++) {
-                Rectangle celda = new Rectangle(40, 40);
-                celda.setStroke(Color.BLACK);
-
-                if (mapa[i][j].esMuro()) {
-                    celda.setFill(Color.DARKGRAY);
-                } else if (mapa[i][j].getTipo() == Celda.TipoCelda.TRAMPA){
-                    celda.setFill(Color.YELLOW);
-                } else {
-                    celda.setFill(Color.BEIGE);
-                }
-
-                Personaje ocupante = mapa[i][j].getOcupante();
-                if (ocupante instanceof Prota) {
-                    celda.setFill(Color.BLUE);
-                } else if (ocupante instanceof Enemigo) {
-                    celda.setFill(Color.RED);
-                }
-
-                panelCuadricula.add(celda, j, i);
-            }
-        }
+        EventoDibujado evento = new EventoDibujado();
+        evento.begin();
+        long inicio = System.nanoTime();
+        renderizador.dibujar(modelo);
+        terminarDibujado(evento, inicio, true, 0);
 
         if (lblTurnoActual != null) {
             lblTurnoActual.setText("Turno: " + modelo.getTurnoActual());
         }
     }
 
+    /**
+     * Anota en la capa de métricas y en JFR un dibujado del mapa.
+     * @param evento Evento empezado antes de dibujar.
+     * @param inicio Instante de inicio, de {@link System#nanoTime()}.
+     * @param completo True si se ha redibujado todo el mapa.
+     * @param eventos Eventos del lote de cambios dibujado, o 0 si es completo.
+     */
+    private void terminarDibujado(EventoDibujado evento, long inicio, boolean completo, int eventos) {
+        if (monitor != null) monitor.anotarDibujado(System.nanoTime() - inicio);
+        evento.end();
+        if (!evento.shouldCommit()) return;
+        evento.renderizador = renderizador.getClass().getSimpleName();
+        evento.completo = completo;
+        evento.eventos = eventos;
+        evento.commit();
+    }
+
+    /**
+     * Elige el renderizador del mapa. Se puede forzar con la propiedad del sistema
+     * {@code mazmorron.render} ("cuadricula" o "lienzo"); si no, los mapas grandes
+     * se dibujan sobre un lienzo con recorte a la ventana visible.
+     * @param mapa Mapa del nivel.
+     * @return Renderizador a utilizar.
+     */
+    private static RenderizadorMapa crearRenderizador(Mapa mapa) {
+        String modo = System.getProperty("mazmorron.render", "");
+        boolean lienzo = switch (modo) {
+            case "lienzo" -> true;
+            case "cuadricula" -> false;
+            default -> (long) mapa.getFilas() * mapa.getColumnas() > MAX_CELDAS_CUADRICULA;
+        };
+        return lienzo ? new RenderizadorLienzo() : new RenderizadorCuadricula();
+    }
+
     /**
      * Actualiza las etiquetas de estadísticas con los valores actuales del protagonista.
      */
@@ -101,6 +183,13 @@ public class ControladorApp implements ModeloJuego.EscuchaModelo {
         lblVelocidad.setText("Velocidad: " + p.getVelocidad());
     }
 
+    /**
+     * Actualiza la etiqueta de salud del protagonista.
+     */
+    private void actualizarSalud() {
+        lblSalud.setText("Salud: " + modelo.getProtagonista().getSalud());
+    }
+
     /**
      * Actualiza la lista que muestra el orden de turnos según la velocidad de cada personaje.
      */
@@ -110,52 +199,233 @@ public class ControladorApp implements ModeloJuego.EscuchaModelo {
         todos.addAll(modelo.getEnemigos());
 
         todos.sort((a, b) -> Integer.compare(b.getVelocidad(), a.getVelocidad()));
+        ordenMostrado.clear();
+        ordenMostrado.addAll(todos);
+        posicionMostrada.clear();
+        for (int i = 0; i < todos.size(); i++) {
+            posicionMostrada.put(todos.get(i), i);
+        }
         lvOrdenTurnos.getItems().clear();
 
         for (Personaje p : todos) {
-            String texto = p.getNombre();
-            if (p instanceof Enemigo) {
-                texto += " - Salud: " + p.getSalud();
-            } else {
-                texto += " (Tú)";
+            lvOrdenTurnos.getItems().add(textoOrdenTurnos(p));
+        }
+    }
+
+    /**
+     * Actualiza solo las entradas de la lista de turnos afectadas por un lote de cambios:
+     * reescribe las de los personajes cuya salud cambió y quita las de los
+     * muertos y los que salen del nivel. Si entra alguno o cambia alguna
+     * velocidad se rehace entera, porque el orden es el de las velocidades.
+     * Los demás eventos, como los movimientos, no tocan la lista.
+     * @param cambios Lote de cambios del modelo.
+     */
+    private void actualizarEntradasTurnos(CambiosModelo cambios) {
+        if (cambios.contiene(EventoModelo.TipoEvento.PERSONAJE_AGREGADO)
+            || cambios.contiene(EventoModelo.TipoEvento.VELOCIDAD_CAMBIADA)) {
+            actualizarOrdenTurnos();
+            return;
+        }
+        int primeraQuitada = Integer.MAX_VALUE;
+        for (EventoModelo e : cambios.getEventos()) {
+            EventoModelo.TipoEvento tipo = e.getTipo();
+            boolean sale = tipo == EventoModelo.TipoEvento.PERSONAJE_MUERTO || tipo == EventoModelo.TipoEvento.PERSONAJE_RETIRADO;
+            if (tipo != EventoModelo.TipoEvento.SALUD_CAMBIADA && !sale) continue;
+            Integer i = posicionMostrada.get(e.getPersonaje());
+            if (i == null) continue;
+            if (sale && e.getPersonaje() instanceof Enemigo) {
+                // Se marca y se quita al final, para desplazar las posiciones una sola vez por lote
+                posicionMostrada.remove(e.getPersonaje());
+                ordenMostrado.set(i, null);
+                primeraQuitada = Math.min(primeraQuitada, i);
+            } else if (tipo == EventoModelo.TipoEvento.SALUD_CAMBIADA) {
+                lvOrdenTurnos.getItems().set(i, textoOrdenTurnos(e.getPersonaje()));
             }
-            texto += " - Velocidad: " + p.getVelocidad();
-            lvOrdenTurnos.getItems().add(texto);
         }
+        if (primeraQuitada == Integer.MAX_VALUE) return;
+
+        // Compacta el tramo desde la primera muerte, conservando los textos de los vivos
+        List<String> textos = lvOrdenTurnos.getItems();
+        List<String> restantes = new ArrayList<>();
+        int destino = primeraQuitada;
+        for (int i = primeraQuitada; i < ordenMostrado.size(); i++) {
+            Personaje p = ordenMostrado.get(i);
+            if (p == null) continue;
+            restantes.add(textos.get(i));
+            ordenMostrado.set(destino, p);
+            posicionMostrada.put(p, destino);
+            destino++;
+        }
+        ordenMostrado.subList(destino, ordenMostrado.size()).clear();
+        textos.subList(primeraQuitada, textos.size()).clear();
+        textos.addAll(restantes);
+    }
+
+    /**
+     * Construye el texto de un personaje en la lista de turnos.
+     * @param p Personaje a describir.
+     * @return Texto de la entrada.
+     */
+    private static String textoOrdenTurnos(Personaje p) {
+        String texto = p.getNombre();
+        if (p instanceof Enemigo) {
+            texto += " - Salud: " + p.getSalud();
+        } else {
+            texto += " (Tú)";
+        }
+        return texto + " - Velocidad: " + p.getVelocidad();
     }
 
     /**
-     * Maneja los eventos de teclado para mover al protagonista.
+     * Maneja los eventos de teclado. Los movimientos se guardan, hasta
+     * {@value #MAX_ENTRADAS}, y se juegan en cuanto le toca al protagonista,
+     * así que no se pierden los pulsados durante los turnos de los enemigos.
+     * Mantener una tecla de movimiento la repite cada
+     * {@code -Dmazmorron.repeticion} milisegundos (120 por defecto; 0 deja la
+     * repetición del sistema, sin guardarla). Retroceso o Z rebobina el último
+     * turno del protagonista y descarta lo guardado. F3 muestra u oculta la
+     * capa de métricas en cualquier momento.
      * @param evento Evento de tecla presionada.
      */
     @FXML
     public void alPresionarTecla(KeyEvent evento) {
-        if (!(modelo.getPersonajeActual() instanceof Prota)) {
+        KeyCode tecla = evento.getCode();
+        if (tecla == KeyCode.F3) {
+            if (monitor != null) monitor.alternar();
+            return;
+        }
+        if (tecla == KeyCode.BACK_SPACE || tecla == KeyCode.Z) {
+            entradas.clear();
+            if (turnoDelProtagonista() && modelo.rebobinar() && registro != null) {
+                try {
+                    registro.anotarRebobinado();
+                } catch (IOException e) {
+                    dejarDeRegistrar(e);
+                }
+            }
+            return;
+        }
+
+        int[] paso = pasoDe(tecla);
+        if (paso == null) return;
+        if (tecla == teclaMantenida) {
+            // Repetición del sistema: sin repetición propia se atiende solo si
+            // no hay nada que esperar, como si no hubiera cola
+            if (intervaloRepeticion <= 0 && turnoDelProtagonista() && entradas.isEmpty()) aplicarPaso(paso);
             return;
         }
+        long ahora = System.nanoTime();
+        teclaMantenida = tecla;
+        proximaRepeticion = ahora + RETARDO_REPETICION_NS;
+        if (entradas.size() < MAX_ENTRADAS) entradas.add(paso);
+        atenderEntradas(ahora);
+    }
+
+    /**
+     * Deja de repetir el movimiento de una tecla al soltarla.
+     * @param evento Evento de tecla soltada.
+     */
+    @FXML
+    public void alSoltarTecla(KeyEvent evento) {
+        if (evento.getCode() == teclaMantenida) teclaMantenida = null;
+    }
+
+    /**
+     * Olvida la tecla mantenida, por ejemplo cuando la ventana pierde el foco
+     * y ya no llegará el aviso de soltarla.
+     */
+    public void soltarTeclas() {
+        teclaMantenida = null;
+    }
+
+    /**
+     * Si es el turno del protagonista, juega el siguiente movimiento guardado
+     * o, si no queda ninguno, la repetición de la tecla mantenida cuando toca.
+     * @param ahora Instante actual, de {@link System#nanoTime()}.
+     */
+    private void atenderEntradas(long ahora) {
+        if (!turnoDelProtagonista()) return;
+        int[] paso = entradas.poll();
+        if (paso == null && teclaMantenida != null && intervaloRepeticion > 0 && ahora >= proximaRepeticion) {
+            paso = pasoDe(teclaMantenida);
+            proximaRepeticion = ahora + intervaloRepeticion;
+        }
+        if (paso != null) aplicarPaso(paso);
+    }
+
+    /** @return True si el modelo espera la entrada del protagonista. */
+    private boolean turnoDelProtagonista() {
+        return modelo.getPersonajeActual() instanceof Prota && !modelo.isTerminado();
+    }
 
-        boolean seMovio = switch (evento.getCode()) {
-            case W, UP    -> modelo.moverProtagonista(-1, 0);
-            case S, DOWN  -> modelo.moverProtagonista(1, 0);
-            case A, LEFT  -> modelo.moverProtagonista(0, -1);
-            case D, RIGHT -> modelo.moverProtagonista(0, 1);
-            default        -> false;
+    /**
+     * @param tecla Tecla pulsada.
+     * @return Desplazamiento {dx, dy} de la tecla, o null si no es de movimiento.
+     */
+    private static int[] pasoDe(KeyCode tecla) {
+        return switch (tecla) {
+            case W, UP    -> new int[]{-1, 0};
+            case S, DOWN  -> new int[]{1, 0};
+            case A, LEFT  -> new int[]{0, -1};
+            case D, RIGHT -> new int[]{0, 1};
+            default        -> null;
         };
+    }
 
-        if (seMovio) {
-            modelo.verificarFin();
-            modelo.notificarEscuchas();
-            modelo.turnoSiguiente();
+    /**
+     * Anota un movimiento en el registro y lo aplica al protagonista.
+     * @param paso Desplazamiento {dx, dy}.
+     */
+    private void aplicarPaso(int[] paso) {
+        if (registro != null) {
+            try {
+                registro.anotar(paso[0], paso[1]);
+            } catch (IOException e) {
+                dejarDeRegistrar(e);
+            }
         }
+        modelo.accionProtagonista(paso[0], paso[1]);
+    }
+
+    /**
+     * Deja de registrar la partida tras un fallo de escritura, sin interrumpir el juego.
+     * @param e Error de escritura.
+     */
+    private void dejarDeRegistrar(IOException e) {
+        System.err.println("Se deja de registrar la partida: " + e.getMessage());
+        registro = null;
     }
 
     /**
-     * Actualiza la vista cuando el modelo notifica un cambio.
+     * Actualiza la vista cuando el modelo notifica un lote de cambios. Tras cargar
+     * un nivel se redibuja todo; en un turno normal solo se repintan las celdas
+     * afectadas, la salud del protagonista y las entradas de turnos que cambiaron,
+     * y los movimientos empiezan a animarse.
+     * @param cambios Lote de cambios del modelo.
      */
     @Override
-    public void alCambiarModelo() {
-        dibujarMapa();
-        actualizarEstadisticas();
-        actualizarOrdenTurnos();
+    public void alCambiarModelo(CambiosModelo cambios) {
+        animaciones.anotar(cambios, System.nanoTime());
+        if (renderizador == null || cambios.contiene(EventoModelo.TipoEvento.NIVEL_CARGADO)) {
+            if (renderizador != null) dibujarMapa();
+            actualizarEstadisticas();
+            actualizarOrdenTurnos();
+            return;
+        }
+
+        EventoDibujado evento = new EventoDibujado();
+        evento.begin();
+        long inicio = System.nanoTime();
+        renderizador.actualizar(modelo, cambios);
+        terminarDibujado(evento, inicio, false, cambios.getEventos().size());
+        if (cambios.contiene(EventoModelo.TipoEvento.TURNO_AVANZADO) && lblTurnoActual != null) {
+            lblTurnoActual.setText("Turno: " + modelo.getTurnoActual());
+        }
+        if (cambios.afectaA(EventoModelo.TipoEvento.VELOCIDAD_CAMBIADA, modelo.getProtagonista())) {
+            actualizarEstadisticas();
+        } else if (cambios.afectaA(EventoModelo.TipoEvento.SALUD_CAMBIADA, modelo.getProtagonista())) {
+            actualizarSalud();
+        }
+        actualizarEntradasTurnos(cambios);
     }
 }
\ No newline at end of file
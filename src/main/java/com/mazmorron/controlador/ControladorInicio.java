@@ -1,5 +1,6 @@
 package com.mazmorron.controlador;
 
+import com.mazmorron.modelo.Prota;
 import javafx.fxml.FXML;
 import javafx.scene.control.Alert;
 import javafx.scene.control.Button;
@@ -11,16 +12,16 @@ import javafx.scene.control.TextField;
  */
 public class ControladorInicio {
 
-    private static final int MAX_PUNTOS = 80;
-
     @FXML private TextField txtNombre;
     @FXML private TextField txtSalud;
     @FXML private TextField txtAtaque;
     @FXML private TextField txtDefensa;
     @FXML private TextField txtVelocidad;
     @FXML private Button btnIniciar;
+    @FXML private Button btnContinuar;
 
     private boolean datosConfirmados = false;
+    private boolean continuar = false;
     private String nombre;
     private int salud, ataque, defensa, velocidad;
 
@@ -38,11 +39,11 @@ public class ControladorInicio {
             velocidad= Integer.parseInt(txtVelocidad.getText());
 
             int total = salud + ataque + defensa + velocidad;
-            if (total > MAX_PUNTOS) {
+            if (total > Prota.MAX_PUNTOS) {
                 Alert alerta = new Alert(Alert.AlertType.ERROR);
                 alerta.setTitle("Límite de puntos excedido");
                 alerta.setHeaderText("Has asignado " + total + " puntos");
-                alerta.setContentText("El máximo permitido es " + MAX_PUNTOS + " puntos.");
+                alerta.setContentText("El máximo permitido es " + Prota.MAX_PUNTOS + " puntos.");
                 alerta.showAndWait();
                 return;
             }
@@ -58,6 +59,32 @@ public class ControladorInicio {
         }
     }
 
+    /**
+     * Cierra la ventana de inicio indicando que se quiere continuar la
+     * última partida guardada.
+     */
+    @FXML
+    private void alHacerClickContinuar() {
+        continuar = true;
+        btnContinuar.getScene().getWindow().hide();
+    }
+
+    /**
+     * Habilita el botón de continuar según haya o no una partida guardada.
+     * @param hayPartida True si existe alguna partida guardada.
+     */
+    public void setPartidaGuardada(boolean hayPartida) {
+        btnContinuar.setDisable(!hayPartida);
+    }
+
+    /**
+     * Indica si el jugador ha elegido continuar la última partida.
+     * @return True si se debe cargar la partida guardada.
+     */
+    public boolean isContinuar() {
+        return continuar;
+    }
+
     /**
      * Indica si los datos han sido confirmados correctamente.
      * @return True si los datos son válidos.
@@ -0,0 +1,149 @@
+package com.mazmorron.controlador;
+
+import com.mazmorron.modelo.ModeloJuego;
+import javafx.animation.AnimationTimer;
+import javafx.scene.Node;
+import javafx.scene.Parent;
+import javafx.scene.control.Label;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Capa de métricas de la vista principal, para diagnosticar tirones sin
+ * conectar un perfilador. Mientras está visible, cada medio segundo resume
+ * los turnos por segundo, el tiempo de dibujado del mapa, el peor fotograma,
+ * los nodos del mapa en la escena y la memoria asignada por turno en el hilo
+ * de JavaFX, que es donde se juegan los turnos y se dibuja. Oculta no mide
+ * nada salvo el tiempo de dibujado, que le pasa el controlador.
+ */
+public class MonitorRendimiento {
+
+    /** Tiempo entre dos actualizaciones de la capa. */
+    private static final long INTERVALO_NS = 500_000_000L;
+
+    private final Label etiqueta;
+    private final AnimationTimer temporizador;
+    private final com.sun.management.ThreadMXBean hilos;
+
+    private ModeloJuego modelo;
+    private Node nodoMapa;
+
+    // Acumulados desde el principio de la muestra en curso
+    private long inicioMuestra;
+    private long turnosAlEmpezar;
+    private long bytesAlEmpezar;
+    private long ultimoFotograma;
+    private long peorFotograma;
+    private int dibujados;
+    private long nanosDibujado;
+    private long peorDibujado;
+
+    /**
+     * Crea el monitor, oculto.
+     * @param etiqueta Etiqueta de la vista donde se muestran las métricas.
+     */
+    public MonitorRendimiento(Label etiqueta) {
+        this.etiqueta = etiqueta;
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        this.hilos = bean instanceof com.sun.management.ThreadMXBean sun && sun.isThreadAllocatedMemorySupported()
+            ? sun : null;
+        this.temporizador = new AnimationTimer() {
+            @Override
+            public void handle(long ahora) {
+                alPintarFotograma(ahora);
+            }
+        };
+        etiqueta.setVisible(false);
+        etiqueta.setMouseTransparent(true);
+    }
+
+    /**
+     * Establece lo que se mide.
+     * @param modelo Modelo de la partida.
+     * @param nodoMapa Nodo del renderizador del mapa.
+     */
+    public void setObjetivo(ModeloJuego modelo, Node nodoMapa) {
+        this.modelo = modelo;
+        this.nodoMapa = nodoMapa;
+    }
+
+    /**
+     * Muestra la capa si está oculta y la oculta si está visible.
+     */
+    public void alternar() {
+        if (etiqueta.isVisible()) {
+            temporizador.stop();
+            etiqueta.setVisible(false);
+            return;
+        }
+        etiqueta.setText("Midiendo…");
+        etiqueta.setVisible(true);
+        empezarMuestra(System.nanoTime());
+        ultimoFotograma = 0;
+        temporizador.start();
+    }
+
+    /**
+     * Anota lo que ha tardado un dibujado del mapa.
+     * @param nanos Duración en nanosegundos.
+     */
+    public void anotarDibujado(long nanos) {
+        dibujados++;
+        nanosDibujado += nanos;
+        peorDibujado = Math.max(peorDibujado, nanos);
+    }
+
+    /**
+     * Se invoca en cada fotograma mientras la capa está visible.
+     * @param ahora Marca de tiempo del fotograma, en nanosegundos.
+     */
+    private void alPintarFotograma(long ahora) {
+        if (ultimoFotograma != 0) peorFotograma = Math.max(peorFotograma, ahora - ultimoFotograma);
+        ultimoFotograma = ahora;
+        if (ahora - inicioMuestra < INTERVALO_NS) return;
+
+        double segundos = (ahora - inicioMuestra) / 1e9;
+        long turnos = modelo == null ? 0 : modelo.getTurnosJugados() - turnosAlEmpezar;
+        StringBuilder texto = new StringBuilder();
+        texto.append(String.format("turnos/s: %.1f%n", turnos / segundos));
+        texto.append(String.format("dibujado: %.2f ms (máx %.2f) x%d%n",
+            dibujados == 0 ? 0.0 : nanosDibujado / 1e6 / dibujados, peorDibujado / 1e6, dibujados));
+        texto.append(String.format("peor fotograma: %.1f ms%n", peorFotograma / 1e6));
+        texto.append("nodos del mapa: ").append(nodoMapa == null ? 0 : contarNodos(nodoMapa)).append('\n');
+        if (hilos == null) {
+            texto.append("asignado/turno: n/d");
+        } else {
+            long bytes = hilos.getCurrentThreadAllocatedBytes() - bytesAlEmpezar;
+            texto.append(turnos == 0 ? "asignado/turno: -"
+                : String.format("asignado/turno: %.1f KB", bytes / 1024.0 / turnos));
+        }
+        etiqueta.setText(texto.toString());
+        empezarMuestra(ahora);
+    }
+
+    private void empezarMuestra(long ahora) {
+        inicioMuestra = ahora;
+        turnosAlEmpezar = modelo == null ? 0 : modelo.getTurnosJugados();
+        bytesAlEmpezar = hilos == null ? 0 : hilos.getCurrentThreadAllocatedBytes();
+        peorFotograma = 0;
+        dibujados = 0;
+        nanosDibujado = 0;
+        peorDibujado = 0;
+    }
+
+    /**
+     * Cuenta un nodo y todos sus descendientes en la escena.
+     * @param nodo Raíz.
+     * @return Número de nodos.
+     */
+    private static int contarNodos(Node nodo) {
+        int n = 1;
+        if (nodo instanceof Parent padre) {
+            for (Node hijo : padre.getChildrenUnmodifiable()) {
+                n += contarNodos(hijo);
+            }
+        }
+        return n;
+    }
+}
@@ -0,0 +1,239 @@
+package com.mazmorron.controlador;
+
+import com.mazmorron.modelo.CambiosModelo;
+import com.mazmorron.modelo.EventoModelo;
+import com.mazmorron.modelo.Mapa;
+import com.mazmorron.modelo.ModeloJuego;
+import com.mazmorron.modelo.Personaje;
+import javafx.geometry.Pos;
+import javafx.scene.Group;
+import javafx.scene.Node;
+import javafx.scene.layout.GridPane;
+import javafx.scene.layout.Pane;
+import javafx.scene.paint.Color;
+import javafx.scene.paint.Paint;
+import javafx.scene.shape.Rectangle;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Dibuja el mapa como una cuadrícula con un rectángulo por celda, relleno
+ * con el sprite de su terreno o de su ocupante. Los nodos se crean una sola
+ * vez por nivel y los rellenos salen ya hechos del atlas, así que en cada
+ * dibujado solo se repintan las celdas cuyo relleno ha cambiado. Los personajes que se están
+ * moviendo se dibujan en una capa encima, un rectángulo por personaje que se
+ * desplaza entre las dos celdas, y su celda de destino se pinta sin ellos
+ * hasta que llegan.
+ */
+public class RenderizadorCuadricula implements RenderizadorMapa {
+
+    private static final double TAM_CELDA = 40;
+
+    private final GridPane panelCuadricula = new GridPane();
+    private final Pane capaActores = new Pane();
+    private final Group nodo = new Group(panelCuadricula, capaActores);
+    private final Map<Personaje, Rectangle> actores = new IdentityHashMap<>();
+    private Animaciones animaciones = new Animaciones(0);
+
+    private final AtlasSprites atlas;
+
+    // Nodos reutilizados entre turnos y último relleno pintado en cada uno
+    private Rectangle[] nodosCeldas;
+    private Paint[] pinturasCeldas;
+    private Mapa mapaDibujado;
+
+    /**
+     * Crea el renderizador con los sprites del juego, si están disponibles.
+     */
+    public RenderizadorCuadricula() {
+        this(AtlasSprites.porDefecto());
+    }
+
+    /**
+     * Crea el renderizador con una cuadrícula centrada y separación de 2 píxeles.
+     * @param atlas Atlas de sprites, o null para pintar con colores planos.
+     */
+    public RenderizadorCuadricula(AtlasSprites atlas) {
+        this.atlas = atlas;
+        panelCuadricula.setAlignment(Pos.CENTER);
+        panelCuadricula.setHgap(2);
+        panelCuadricula.setVgap(2);
+        capaActores.setMouseTransparent(true);
+    }
+
+    @Override
+    public Node getNodo() {
+        return nodo;
+    }
+
+    @Override
+    public void setAnimaciones(Animaciones animaciones) {
+        this.animaciones = animaciones;
+    }
+
+    /**
+     * Coloca cada personaje que se mueve en su posición del fotograma y, al
+     * llegar, lo quita de la capa y lo devuelve a la cuadrícula.
+     * @param modelo Modelo de juego a representar.
+     * @param ahora Instante del fotograma.
+     */
+    @Override
+    public void animar(ModeloJuego modelo, long ahora) {
+        if (actores.isEmpty() && !animaciones.isActiva()) return;
+        for (Animaciones.Movimiento m : animaciones.terminar(ahora)) {
+            capaActores.getChildren().remove(actores.remove(m.getPersonaje()));
+            if (modelo.getMapa() != mapaDibujado) continue;
+            repintarSiDentro(modelo, m.getFilaOrigen(), m.getColumnaOrigen());
+            repintar(modelo, m.getFilaDestino(), m.getColumnaDestino());
+        }
+        if (modelo.getMapa() != mapaDibujado) return;
+        for (Animaciones.Movimiento m : animaciones.getMovimientos()) {
+            colocarActor(modelo, m, ahora);
+        }
+        // Quita los que ya no se mueven por una muerte o un cambio de nivel
+        if (actores.size() > animaciones.getMovimientos().size()) {
+            actores.entrySet().removeIf(a -> {
+                if (animaciones.seMueve(a.getKey())) return false;
+                capaActores.getChildren().remove(a.getValue());
+                return true;
+            });
+        }
+    }
+
+    /**
+     * Sitúa el rectángulo de un personaje entre las celdas de origen y destino.
+     * Solo se muestra si alguna de las dos está a la vista.
+     * @param modelo Modelo de juego.
+     * @param m Movimiento en curso.
+     * @param ahora Instante del fotograma.
+     */
+    private void colocarActor(ModeloJuego modelo, Animaciones.Movimiento m, long ahora) {
+        Rectangle actor = actores.get(m.getPersonaje());
+        if (actor == null) {
+            actor = new Rectangle(TAM_CELDA, TAM_CELDA, RenderizadorMapa.pinturaPersonaje(atlas, m.getPersonaje()));
+            actor.setStroke(Color.BLACK);
+            actores.put(m.getPersonaje(), actor);
+            capaActores.getChildren().add(actor);
+        }
+        boolean origenVisible = mapaDibujado.enLimites(m.getFilaOrigen(), m.getColumnaOrigen())
+            && modelo.esVisible(m.getFilaOrigen(), m.getColumnaOrigen());
+        actor.setVisible(origenVisible || modelo.esVisible(m.getFilaDestino(), m.getColumnaDestino()));
+
+        // La posición de las celdas en la cuadrícula da el paso entre ellas sin suponer la separación
+        int columnas = mapaDibujado.getColumnas();
+        Rectangle base = nodosCeldas[0];
+        double pasoX = columnas > 1 ? nodosCeldas[1].getLayoutX() - base.getLayoutX() : 0;
+        double pasoY = mapaDibujado.getFilas() > 1 ? nodosCeldas[columnas].getLayoutY() - base.getLayoutY() : 0;
+        actor.setLayoutX(panelCuadricula.getLayoutX() + base.getLayoutX() + animaciones.columna(m, ahora) * pasoX);
+        actor.setLayoutY(panelCuadricula.getLayoutY() + base.getLayoutY() + animaciones.fila(m, ahora) * pasoY);
+    }
+
+    /**
+     * Repinta las celdas cuyo relleno ha cambiado desde el último dibujado,
+     * reconstruyendo la cuadrícula solo si el mapa del modelo es otro.
+     * @param modelo Modelo de juego a representar.
+     */
+    @Override
+    public void dibujar(ModeloJuego modelo) {
+        Mapa mapa = modelo.getMapa();
+        if (mapa != mapaDibujado) {
+            construirCuadricula(mapa);
+        }
+        for (int i = 0; i < mapa.getFilas(); i++) {
+            for (int j = 0; j < mapa.getColumnas(); j++) {
+                repintar(modelo, i, j);
+            }
+        }
+    }
+
+    /**
+     * Repinta únicamente las celdas tocadas por el lote de cambios y, si la
+     * visión del protagonista cambió, las ventanas de visión anterior y nueva.
+     * @param modelo Modelo de juego a representar.
+     * @param cambios Lote de cambios ocurridos.
+     */
+    @Override
+    public void actualizar(ModeloJuego modelo, CambiosModelo cambios) {
+        if (modelo.getMapa() != mapaDibujado) {
+            dibujar(modelo);
+            return;
+        }
+        for (int[] c : cambios.getCeldasAfectadas()) {
+            repintar(modelo, c[0], c[1]);
+        }
+        for (EventoModelo e : cambios.getEventos()) {
+            if (e.getTipo() == EventoModelo.TipoEvento.VISION_CAMBIADA) {
+                repintarVentana(modelo, e.getXOrigen(), e.getYOrigen());
+                repintarVentana(modelo, e.getX(), e.getY());
+            }
+        }
+    }
+
+    /**
+     * Repinta las celdas dentro del alcance de visión alrededor de un punto.
+     * @param modelo Modelo de juego.
+     * @param cx Fila central.
+     * @param cy Columna central.
+     */
+    private void repintarVentana(ModeloJuego modelo, int cx, int cy) {
+        if (cx < 0 || cy < 0) return;
+        Mapa mapa = modelo.getMapa();
+        int r = modelo.getRadioVision();
+        for (int i = Math.max(0, cx - r); i <= Math.min(mapa.getFilas() - 1, cx + r); i++) {
+            for (int j = Math.max(0, cy - r); j <= Math.min(mapa.getColumnas() - 1, cy + r); j++) {
+                repintar(modelo, i, j);
+            }
+        }
+    }
+
+    /**
+     * Repinta una celda si su relleno ha cambiado desde el último dibujado.
+     * Las celdas de los personajes que se están moviendo muestran solo el terreno.
+     * @param modelo Modelo de juego.
+     * @param i Fila.
+     * @param j Columna.
+     */
+    private void repintar(ModeloJuego modelo, int i, int j) {
+        Personaje ocupante = modelo.esVisible(i, j) ? mapaDibujado.getOcupante(i, j) : null;
+        Paint pintura = ocupante != null && !animaciones.seMueve(ocupante)
+            ? RenderizadorMapa.pinturaPersonaje(atlas, ocupante)
+            : RenderizadorMapa.pinturaTerreno(atlas, modelo, i, j);
+        int k = i * mapaDibujado.getColumnas() + j;
+        if (pinturasCeldas[k] != pintura) {
+            pinturasCeldas[k] = pintura;
+            nodosCeldas[k].setFill(pintura);
+        }
+    }
+
+    /**
+     * Repinta una celda si está dentro del mapa.
+     * @param modelo Modelo de juego.
+     * @param i Fila.
+     * @param j Columna.
+     */
+    private void repintarSiDentro(ModeloJuego modelo, int i, int j) {
+        if (mapaDibujado.enLimites(i, j)) repintar(modelo, i, j);
+    }
+
+    /**
+     * Crea los nodos de la cuadrícula para un mapa nuevo.
+     * @param mapa Mapa del nivel.
+     */
+    private void construirCuadricula(Mapa mapa) {
+        panelCuadricula.getChildren().clear();
+        capaActores.getChildren().clear();
+        actores.clear();
+        nodosCeldas = new Rectangle[mapa.getFilas() * mapa.getColumnas()];
+        pinturasCeldas = new Paint[nodosCeldas.length];
+        for (int i = 0; i < mapa.getFilas(); i++) {
+            for (int j = 0; j < mapa.getColumnas(); j++) {
+                Rectangle celda = new Rectangle(TAM_CELDA, TAM_CELDA);
+                celda.setStroke(Color.BLACK);
+                nodosCeldas[i * mapa.getColumnas() + j] = celda;
+                panelCuadricula.add(celda, j, i);
+            }
+        }
+        mapaDibujado = mapa;
+    }
+}
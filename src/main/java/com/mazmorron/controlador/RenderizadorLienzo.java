@@ -0,0 +1,367 @@
+package com.mazmorron.controlador;
+
+import com.mazmorron.modelo.CambiosModelo;
+import com.mazmorron.modelo.EventoModelo;
+import com.mazmorron.modelo.Mapa;
+import com.mazmorron.modelo.ModeloJuego;
+import com.mazmorron.modelo.Personaje;
+import com.mazmorron.modelo.Prota;
+import javafx.scene.Node;
+import javafx.scene.SnapshotParameters;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.WritableImage;
+import javafx.scene.layout.Pane;
+import javafx.scene.paint.Color;
+
+/**
+ * Dibuja el mapa sobre tres Canvas superpuestos, pintando solo lo que cae
+ * dentro de la ventana visible. La cámara sigue al protagonista, de modo que
+ * el coste de cada dibujado depende del tamaño de la ventana y no del mapa.
+ *
+ * <p>El terreno, sin niebla, se pinta una vez con regiones del atlas de
+ * sprites en una imagen fuera de pantalla: el nivel entero si cabe en
+ * {@link #LADO_MAXIMO} píxeles por lado y, si no, un bloque alrededor de la
+ * ventana con {@link #MARGEN} celdas de margen. El lienzo de fondo solo
+ * copia esa imagen desplazada por la cámara, y el bloque se vuelve a pintar
+ * cuando la ventana se sale de él. Encima, el lienzo de niebla oscurece las
+ * celdas exploradas fuera de la visión y tapa las nunca vistas; se repinta
+ * cuando se mueve la cámara o cambia la visión, con un relleno por celda
+ * fuera de la visión. Por último, el lienzo de personajes se borra y se
+ * repinta en cada dibujado recorriendo solo las celdas al alcance de la
+ * visión, así que en los turnos de los enemigos no se toca el terreno.
+ * Mientras hay movimientos en curso se redibuja en cada fotograma, con los
+ * personajes que se mueven entre dos celdas y la cámara siguiéndolos.</p>
+ */
+public class RenderizadorLienzo implements RenderizadorMapa {
+
+    private static final double TAM_CELDA = 40;
+    private static final double SEPARACION = 2;
+    private static final double PASO = TAM_CELDA + SEPARACION;
+
+    /** Lado máximo en píxeles de la imagen del terreno, el de una textura en cualquier tarjeta gráfica. */
+    private static final int LADO_MAXIMO = 4096;
+    /** Celdas de más a cada lado de la ventana en el bloque de terreno de un nivel que no cabe entero. */
+    private static final int MARGEN = 8;
+    /** Niebla sobre el terreno explorado: oscurece como dos {@code Color.darker()} seguidos. */
+    private static final Color NIEBLA = Color.color(0, 0, 0, 1 - 0.7 * 0.7);
+
+    private final AtlasSprites atlas;
+    private final Pane contenedor = new Pane();
+    private final Canvas fondo = new Canvas();
+    private final Canvas niebla = new Canvas();
+    private final Canvas personajes = new Canvas();
+    private ModeloJuego ultimoModelo;
+    private Animaciones animaciones = new Animaciones(0);
+    private boolean animando;
+
+    // Imagen del terreno y bloque de celdas que cubre; fuera de pantalla
+    private final Canvas lienzoTerreno = new Canvas();
+    private final SnapshotParameters parametrosTerreno = new SnapshotParameters();
+    private WritableImage terreno;
+    private Mapa mapaTerreno;
+    private int filaTerreno;
+    private int filaFinTerreno;
+    private int colTerreno;
+    private int colFinTerreno;
+
+    // Lo que muestran el fondo y la niebla, para saber cuándo hay que repintarlos
+    private boolean fondoValido;
+    private boolean nieblaValida;
+    private Mapa mapaFondo;
+    private double camXFondo;
+    private double camYFondo;
+
+    /**
+     * Crea el renderizador con los sprites del juego, si están disponibles.
+     */
+    public RenderizadorLienzo() {
+        this(AtlasSprites.porDefecto());
+    }
+
+    /**
+     * Crea los lienzos ajustados al tamaño de su contenedor y los redibuja
+     * cuando la ventana cambia de tamaño.
+     * @param atlas Atlas de sprites, o null para pintar con colores planos.
+     */
+    public RenderizadorLienzo(AtlasSprites atlas) {
+        this.atlas = atlas;
+        parametrosTerreno.setFill(Color.BLACK);
+        contenedor.getChildren().addAll(fondo, niebla, personajes);
+        contenedor.setMinSize(0, 0);
+        for (Canvas lienzo : new Canvas[]{fondo, niebla, personajes}) {
+            lienzo.widthProperty().bind(contenedor.widthProperty());
+            lienzo.heightProperty().bind(contenedor.heightProperty());
+        }
+        personajes.widthProperty().addListener((obs, oldV, newV) -> redibujar());
+        personajes.heightProperty().addListener((obs, oldV, newV) -> redibujar());
+    }
+
+    @Override
+    public Node getNodo() {
+        return contenedor;
+    }
+
+    @Override
+    public void setAnimaciones(Animaciones animaciones) {
+        this.animaciones = animaciones;
+    }
+
+    /**
+     * Redibuja en cada fotograma mientras haya movimientos en curso y una vez
+     * más cuando terminan, para dejar a todos en su celda.
+     * @param modelo Modelo de juego a representar.
+     * @param ahora Instante del fotograma.
+     */
+    @Override
+    public void animar(ModeloJuego modelo, long ahora) {
+        if (!animaciones.isActiva() && !animando) return;
+        animaciones.terminar(ahora);
+        animando = animaciones.isActiva();
+        dibujar(modelo, ahora);
+    }
+
+    /**
+     * Dibuja las celdas visibles alrededor del protagonista, repintando
+     * también el fondo y la niebla.
+     * @param modelo Modelo de juego a representar.
+     */
+    @Override
+    public void dibujar(ModeloJuego modelo) {
+        fondoValido = false;
+        nieblaValida = false;
+        dibujar(modelo, System.nanoTime());
+    }
+
+    /**
+     * Repinta los personajes y, si la visión ha cambiado, también la
+     * niebla. Al cargar un nivel se descarta la imagen del terreno.
+     * @param modelo Modelo de juego a representar.
+     * @param cambios Lote de cambios ocurridos.
+     */
+    @Override
+    public void actualizar(ModeloJuego modelo, CambiosModelo cambios) {
+        if (cambios.contiene(EventoModelo.TipoEvento.NIVEL_CARGADO)) {
+            terreno = null;
+            mapaTerreno = null;
+            fondoValido = false;
+        }
+        if (cambios.contiene(EventoModelo.TipoEvento.VISION_CAMBIADA)) {
+            nieblaValida = false;
+        }
+        dibujar(modelo, System.nanoTime());
+    }
+
+    /**
+     * Dibuja el fondo y la niebla si hace falta y, encima, los personajes a la vista, con
+     * los que se están moviendo en la posición en que se les ve en un instante.
+     * @param modelo Modelo de juego a representar.
+     * @param ahora Instante del dibujado.
+     */
+    private void dibujar(ModeloJuego modelo, long ahora) {
+        this.ultimoModelo = modelo;
+        double ancho = personajes.getWidth();
+        double alto = personajes.getHeight();
+        GraphicsContext gc = personajes.getGraphicsContext2D();
+        gc.clearRect(0, 0, ancho, alto);
+
+        Mapa mapa = modelo.getMapa();
+        if (mapa == null) {
+            GraphicsContext gf = fondo.getGraphicsContext2D();
+            gf.setFill(Color.BLACK);
+            gf.fillRect(0, 0, ancho, alto);
+            niebla.getGraphicsContext2D().clearRect(0, 0, ancho, alto);
+            fondoValido = false;
+            nieblaValida = false;
+            return;
+        }
+        int filas = mapa.getFilas();
+        int columnas = mapa.getColumnas();
+
+        // Cámara centrada en el protagonista y limitada a los bordes del mapa
+        Prota p = modelo.getProtagonista();
+        double protaX = p.getX();
+        double protaY = p.getY();
+        boolean hayMovimientos = animaciones.isActiva();
+        if (hayMovimientos) {
+            for (Animaciones.Movimiento m : animaciones.getMovimientos()) {
+                if (m.getPersonaje() == p) {
+                    protaX = animaciones.fila(m, ahora);
+                    protaY = animaciones.columna(m, ahora);
+                }
+            }
+        }
+        double camX = limitarCamara((protaY + 0.5) * PASO - ancho / 2, (double) columnas * PASO, ancho);
+        double camY = limitarCamara((protaX + 0.5) * PASO - alto / 2, (double) filas * PASO, alto);
+
+        int colIni = Math.max(0, (int) Math.floor(camX / PASO));
+        int colFin = Math.min(columnas - 1, (int) Math.floor((camX + ancho) / PASO));
+        int filaIni = Math.max(0, (int) Math.floor(camY / PASO));
+        int filaFin = Math.min(filas - 1, (int) Math.floor((camY + alto) / PASO));
+
+        if (terreno == null || mapa != mapaTerreno || filaIni < filaTerreno || filaFin > filaFinTerreno
+            || colIni < colTerreno || colFin > colFinTerreno) {
+            pintarTerreno(mapa, filaIni, filaFin, colIni, colFin);
+            fondoValido = false;
+        }
+        boolean camaraMovida = mapa != mapaFondo || camX != camXFondo || camY != camYFondo;
+        if (!fondoValido || camaraMovida) {
+            GraphicsContext gf = fondo.getGraphicsContext2D();
+            gf.setFill(Color.BLACK);
+            gf.fillRect(0, 0, ancho, alto);
+            gf.drawImage(terreno, colTerreno * PASO - camX, filaTerreno * PASO - camY);
+            fondoValido = true;
+        }
+        if (!nieblaValida || camaraMovida) {
+            dibujarNiebla(modelo, camX, camY, filaIni, filaFin, colIni, colFin);
+        }
+        mapaFondo = mapa;
+        camXFondo = camX;
+        camYFondo = camY;
+
+        // Los ocupantes solo se ven en celdas visibles, que están al alcance de la visión
+        int r = modelo.getRadioVision();
+        gc.setStroke(Color.BLACK);
+        for (int i = Math.max(filaIni, p.getX() - r); i <= Math.min(filaFin, p.getX() + r); i++) {
+            for (int j = Math.max(colIni, p.getY() - r); j <= Math.min(colFin, p.getY() + r); j++) {
+                Personaje ocupante = mapa.getOcupante(i, j);
+                if (ocupante == null || !modelo.esVisible(i, j) || animaciones.seMueve(ocupante)) continue;
+                dibujarPersonaje(gc, ocupante, (double) j * PASO - camX, (double) i * PASO - camY);
+            }
+        }
+
+        if (!hayMovimientos) return;
+        // Se ve a quien se mueve si se ve la celda de la que sale o la de destino
+        for (Animaciones.Movimiento m : animaciones.getMovimientos()) {
+            if (!modelo.esVisible(m.getFilaDestino(), m.getColumnaDestino())
+                && !(mapa.enLimites(m.getFilaOrigen(), m.getColumnaOrigen())
+                     && modelo.esVisible(m.getFilaOrigen(), m.getColumnaOrigen()))) continue;
+            dibujarPersonaje(gc, m.getPersonaje(),
+                animaciones.columna(m, ahora) * PASO - camX, animaciones.fila(m, ahora) * PASO - camY);
+        }
+    }
+
+    /**
+     * Pinta en la imagen del terreno el nivel entero, si cabe, o el bloque
+     * de celdas de la ventana con su margen.
+     * @param mapa Mapa del nivel.
+     * @param filaIni Primera fila visible.
+     * @param filaFin Última fila visible.
+     * @param colIni Primera columna visible.
+     * @param colFin Última columna visible.
+     */
+    private void pintarTerreno(Mapa mapa, int filaIni, int filaFin, int colIni, int colFin) {
+        int filas = mapa.getFilas();
+        int columnas = mapa.getColumnas();
+        if (filas * PASO <= LADO_MAXIMO && columnas * PASO <= LADO_MAXIMO) {
+            filaTerreno = 0;
+            filaFinTerreno = filas - 1;
+            colTerreno = 0;
+            colFinTerreno = columnas - 1;
+        } else {
+            filaTerreno = Math.max(0, filaIni - MARGEN);
+            filaFinTerreno = Math.min(filas - 1, filaFin + MARGEN);
+            colTerreno = Math.max(0, colIni - MARGEN);
+            colFinTerreno = Math.min(columnas - 1, colFin + MARGEN);
+        }
+        int ancho = (int) Math.ceil((colFinTerreno - colTerreno + 1) * PASO);
+        int alto = (int) Math.ceil((filaFinTerreno - filaTerreno + 1) * PASO);
+        lienzoTerreno.setWidth(ancho);
+        lienzoTerreno.setHeight(alto);
+
+        GraphicsContext gc = lienzoTerreno.getGraphicsContext2D();
+        gc.setFill(Color.BLACK);
+        gc.fillRect(0, 0, ancho, alto);
+        gc.setStroke(Color.BLACK);
+        for (int i = filaTerreno; i <= filaFinTerreno; i++) {
+            double py = (i - filaTerreno) * PASO;
+            for (int j = colTerreno; j <= colFinTerreno; j++) {
+                double px = (j - colTerreno) * PASO;
+                if (atlas == null) {
+                    gc.setFill(RenderizadorMapa.colorTipo(mapa.getTipo(i, j)));
+                    gc.fillRect(px, py, TAM_CELDA, TAM_CELDA);
+                } else {
+                    AtlasSprites.Sprite s = atlas.terreno(mapa.getTipo(i, j));
+                    gc.drawImage(atlas.getImagen(false), s.getX(), s.getY(), s.getAncho(), s.getAlto(),
+                                 px, py, TAM_CELDA, TAM_CELDA);
+                }
+                gc.strokeRect(px, py, TAM_CELDA, TAM_CELDA);
+            }
+        }
+        // Se reutiliza la imagen si el bloque mide lo mismo; el lienzo solo hace falta para la copia
+        boolean mismoTamanio = terreno != null && terreno.getWidth() == ancho && terreno.getHeight() == alto;
+        terreno = lienzoTerreno.snapshot(parametrosTerreno, mismoTamanio ? terreno : null);
+        lienzoTerreno.setWidth(0);
+        lienzoTerreno.setHeight(0);
+        mapaTerreno = mapa;
+    }
+
+    /**
+     * Pinta la niebla de guerra de las celdas de la ventana en su lienzo:
+     * negro en las nunca vistas y oscurecido en las exploradas fuera de la visión.
+     * @param modelo Modelo de juego.
+     * @param camX Posición horizontal de la cámara.
+     * @param camY Posición vertical de la cámara.
+     * @param filaIni Primera fila visible.
+     * @param filaFin Última fila visible.
+     * @param colIni Primera columna visible.
+     * @param colFin Última columna visible.
+     */
+    private void dibujarNiebla(ModeloJuego modelo, double camX, double camY,
+                               int filaIni, int filaFin, int colIni, int colFin) {
+        GraphicsContext gc = niebla.getGraphicsContext2D();
+        gc.clearRect(0, 0, niebla.getWidth(), niebla.getHeight());
+        for (int i = filaIni; i <= filaFin; i++) {
+            double py = (double) i * PASO - camY;
+            for (int j = colIni; j <= colFin; j++) {
+                if (modelo.esVisible(i, j)) continue;
+                gc.setFill(modelo.estaExplorada(i, j) ? NIEBLA : Color.BLACK);
+                gc.fillRect((double) j * PASO - camX, py, TAM_CELDA, TAM_CELDA);
+            }
+        }
+        nieblaValida = true;
+    }
+
+    /**
+     * Pinta un personaje en el lienzo de personajes.
+     * @param gc Contexto del lienzo de personajes.
+     * @param p Personaje.
+     * @param px Posición horizontal en el lienzo.
+     * @param py Posición vertical en el lienzo.
+     */
+    private void dibujarPersonaje(GraphicsContext gc, Personaje p, double px, double py) {
+        if (atlas == null) {
+            gc.setFill(RenderizadorMapa.colorPersonaje(p));
+            gc.fillRect(px, py, TAM_CELDA, TAM_CELDA);
+        } else {
+            AtlasSprites.Sprite s = atlas.personaje(p);
+            gc.drawImage(atlas.getImagen(false), s.getX(), s.getY(), s.getAncho(), s.getAlto(),
+                         px, py, TAM_CELDA, TAM_CELDA);
+        }
+        gc.strokeRect(px, py, TAM_CELDA, TAM_CELDA);
+    }
+
+    /**
+     * Vuelve a dibujar el último modelo, por ejemplo tras redimensionar la ventana.
+     */
+    private void redibujar() {
+        if (ultimoModelo != null) {
+            dibujar(ultimoModelo);
+        }
+    }
+
+    /**
+     * Ajusta la posición de la cámara para no mostrar más allá del mapa.
+     * Si el mapa cabe entero en la ventana se centra.
+     * @param deseada Posición deseada de la cámara.
+     * @param total Tamaño total del mapa en píxeles.
+     * @param vista Tamaño visible en píxeles.
+     * @return Posición final de la cámara.
+     */
+    private static double limitarCamara(double deseada, double total, double vista) {
+        if (total <= vista) {
+            return (total - vista) / 2;
+        }
+        return Math.max(0, Math.min(deseada, total - vista));
+    }
+}
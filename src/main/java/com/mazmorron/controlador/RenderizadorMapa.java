@@ -0,0 +1,142 @@
+package com.mazmorron.controlador;
+
+import com.mazmorron.modelo.*;
+import javafx.scene.Node;
+import javafx.scene.paint.Color;
+import javafx.scene.paint.Paint;
+
+/**
+ * Estrategia de dibujado del mapa en la vista principal.
+ * Cada implementación aporta el nodo que se coloca en la vista y sabe
+ * repintarlo a partir del estado actual del modelo.
+ */
+public interface RenderizadorMapa {
+
+    /**
+     * Obtiene el nodo de JavaFX en el que se dibuja el mapa.
+     * @return Nodo a insertar en la vista.
+     */
+    Node getNodo();
+
+    /**
+     * Dibuja el estado actual del mapa del modelo.
+     * @param modelo Modelo de juego a representar.
+     */
+    void dibujar(ModeloJuego modelo);
+
+    /**
+     * Actualiza el dibujo tras un lote de cambios del modelo. Por defecto
+     * redibuja todo; las implementaciones pueden limitarse a las celdas afectadas.
+     * @param modelo Modelo de juego a representar.
+     * @param cambios Lote de cambios ocurridos.
+     */
+    default void actualizar(ModeloJuego modelo, CambiosModelo cambios) {
+        dibujar(modelo);
+    }
+
+    /**
+     * Establece los movimientos en curso que el renderizador debe interpolar.
+     * Por defecto se ignoran y los personajes saltan de celda.
+     * @param animaciones Movimientos en curso.
+     */
+    default void setAnimaciones(Animaciones animaciones) {
+    }
+
+    /**
+     * Avanza las animaciones en curso; se invoca en cada fotograma.
+     * @param modelo Modelo de juego a representar.
+     * @param ahora Instante del fotograma, en nanosegundos.
+     */
+    default void animar(ModeloJuego modelo, long ahora) {
+    }
+
+    /** Colores del terreno ya explorado pero fuera del campo de visión. */
+    Color MURO_EN_NIEBLA = Color.DARKGRAY.darker().darker();
+    Color TRAMPA_EN_NIEBLA = Color.YELLOW.darker().darker();
+    Color SUELO_EN_NIEBLA = Color.BEIGE.darker().darker();
+
+    /**
+     * Calcula el color de una celda aplicando la niebla de guerra: las celdas nunca
+     * vistas son negras y las exploradas fuera de la visión muestran el terreno
+     * oscurecido sin ocupantes. Las visibles muestran muro, trampa o suelo, salvo
+     * que estén ocupadas por el protagonista o por un enemigo.
+     * @param modelo Modelo de juego.
+     * @param i Fila de la celda.
+     * @param j Columna de la celda.
+     * @return Color con el que se pinta la celda.
+     */
+    static Color colorCelda(ModeloJuego modelo, int i, int j) {
+        Personaje ocupante = modelo.esVisible(i, j) ? modelo.getMapa().getOcupante(i, j) : null;
+        return ocupante != null ? colorPersonaje(ocupante) : colorTerreno(modelo, i, j);
+    }
+
+    /**
+     * Calcula el color del terreno de una celda con la niebla de guerra, sin
+     * su ocupante, para dibujarlo aparte mientras se mueve.
+     * @param modelo Modelo de juego.
+     * @param i Fila de la celda.
+     * @param j Columna de la celda.
+     * @return Color del terreno.
+     */
+    static Color colorTerreno(ModeloJuego modelo, int i, int j) {
+        TipoCelda tipo = modelo.getMapa().getTipo(i, j);
+        if (!modelo.esVisible(i, j)) {
+            if (!modelo.estaExplorada(i, j)) {
+                return Color.BLACK;
+            } else if (tipo == TipoCelda.MURO) {
+                return MURO_EN_NIEBLA;
+            } else if (tipo == TipoCelda.TRAMPA) {
+                return TRAMPA_EN_NIEBLA;
+            }
+            return SUELO_EN_NIEBLA;
+        }
+        return colorTipo(tipo);
+    }
+
+    /**
+     * @param tipo Tipo de celda.
+     * @return Color de su terreno a la vista, sin niebla de guerra.
+     */
+    static Color colorTipo(TipoCelda tipo) {
+        if (tipo == TipoCelda.MURO) {
+            return Color.DARKGRAY;
+        } else if (tipo == TipoCelda.TRAMPA) {
+            return Color.YELLOW;
+        }
+        return Color.BEIGE;
+    }
+
+    /**
+     * Calcula el relleno del terreno de una celda con la niebla de guerra: su
+     * sprite, oscurecido si está fuera de la visión, o negro si nunca se ha visto.
+     * @param atlas Atlas de sprites, o null para usar colores planos.
+     * @param modelo Modelo de juego.
+     * @param i Fila de la celda.
+     * @param j Columna de la celda.
+     * @return Relleno del terreno.
+     */
+    static Paint pinturaTerreno(AtlasSprites atlas, ModeloJuego modelo, int i, int j) {
+        if (atlas == null) return colorTerreno(modelo, i, j);
+        boolean visible = modelo.esVisible(i, j);
+        if (!visible && !modelo.estaExplorada(i, j)) return Color.BLACK;
+        AtlasSprites.Sprite sprite = atlas.terreno(modelo.getMapa().getTipo(i, j));
+        return visible ? sprite.getPatron() : sprite.getPatronNiebla();
+    }
+
+    /**
+     * @param atlas Atlas de sprites, o null para usar colores planos.
+     * @param p Personaje.
+     * @return Relleno con el que se dibuja el personaje.
+     */
+    static Paint pinturaPersonaje(AtlasSprites atlas, Personaje p) {
+        return atlas == null ? colorPersonaje(p) : atlas.personaje(p).getPatron();
+    }
+
+    /**
+     * @param p Personaje.
+     * @return Color con el que se dibuja: azul el protagonista, rojo los enemigos.
+     */
+    static Color colorPersonaje(Personaje p) {
+        return p instanceof Prota ? Color.BLUE : Color.RED;
+    }
+}
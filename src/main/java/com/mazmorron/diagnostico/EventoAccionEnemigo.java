@@ -0,0 +1,34 @@
+package com.mazmorron.diagnostico;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Evento de JFR de la acción de un enemigo. Con miles de enemigos hay miles
+ * por turno, así que por defecto solo se graban las que superan el umbral.
+ */
+@Name("mazmorron.AccionEnemigo")
+@Label("Acción de enemigo")
+@Category({"Mazmorrón", "Modelo"})
+@Description("Decisión y movimiento o ataque de un enemigo")
+@StackTrace(false)
+@Threshold("1 ms")
+public class EventoAccionEnemigo extends Event {
+
+    @Label("Enemigo")
+    public String enemigo;
+
+    @Label("Fila")
+    public int x;
+
+    @Label("Columna")
+    public int y;
+
+    @Label("Intención calculada en paralelo")
+    public boolean intencionPrevia;
+}
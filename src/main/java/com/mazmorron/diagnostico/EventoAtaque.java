@@ -0,0 +1,33 @@
+package com.mazmorron.diagnostico;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Evento de JFR de un ataque entre dos personajes.
+ */
+@Name("mazmorron.Ataque")
+@Label("Ataque")
+@Category({"Mazmorrón", "Modelo"})
+@Description("Ataque de un personaje a otro, con el daño y si murió")
+@StackTrace(false)
+@Threshold("1 ms")
+public class EventoAtaque extends Event {
+
+    @Label("Atacante")
+    public String atacante;
+
+    @Label("Defensor")
+    public String defensor;
+
+    @Label("Daño")
+    public int danio;
+
+    @Label("Defensor muerto")
+    public boolean muerto;
+}
@@ -0,0 +1,30 @@
+package com.mazmorron.diagnostico;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Evento de JFR de la carga de un mapa, sus enemigos o una partida guardada.
+ */
+@Name("mazmorron.CargaNivel")
+@Label("Carga de nivel")
+@Category({"Mazmorrón", "Modelo"})
+@Description("Lectura del mapa o los enemigos de un nivel, o restauración de una partida")
+public class EventoCargaNivel extends Event {
+
+    @Label("Origen")
+    @Description("mapa, enemigos, plantilla, mundo o partida")
+    public String origen;
+
+    @Label("Filas")
+    public int filas;
+
+    @Label("Columnas")
+    public int columnas;
+
+    @Label("Enemigos")
+    public int enemigos;
+}
@@ -0,0 +1,29 @@
+package com.mazmorron.diagnostico;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Evento de JFR del dibujado del mapa en la vista principal, completo o
+ * limitado a las celdas de un lote de cambios.
+ */
+@Name("mazmorron.Dibujado")
+@Label("Dibujado del mapa")
+@Category({"Mazmorrón", "Vista"})
+@Description("Dibujado del mapa por el renderizador activo")
+@StackTrace(false)
+public class EventoDibujado extends Event {
+
+    @Label("Renderizador")
+    public String renderizador;
+
+    @Label("Completo")
+    public boolean completo;
+
+    @Label("Eventos del lote")
+    public int eventos;
+}
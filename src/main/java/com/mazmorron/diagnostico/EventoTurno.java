@@ -0,0 +1,30 @@
+package com.mazmorron.diagnostico;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Evento de JFR del paso al siguiente turno de la cola de iniciativa. Su
+ * duración incluye preparar la IA del grupo de enemigos que empieza, pero no
+ * la acción del personaje, que se mide aparte.
+ */
+@Name("mazmorron.Turno")
+@Label("Turno")
+@Category({"Mazmorrón", "Modelo"})
+@Description("Paso de la cola de iniciativa al siguiente personaje")
+@StackTrace(false)
+public class EventoTurno extends Event {
+
+    @Label("Ronda")
+    public int ronda;
+
+    @Label("Personaje")
+    public String personaje;
+
+    @Label("Es enemigo")
+    public boolean enemigo;
+}
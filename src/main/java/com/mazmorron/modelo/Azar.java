@@ -0,0 +1,68 @@
+package com.mazmorron.modelo;
+
+import java.util.Random;
+
+/**
+ * Generador aleatorio de una partida basado en SplitMix64. Todo su estado es
+ * un único long que se puede leer y restaurar, de modo que una partida
+ * guardada o un registro de entradas reproducen exactamente las mismas
+ * tiradas. Extiende {@link Random} para poder usarse con la biblioteca
+ * estándar, como en {@code Collections.shuffle}; {@code nextGaussian} guarda
+ * un valor entre llamadas que no forma parte del estado, así que el juego no
+ * lo usa. No es seguro entre hilos: cada partida tiene el suyo.
+ */
+public class Azar extends Random {
+
+    private static final long GAMMA = 0x9e3779b97f4a7c15L;
+
+    private long estado;
+
+    /**
+     * Crea el generador con una semilla.
+     * @param semilla Semilla; dos generadores con la misma dan la misma secuencia.
+     */
+    public Azar(long semilla) {
+        this.estado = semilla;
+    }
+
+    /** @return Estado actual, suficiente para continuar la secuencia con {@link #setEstado}. */
+    public long getEstado() {
+        return estado;
+    }
+
+    /**
+     * Restaura un estado leído antes con {@link #getEstado}.
+     * @param estado Estado del generador.
+     */
+    public void setEstado(long estado) {
+        this.estado = estado;
+    }
+
+    @Override
+    public void setSeed(long semilla) {
+        // Random lo llama desde su constructor, antes de que exista este objeto
+        estado = semilla;
+    }
+
+    @Override
+    public long nextLong() {
+        estado += GAMMA;
+        return mezclar(estado);
+    }
+
+    @Override
+    protected int next(int bits) {
+        return (int) (nextLong() >>> (64 - bits));
+    }
+
+    /**
+     * Función de mezcla de SplitMix64.
+     * @param z Valor de entrada.
+     * @return Valor mezclado.
+     */
+    static long mezclar(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,63 @@
+package com.mazmorron.modelo;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Caché en memoria de plantillas de nivel. Cada nivel se lee y analiza una
+ * sola vez; los reintentos y los cambios de nivel posteriores reutilizan la
+ * plantilla. Es segura para hilos.
+ */
+public class CacheNiveles {
+
+    /**
+     * Carga una plantilla cuando no está en la caché.
+     */
+    @FunctionalInterface
+    public interface Cargador {
+        /**
+         * @return Plantilla cargada.
+         * @throws IOException Si no se puede leer el nivel.
+         */
+        PlantillaNivel cargar() throws IOException;
+    }
+
+    private final ConcurrentMap<String, PlantillaNivel> plantillas = new ConcurrentHashMap<>();
+
+    /**
+     * Obtiene la plantilla de una clave, cargándola la primera vez. Si dos
+     * hilos piden a la vez la misma clave, solo uno la carga.
+     * @param clave Identificador del nivel.
+     * @param cargador Carga la plantilla si no está en la caché.
+     * @return Plantilla del nivel.
+     * @throws IOException Si la carga falla; en ese caso no se guarda nada.
+     */
+    public PlantillaNivel obtener(String clave, Cargador cargador) throws IOException {
+        try {
+            return plantillas.computeIfAbsent(clave, k -> {
+                try {
+                    return cargador.cargar();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * @param clave Identificador del nivel.
+     * @return True si la plantilla ya está cargada.
+     */
+    public boolean contiene(String clave) {
+        return plantillas.containsKey(clave);
+    }
+
+    /** Descarta todas las plantillas. */
+    public void vaciar() {
+        plantillas.clear();
+    }
+}
@@ -0,0 +1,73 @@
+package com.mazmorron.modelo;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+
+/**
+ * Lote de eventos producidos por una acción lógica del juego (un turno,
+ * la carga de un nivel...), entregado de una vez a los escuchas del modelo.
+ */
+public class CambiosModelo {
+
+    private final List<EventoModelo> eventos;
+    private final EnumSet<EventoModelo.TipoEvento> tipos = EnumSet.noneOf(EventoModelo.TipoEvento.class);
+
+    /**
+     * Crea un lote a partir de los eventos acumulados.
+     * @param eventos Eventos en el orden en que ocurrieron.
+     */
+    public CambiosModelo(List<EventoModelo> eventos) {
+        this.eventos = Collections.unmodifiableList(new ArrayList<>(eventos));
+        for (EventoModelo e : eventos) {
+            tipos.add(e.getTipo());
+        }
+    }
+
+    /** @return Eventos del lote en orden de aparición. */
+    public List<EventoModelo> getEventos() {
+        return eventos;
+    }
+
+    /**
+     * Indica si el lote contiene algún evento del tipo dado.
+     * @param tipo Tipo de evento.
+     * @return True si hay al menos uno.
+     */
+    public boolean contiene(EventoModelo.TipoEvento tipo) {
+        return tipos.contains(tipo);
+    }
+
+    /**
+     * Indica si algún evento del tipo dado afecta al personaje indicado.
+     * @param tipo Tipo de evento.
+     * @param p Personaje.
+     * @return True si existe tal evento.
+     */
+    public boolean afectaA(EventoModelo.TipoEvento tipo, Personaje p) {
+        if (!tipos.contains(tipo)) return false;
+        for (EventoModelo e : eventos) {
+            if (e.getTipo() == tipo && e.getPersonaje() == p) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Obtiene las celdas que deben repintarse: origen y destino de cada
+     * movimiento y la celda del personaje de cada uno de los demás eventos,
+     * como muertes, cambios de salud o personajes que entran o salen.
+     * @return Lista de pares {fila, columna}, puede contener repetidos.
+     */
+    public List<int[]> getCeldasAfectadas() {
+        List<int[]> celdas = new ArrayList<>();
+        for (EventoModelo e : eventos) {
+            if (e.getX() < 0 || e.getTipo() == EventoModelo.TipoEvento.VISION_CAMBIADA) continue;
+            if (e.getTipo() == EventoModelo.TipoEvento.OCUPANTE_MOVIDO) {
+                celdas.add(new int[]{e.getXOrigen(), e.getYOrigen()});
+            }
+            celdas.add(new int[]{e.getX(), e.getY()});
+        }
+        return celdas;
+    }
+}
@@ -0,0 +1,149 @@
+package com.mazmorron.modelo;
+
+import java.util.Arrays;
+
+/**
+ * Campo de distancias hacia el protagonista compartido por todos los enemigos.
+ * Se calcula con una búsqueda en anchura (Dijkstra con coste uniforme) desde la
+ * posición del protagonista, atravesando cualquier celda que no sea muro, y
+ * solo se recalcula cuando el protagonista cambia de posición. Con el campo
+ * calculado, cada enemigo elige su paso consultando sus cuatro vecinas.
+ *
+ * <p>La búsqueda se limita a un radio alrededor del protagonista, de modo que
+ * el coste no depende del tamaño del mapa sino del alcance de persecución.</p>
+ */
+public class CampoFlujo {
+
+    /** Distancia de las celdas no alcanzables dentro del radio. */
+    public static final int INALCANZABLE = Integer.MAX_VALUE;
+
+    private static final int[][] DIRECCIONES = {{-1, 0}, {1, 0}, {0, -1}, {0, 1}};
+
+    /**
+     * Indica qué celdas están ocupadas por otro enemigo y no se pueden pisar.
+     */
+    @FunctionalInterface
+    public interface Bloqueo {
+        /**
+         * @param x Fila.
+         * @param y Columna.
+         * @return True si la celda está ocupada por alguien que no es el protagonista.
+         */
+        boolean bloqueada(int x, int y);
+    }
+
+    private final int radio;
+    private final int lado;
+    private final int[] distancias;
+    private final int[] cola;
+    private int origenX = Integer.MIN_VALUE, origenY = Integer.MIN_VALUE;
+
+    /**
+     * Crea un campo que cubre los caminos de hasta {@code radio} pasos.
+     * @param radio Longitud máxima de los caminos considerados.
+     */
+    public CampoFlujo(int radio) {
+        this.radio = radio;
+        this.lado = 2 * radio + 1;
+        this.distancias = new int[lado * lado];
+        this.cola = new int[lado * lado];
+    }
+
+    /** @return Longitud máxima de los caminos considerados. */
+    public int getRadio() {
+        return radio;
+    }
+
+    /**
+     * Recalcula el campo si el protagonista se ha movido desde el último cálculo.
+     * @param mapa Mapa del nivel.
+     * @param px Fila del protagonista.
+     * @param py Columna del protagonista.
+     */
+    public void actualizar(Mapa mapa, int px, int py) {
+        if (px == origenX && py == origenY) return;
+        origenX = px;
+        origenY = py;
+        Arrays.fill(distancias, INALCANZABLE);
+
+        int ini = 0, fin = 0;
+        distancias[indice(px, py)] = 0;
+        cola[fin++] = indice(px, py);
+        while (ini < fin) {
+            int actual = cola[ini++];
+            int d = distancias[actual];
+            if (d == radio) continue;
+            int x = origenX - radio + actual / lado;
+            int y = origenY - radio + actual % lado;
+            for (int[] dir : DIRECCIONES) {
+                int nx = x + dir[0];
+                int ny = y + dir[1];
+                if (!mapa.enLimites(nx, ny)) continue;
+                int idx = indice(nx, ny);
+                if (distancias[idx] != INALCANZABLE || mapa.esMuro(nx, ny)) continue;
+                distancias[idx] = d + 1;
+                cola[fin++] = idx;
+            }
+        }
+    }
+
+    /**
+     * Distancia en pasos desde una celda hasta el protagonista.
+     * @param x Fila.
+     * @param y Columna.
+     * @return Pasos del camino más corto, o {@link #INALCANZABLE} si no hay
+     *         camino dentro del radio.
+     */
+    public int distancia(int x, int y) {
+        if (Math.abs(x - origenX) > radio || Math.abs(y - origenY) > radio) return INALCANZABLE;
+        return distancias[indice(x, y)];
+    }
+
+    /**
+     * Elige el paso de un enemigo hacia el protagonista: la vecina libre con menor
+     * distancia, siempre que acerque al enemigo. La celda del protagonista cuenta
+     * como libre, ya que entrar en ella significa atacarle.
+     * @param mapa Mapa del nivel.
+     * @param x Fila del enemigo.
+     * @param y Columna del enemigo.
+     * @return Celda destino {fila, columna}, o null si no hay paso que acerque.
+     */
+    public int[] siguientePaso(Mapa mapa, int x, int y) {
+        return siguientePaso(x, y, (nx, ny) -> {
+            Personaje ocupante = mapa.getOcupante(nx, ny);
+            return ocupante != null && !(ocupante instanceof Prota);
+        });
+    }
+
+    /**
+     * Como {@link #siguientePaso(Mapa, int, int)}, pero con la ocupación de las
+     * celdas dada aparte, para estados que no viven en un {@link Mapa}.
+     * @param x Fila del enemigo.
+     * @param y Columna del enemigo.
+     * @param bloqueo Celdas ocupadas por otros enemigos.
+     * @return Celda destino {fila, columna}, o null si no hay paso que acerque.
+     */
+    public int[] siguientePaso(int x, int y, Bloqueo bloqueo) {
+        int mejor = distancia(x, y);
+        int[] paso = null;
+        for (int[] dir : DIRECCIONES) {
+            int nx = x + dir[0];
+            int ny = y + dir[1];
+            int d = distancia(nx, ny);
+            if (d >= mejor || bloqueo.bloqueada(nx, ny)) continue;
+            mejor = d;
+            paso = new int[]{nx, ny};
+        }
+        return paso;
+    }
+
+    /**
+     * Convierte coordenadas del mapa en índice de la ventana del campo.
+     * @param x Fila.
+     * @param y Columna.
+     * @return Índice en los arrays del campo.
+     */
+    private int indice(int x, int y) {
+        return (x - origenX + radio) * lado + (y - origenY + radio);
+    }
+}
@@ -0,0 +1,140 @@
+package com.mazmorron.modelo;
+
+/**
+ * Campo de visión del protagonista calculado con proyección de sombras
+ * recursiva (shadow casting) sobre los ocho octantes alrededor del origen.
+ * Los muros y el borde del mapa bloquean la visión. El resultado se guarda
+ * en una ventana alrededor del origen y solo se recalcula cuando éste cambia,
+ * de modo que todos los enemigos consultan el mismo conjunto sin volver a
+ * trazar rayos en cada turno.
+ */
+public class CampoVision {
+
+    // Multiplicadores que transforman el octante base en cada uno de los ocho octantes
+    private static final int[][] OCTANTES = {
+        {1, 0, 0, 1}, {0, 1, 1, 0}, {0, -1, 1, 0}, {-1, 0, 0, 1},
+        {-1, 0, 0, -1}, {0, -1, -1, 0}, {0, 1, -1, 0}, {1, 0, 0, -1}
+    };
+
+    private final int radio;
+    private final int lado;
+    private final int[] marcas;
+    private int generacion = 0;
+    private int origenX = Integer.MIN_VALUE, origenY = Integer.MIN_VALUE;
+    private Mapa mapa;
+
+    /**
+     * Crea un campo de visión con el alcance indicado.
+     * @param radio Distancia máxima de visión en celdas.
+     */
+    public CampoVision(int radio) {
+        this.radio = radio;
+        this.lado = 2 * radio + 1;
+        this.marcas = new int[lado * lado];
+    }
+
+    /** @return Alcance de la visión en celdas. */
+    public int getRadio() {
+        return radio;
+    }
+
+    /** @return Fila del último origen calculado. */
+    public int getOrigenX() {
+        return origenX;
+    }
+
+    /** @return Columna del último origen calculado. */
+    public int getOrigenY() {
+        return origenY;
+    }
+
+    /**
+     * Recalcula las celdas visibles si el origen ha cambiado desde el último cálculo.
+     * @param mapa Mapa del nivel.
+     * @param ox Fila del observador.
+     * @param oy Columna del observador.
+     * @return True si se ha recalculado.
+     */
+    public boolean actualizar(Mapa mapa, int ox, int oy) {
+        if (ox == origenX && oy == origenY && mapa == this.mapa) return false;
+        this.mapa = mapa;
+        origenX = ox;
+        origenY = oy;
+        generacion++;
+        marcar(ox, oy);
+        for (int[] o : OCTANTES) {
+            proyectar(1, 1.0, 0.0, o[0], o[1], o[2], o[3]);
+        }
+        return true;
+    }
+
+    /**
+     * Indica si una celda es visible desde el último origen calculado.
+     * @param x Fila.
+     * @param y Columna.
+     * @return True si la celda está dentro del alcance y sin muros de por medio.
+     */
+    public boolean esVisible(int x, int y) {
+        // En long, porque sin origen calculado éste vale Integer.MIN_VALUE y la resta desborda
+        long dx = (long) x - origenX;
+        long dy = (long) y - origenY;
+        if (Math.abs(dx) > radio || Math.abs(dy) > radio) return false;
+        return marcas[(int) (dx + radio) * lado + (int) (dy + radio)] == generacion;
+    }
+
+    /**
+     * Recorre un octante fila a fila entre dos pendientes, abriendo una
+     * llamada recursiva por cada tramo que queda iluminado tras un muro.
+     * @param fila Distancia al origen de la primera fila a recorrer.
+     * @param inicio Pendiente inicial del tramo iluminado.
+     * @param fin Pendiente final del tramo iluminado.
+     * @param xx Multiplicador de columna a fila.
+     * @param xy Multiplicador de profundidad a fila.
+     * @param yx Multiplicador de columna a columna.
+     * @param yy Multiplicador de profundidad a columna.
+     */
+    private void proyectar(int fila, double inicio, double fin, int xx, int xy, int yx, int yy) {
+        if (inicio < fin) return;
+        double nuevoInicio = 0;
+        for (int j = fila; j <= radio; j++) {
+            boolean bloqueado = false;
+            int dy = -j;
+            for (int dx = -j; dx <= 0; dx++) {
+                double pendIzq = (dx - 0.5) / (dy + 0.5);
+                double pendDer = (dx + 0.5) / (dy - 0.5);
+                if (inicio < pendDer) continue;
+                if (fin > pendIzq) break;
+
+                int x = origenX + dx * xx + dy * xy;
+                int y = origenY + dx * yx + dy * yy;
+                boolean dentro = mapa.enLimites(x, y);
+                if (dentro && dx * dx + dy * dy <= radio * radio) {
+                    marcar(x, y);
+                }
+                boolean opaca = !dentro || mapa.esMuro(x, y);
+                if (bloqueado) {
+                    if (opaca) {
+                        nuevoInicio = pendDer;
+                    } else {
+                        bloqueado = false;
+                        inicio = nuevoInicio;
+                    }
+                } else if (opaca && j < radio) {
+                    bloqueado = true;
+                    proyectar(j + 1, inicio, pendIzq, xx, xy, yx, yy);
+                    nuevoInicio = pendDer;
+                }
+            }
+            if (bloqueado) break;
+        }
+    }
+
+    /**
+     * Marca una celda como visible en la generación actual.
+     * @param x Fila.
+     * @param y Columna.
+     */
+    private void marcar(int x, int y) {
+        marcas[(x - origenX + radio) * lado + (y - origenY + radio)] = generacion;
+    }
+}
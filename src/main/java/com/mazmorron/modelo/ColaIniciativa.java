@@ -0,0 +1,357 @@
+package com.mazmorron.modelo;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntFunction;
+import java.util.function.ToIntFunction;
+
+/**
+ * Cola de turnos por iniciativa implementada como un montículo binario.
+ * Cada personaje actúa una vez por ronda; dentro de la ronda actúan antes los
+ * más rápidos y, a igual velocidad, los que se añadieron antes. Tras actuar,
+ * el personaje vuelve a la cola para la ronda siguiente, de modo que no hace
+ * falta reconstruir ni ordenar la lista completa al empezar cada ronda.
+ *
+ * <p>Añadir, quitar o cambiar la velocidad de un personaje cuesta O(log n).</p>
+ */
+public class ColaIniciativa {
+
+    /**
+     * Posición de un personaje en la cola.
+     */
+    private static final class Entrada {
+        final Personaje personaje;
+        final long orden;
+        int ronda;
+        int velocidad;
+        int posicion;
+
+        Entrada(Personaje personaje, long orden, int ronda) {
+            this.personaje = personaje;
+            this.orden = orden;
+            this.ronda = ronda;
+            this.velocidad = personaje.getVelocidad();
+        }
+    }
+
+    /**
+     * Clave de iniciativa de un personaje, para devolverlo a su sitio al deshacer un turno.
+     */
+    static final class Clave {
+        final long orden;
+        final int ronda;
+        final int velocidad;
+
+        private Clave(Entrada e) {
+            this.orden = e.orden;
+            this.ronda = e.ronda;
+            this.velocidad = e.velocidad;
+        }
+    }
+
+    /**
+     * Estado global de la cola, para deshacer un turno.
+     */
+    static final class Marca {
+        final int ronda;
+        final long siguienteOrden;
+        final boolean hayUltima;
+        final int ultimaVelocidad;
+        final long ultimoOrden;
+
+        private Marca(ColaIniciativa c) {
+            this.ronda = c.ronda;
+            this.siguienteOrden = c.siguienteOrden;
+            this.hayUltima = c.hayUltima;
+            this.ultimaVelocidad = c.ultimaVelocidad;
+            this.ultimoOrden = c.ultimoOrden;
+        }
+    }
+
+    private final Map<Personaje, Entrada> entradas = new IdentityHashMap<>();
+    private Entrada[] monticulo = new Entrada[16];
+    private int tamanio = 0;
+    private long siguienteOrden = 0;
+    private int ronda = 1;
+
+    // Clave de iniciativa del último turno entregado
+    private boolean hayUltima = false;
+    private int ultimaVelocidad;
+    private long ultimoOrden;
+
+    /** @return Número de personajes en la cola. */
+    public int getTamanio() {
+        return tamanio;
+    }
+
+    /** @return Ronda del último personaje que obtuvo turno. */
+    public int getRonda() {
+        return ronda;
+    }
+
+    /**
+     * Indica si un personaje está en la cola.
+     * @param p Personaje.
+     * @return True si tiene turnos pendientes.
+     */
+    public boolean contiene(Personaje p) {
+        return entradas.containsKey(p);
+    }
+
+    /**
+     * Añade un personaje. Actúa en la ronda actual si su iniciativa aún no ha
+     * pasado; si no, en la siguiente.
+     * @param p Personaje a añadir.
+     */
+    public void agregar(Personaje p) {
+        if (entradas.containsKey(p)) return;
+        Entrada e = new Entrada(p, siguienteOrden++, ronda);
+        if (hayUltima && comparar(e.ronda, e.velocidad, e.orden, ronda, ultimaVelocidad, ultimoOrden) < 0) {
+            e.ronda = ronda + 1;
+        }
+        insertar(e);
+    }
+
+    private void insertar(Entrada e) {
+        entradas.put(e.personaje, e);
+        if (tamanio == monticulo.length) {
+            monticulo = Arrays.copyOf(monticulo, tamanio * 2);
+        }
+        e.posicion = tamanio;
+        monticulo[tamanio++] = e;
+        subir(e.posicion);
+    }
+
+    /**
+     * Quita un personaje de la cola, por ejemplo al morir.
+     * @param p Personaje a quitar.
+     */
+    public void quitar(Personaje p) {
+        Entrada e = entradas.remove(p);
+        if (e == null) return;
+        int i = e.posicion;
+        Entrada ultimaDelMonticulo = monticulo[--tamanio];
+        monticulo[tamanio] = null;
+        if (i == tamanio) return;
+        monticulo[i] = ultimaDelMonticulo;
+        ultimaDelMonticulo.posicion = i;
+        recolocar(i);
+    }
+
+    /**
+     * Reordena a un personaje tras cambiar su velocidad a mitad de ronda.
+     * @param p Personaje cuya velocidad ha cambiado.
+     */
+    public void actualizarVelocidad(Personaje p) {
+        Entrada e = entradas.get(p);
+        if (e == null) return;
+        e.velocidad = p.getVelocidad();
+        recolocar(e.posicion);
+    }
+
+    /**
+     * Extrae el personaje con más iniciativa y lo vuelve a encolar para la ronda siguiente.
+     * @return Personaje al que le toca actuar, o null si la cola está vacía.
+     */
+    public Personaje siguiente() {
+        if (tamanio == 0) return null;
+        Entrada e = monticulo[0];
+        ronda = e.ronda;
+        hayUltima = true;
+        ultimaVelocidad = e.velocidad;
+        ultimoOrden = e.orden;
+        e.ronda++;
+        bajar(0);
+        return e.personaje;
+    }
+
+    /** @return Personaje al que le toca actuar a continuación, sin sacarlo de la cola. */
+    Personaje primero() {
+        return tamanio == 0 ? null : monticulo[0].personaje;
+    }
+
+    /**
+     * @param p Personaje.
+     * @return Su clave de iniciativa actual, o null si no está en la cola.
+     */
+    Clave clave(Personaje p) {
+        Entrada e = entradas.get(p);
+        return e == null ? null : new Clave(e);
+    }
+
+    /**
+     * Recoge, en orden de iniciativa y sin sacarlos de la cola, los personajes
+     * que aún tienen turno en la ronda actual antes que uno dado. Solo recorre
+     * la parte del montículo que los contiene: O(k log k) para k personajes.
+     * @param limite Personaje ante el que se detiene; si no está en la cola,
+     *               se recogen todos los que quedan en la ronda.
+     * @param destino Lista donde añadirlos.
+     */
+    void recogerAntesDe(Personaje limite, List<Personaje> destino) {
+        Entrada tope = entradas.get(limite);
+        List<Entrada> recogidas = new ArrayList<>();
+        int[] pendientes = new int[16];
+        int n = 0;
+        if (tamanio > 0) pendientes[n++] = 0;
+        while (n > 0) {
+            int i = pendientes[--n];
+            Entrada e = monticulo[i];
+            // Los hijos nunca van antes que su padre: si este no entra, ellos tampoco
+            if (e.ronda != ronda || (tope != null && comparar(e, tope) >= 0)) continue;
+            recogidas.add(e);
+            if (n + 2 > pendientes.length) pendientes = Arrays.copyOf(pendientes, n * 2 + 2);
+            if (2 * i + 1 < tamanio) pendientes[n++] = 2 * i + 1;
+            if (2 * i + 2 < tamanio) pendientes[n++] = 2 * i + 2;
+        }
+        recogidas.sort(ColaIniciativa::comparar);
+        for (Entrada e : recogidas) destino.add(e.personaje);
+    }
+
+    /**
+     * Devuelve a un personaje a la clave que tenía, o lo quita si no estaba.
+     * Como las claves son únicas, el orden de los turnos queda igual que
+     * entonces aunque el montículo se organice de otra forma.
+     * @param p Personaje.
+     * @param clave Clave obtenida con {@link #clave}, o null.
+     */
+    void reponer(Personaje p, Clave clave) {
+        quitar(p);
+        if (clave == null) return;
+        Entrada e = new Entrada(p, clave.orden, clave.ronda);
+        e.velocidad = clave.velocidad;
+        insertar(e);
+    }
+
+    /** @return Estado global actual, para {@link #volverA}. */
+    Marca marcar() {
+        return new Marca(this);
+    }
+
+    /**
+     * Restaura el estado global guardado con {@link #marcar}.
+     * @param m Marca.
+     */
+    void volverA(Marca m) {
+        ronda = m.ronda;
+        siguienteOrden = m.siguienteOrden;
+        hayUltima = m.hayUltima;
+        ultimaVelocidad = m.ultimaVelocidad;
+        ultimoOrden = m.ultimoOrden;
+    }
+
+    /**
+     * Vacía la cola y vuelve a la primera ronda.
+     */
+    public void vaciar() {
+        entradas.clear();
+        Arrays.fill(monticulo, 0, tamanio, null);
+        tamanio = 0;
+        siguienteOrden = 0;
+        ronda = 1;
+        hayUltima = false;
+    }
+
+    /**
+     * Escribe el estado completo de la cola, incluida la posición de cada
+     * entrada en el montículo, para poder restaurarla exactamente.
+     * @param out Flujo de salida.
+     * @param indice Identificador serializable de cada personaje.
+     * @throws IOException Si falla la escritura.
+     */
+    void escribir(DataOutputStream out, ToIntFunction<Personaje> indice) throws IOException {
+        out.writeInt(ronda);
+        out.writeLong(siguienteOrden);
+        out.writeBoolean(hayUltima);
+        out.writeInt(ultimaVelocidad);
+        out.writeLong(ultimoOrden);
+        out.writeInt(tamanio);
+        for (int i = 0; i < tamanio; i++) {
+            Entrada e = monticulo[i];
+            out.writeInt(indice.applyAsInt(e.personaje));
+            out.writeLong(e.orden);
+            out.writeInt(e.ronda);
+            out.writeInt(e.velocidad);
+        }
+    }
+
+    /**
+     * Sustituye el contenido de la cola por uno escrito con {@link #escribir}.
+     * @param in Flujo de entrada.
+     * @param personaje Personaje correspondiente a cada identificador.
+     * @throws IOException Si falla la lectura o un identificador no es válido.
+     */
+    void leer(DataInputStream in, IntFunction<Personaje> personaje) throws IOException {
+        vaciar();
+        ronda = in.readInt();
+        siguienteOrden = in.readLong();
+        hayUltima = in.readBoolean();
+        ultimaVelocidad = in.readInt();
+        ultimoOrden = in.readLong();
+        int n = in.readInt();
+        if (n < 0) throw new IOException("Cola de turnos: tamaño " + n + " no válido.");
+        if (n > monticulo.length) monticulo = new Entrada[n];
+        for (int i = 0; i < n; i++) {
+            Personaje p = personaje.apply(in.readInt());
+            if (p == null || entradas.containsKey(p)) throw new IOException("Cola de turnos: personaje no válido.");
+            Entrada e = new Entrada(p, in.readLong(), in.readInt());
+            e.velocidad = in.readInt();
+            entradas.put(p, e);
+            colocar(i, e);
+        }
+        tamanio = n;
+    }
+
+    private void recolocar(int i) {
+        if (i > 0 && comparar(monticulo[i], monticulo[(i - 1) / 2]) < 0) subir(i);
+        else bajar(i);
+    }
+
+    private void subir(int i) {
+        Entrada e = monticulo[i];
+        while (i > 0) {
+            int padre = (i - 1) / 2;
+            if (comparar(e, monticulo[padre]) >= 0) break;
+            colocar(i, monticulo[padre]);
+            i = padre;
+        }
+        colocar(i, e);
+    }
+
+    private void bajar(int i) {
+        Entrada e = monticulo[i];
+        while (true) {
+            int hijo = 2 * i + 1;
+            if (hijo >= tamanio) break;
+            if (hijo + 1 < tamanio && comparar(monticulo[hijo + 1], monticulo[hijo]) < 0) hijo++;
+            if (comparar(monticulo[hijo], e) >= 0) break;
+            colocar(i, monticulo[hijo]);
+            i = hijo;
+        }
+        colocar(i, e);
+    }
+
+    private void colocar(int i, Entrada e) {
+        monticulo[i] = e;
+        e.posicion = i;
+    }
+
+    /**
+     * Orden de iniciativa: primero la ronda, después la velocidad (mayor antes)
+     * y por último el orden de llegada.
+     */
+    private static int comparar(Entrada a, Entrada b) {
+        return comparar(a.ronda, a.velocidad, a.orden, b.ronda, b.velocidad, b.orden);
+    }
+
+    private static int comparar(int rondaA, int velA, long ordenA, int rondaB, int velB, long ordenB) {
+        if (rondaA != rondaB) return Integer.compare(rondaA, rondaB);
+        if (velA != velB) return Integer.compare(velB, velA);
+        return Long.compare(ordenA, ordenB);
+    }
+}
@@ -0,0 +1,484 @@
+package com.mazmorron.modelo;
+
+import java.util.List;
+
+/**
+ * Estado inmutable de una partida con una transición pura, {@link #paso},
+ * que aplica una acción del protagonista y los turnos de los enemigos que la
+ * siguen con las mismas reglas que {@link ModeloJuego}. Pensado para la
+ * anticipación de la IA y los simuladores: varios hilos pueden explorar ramas
+ * distintas a partir del mismo estado sin bloqueos ni copias del mapa.
+ *
+ * <p>Lo que no cambia durante la partida (terreno, ataque, defensa, velocidad,
+ * visión y orden de llegada a la cola) se comparte entre todos los estados de
+ * un nivel. Cada estado solo tiene la salud, posición y ronda de cada
+ * personaje, la cola de iniciativa como montículo de índices, una tabla hash
+ * de ocupantes y el estado del generador aleatorio, así que ramificar cuesta
+ * una copia proporcional al número de personajes. No incluye las celdas
+ * exploradas, que no influyen en el juego.</p>
+ *
+ * <p>El personaje 0 es el protagonista y los demás son los enemigos en el
+ * orden de {@link ModeloJuego#getEnemigos()} al capturar el estado.</p>
+ */
+public final class EstadoJuego {
+
+    /** Índice del protagonista entre los personajes del estado. */
+    public static final int PROTA = 0;
+
+    // Campos de cada personaje en el array de datos
+    private static final int SALUD = 0, X = 1, Y = 2, RONDA = 3, CAMPOS = 4;
+
+    private static final byte EN_CURSO = 0, VICTORIA = 1, DERROTA = 2;
+
+    /**
+     * Datos del nivel que no cambian de un estado a otro.
+     */
+    private static final class Nivel {
+        final Mapa terreno;
+        final int[] ataque;
+        final int[] defensa;
+        final int[] velocidad;
+        final int[] vision;
+        final long[] orden;
+        final ThreadLocal<Calculo> calculo;
+
+        Nivel(Mapa terreno, int n, int radioFlujo, int radioVision) {
+            this.terreno = terreno;
+            this.ataque = new int[n];
+            this.defensa = new int[n];
+            this.velocidad = new int[n];
+            this.vision = new int[n];
+            this.orden = new long[n];
+            this.calculo = ThreadLocal.withInitial(() -> new Calculo(radioFlujo, radioVision));
+        }
+    }
+
+    /**
+     * Campos y generador de trabajo de cada hilo. Guardan cálculos reutilizables
+     * según la posición del protagonista, nunca estado de la partida.
+     */
+    private static final class Calculo {
+        final CampoFlujo flujo;
+        final CampoVision vision;
+        final Azar azar = new Azar(0);
+
+        Calculo(int radioFlujo, int radioVision) {
+            this.flujo = new CampoFlujo(radioFlujo);
+            this.vision = new CampoVision(radioVision);
+        }
+    }
+
+    private final Nivel nivel;
+    private final int[] datos;
+    private final int[] monticulo;
+    private final int tamanio;
+    private final int[] ocupantes;
+    private final int enemigosVivos;
+    private final long azar;
+    private final int turno;
+    private final byte fin;
+
+    private EstadoJuego(Nivel nivel, int[] datos, int[] monticulo, int tamanio, int[] ocupantes,
+                        int enemigosVivos, long azar, int turno, byte fin) {
+        this.nivel = nivel;
+        this.datos = datos;
+        this.monticulo = monticulo;
+        this.tamanio = tamanio;
+        this.ocupantes = ocupantes;
+        this.enemigosVivos = enemigosVivos;
+        this.azar = azar;
+        this.turno = turno;
+        this.fin = fin;
+    }
+
+    /**
+     * Captura el estado de un modelo en el turno del protagonista. El terreno
+     * se comparte con el mapa del modelo, que no cambia durante la partida.
+     * @param modelo Modelo de la partida.
+     * @return Estado equivalente.
+     * @throws IllegalStateException Si no es el turno del protagonista, la partida
+     *         ha terminado o el mapa es un mundo troceado.
+     */
+    public static EstadoJuego de(ModeloJuego modelo) {
+        Prota prota = modelo.getProtagonista();
+        if (modelo.isTerminado() || modelo.getPersonajeActual() != prota) {
+            throw new IllegalStateException("Solo se puede capturar el estado en el turno del protagonista.");
+        }
+        if (modelo.getMapa() instanceof MundoTroceado) {
+            throw new IllegalStateException("Un mundo troceado no tiene un estado inmutable.");
+        }
+
+        int n = 1 + modelo.getEnemigos().size();
+        Nivel nivel = new Nivel(modelo.getMapa(), n, modelo.getRadioPersecucion(), modelo.getRadioVision());
+        Borrador b = new Borrador(nivel, n, modelo.getAleatorio().getEstado(), modelo.getTurnoActual());
+        b.agregar(PROTA, prota, modelo.getColaTurnos().clave(prota), 0);
+        int i = 1;
+        for (Enemigo e : modelo.getEnemigos()) {
+            b.agregar(i++, e, modelo.getColaTurnos().clave(e), e.getVision());
+        }
+        return b.congelar();
+    }
+
+    /**
+     * Aplica una acción del protagonista y los turnos de los enemigos hasta
+     * que le vuelva a tocar o termine la partida. No modifica este estado.
+     * @param dx Desplazamiento en X.
+     * @param dy Desplazamiento en Y.
+     * @return Estado siguiente, o este mismo si la acción no es válida o la
+     *         partida ya ha terminado.
+     */
+    public EstadoJuego paso(int dx, int dy) {
+        if (fin != EN_CURSO) return this;
+        int nx = getX(PROTA) + dx;
+        int ny = getY(PROTA) + dy;
+        if (!nivel.terreno.enLimites(nx, ny) || nivel.terreno.esMuro(nx, ny)) return this;
+
+        Borrador b = new Borrador(this);
+        int objetivo = b.ocupante(nx, ny);
+        if (objetivo > PROTA) b.atacar(PROTA, objetivo);
+        else b.mover(PROTA, nx, ny);
+        b.verificarFin();
+        while (b.fin == EN_CURSO) {
+            int p = b.siguiente();
+            if (p <= PROTA) break;
+            b.accionEnemigo(p);
+            b.verificarFin();
+        }
+        return b.congelar();
+    }
+
+    /**
+     * Copia del estado con otro estado del generador aleatorio, para muestrear
+     * futuros distintos de la misma posición.
+     * @param estadoAzar Estado del generador, como el de {@link Azar#getEstado()}.
+     * @return Estado igual salvo por el generador.
+     */
+    public EstadoJuego conAzar(long estadoAzar) {
+        return new EstadoJuego(nivel, datos, monticulo, tamanio, ocupantes, enemigosVivos, estadoAzar, turno, fin);
+    }
+
+    /** @return Número de personajes, vivos o no, incluido el protagonista. */
+    public int getNumPersonajes() {
+        return datos.length / CAMPOS;
+    }
+
+    /** @return Enemigos que siguen vivos. */
+    public int getEnemigosVivos() {
+        return enemigosVivos;
+    }
+
+    /**
+     * @param i Índice del personaje.
+     * @return Su salud; cero o menos si ha muerto.
+     */
+    public int getSalud(int i) {
+        return datos[i * CAMPOS + SALUD];
+    }
+
+    /**
+     * @param i Índice del personaje.
+     * @return True si sigue vivo.
+     */
+    public boolean estaVivo(int i) {
+        return getSalud(i) > 0;
+    }
+
+    /**
+     * @param i Índice del personaje.
+     * @return Fila en que está o en que murió.
+     */
+    public int getX(int i) {
+        return datos[i * CAMPOS + X];
+    }
+
+    /**
+     * @param i Índice del personaje.
+     * @return Columna en que está o en que murió.
+     */
+    public int getY(int i) {
+        return datos[i * CAMPOS + Y];
+    }
+
+    /**
+     * @param x Fila.
+     * @param y Columna.
+     * @return Índice del personaje vivo en la celda, o -1 si está libre.
+     */
+    public int getOcupante(int x, int y) {
+        return buscar(ocupantes, x * nivel.terreno.getColumnas() + y);
+    }
+
+    /**
+     * @param x Fila.
+     * @param y Columna.
+     * @return True si la celda está dentro del mapa y no es un muro.
+     */
+    public boolean esTransitable(int x, int y) {
+        return nivel.terreno.enLimites(x, y) && !nivel.terreno.esMuro(x, y);
+    }
+
+    /**
+     * @param x Fila.
+     * @param y Columna.
+     * @return True si la celda es una trampa.
+     */
+    public boolean esTrampa(int x, int y) {
+        return nivel.terreno.getTipo(x, y) == TipoCelda.TRAMPA;
+    }
+
+    /** @return Ronda actual. */
+    public int getTurno() {
+        return turno;
+    }
+
+    /** @return True si la partida ha terminado. */
+    public boolean isTerminado() {
+        return fin != EN_CURSO;
+    }
+
+    /** @return True si la partida terminó con la victoria del protagonista. */
+    public boolean isVictoria() {
+        return fin == VICTORIA;
+    }
+
+    /**
+     * Copia de trabajo de un estado, que se modifica durante una transición y
+     * se congela al terminar. Nunca sale de esta clase.
+     */
+    private static final class Borrador {
+        final Nivel nivel;
+        final int[] datos;
+        final int[] monticulo;
+        int tamanio;
+        final int[] ocupantes;
+        int enemigosVivos;
+        long azar;
+        int turno;
+        byte fin;
+
+        Borrador(Nivel nivel, int n, long azar, int turno) {
+            this.nivel = nivel;
+            this.datos = new int[n * CAMPOS];
+            this.monticulo = new int[n];
+            this.ocupantes = new int[2 * Integer.highestOneBit(Math.max(4, 2 * n) * 2 - 1)];
+            this.azar = azar;
+            this.turno = turno;
+        }
+
+        Borrador(EstadoJuego e) {
+            this.nivel = e.nivel;
+            this.datos = e.datos.clone();
+            this.monticulo = e.monticulo.clone();
+            this.tamanio = e.tamanio;
+            this.ocupantes = e.ocupantes.clone();
+            this.enemigosVivos = e.enemigosVivos;
+            this.azar = e.azar;
+            this.turno = e.turno;
+            this.fin = e.fin;
+        }
+
+        EstadoJuego congelar() {
+            return new EstadoJuego(nivel, datos, monticulo, tamanio, ocupantes, enemigosVivos, azar, turno, fin);
+        }
+
+        /**
+         * Añade un personaje al capturar el estado.
+         */
+        void agregar(int i, Personaje p, ColaIniciativa.Clave clave, int vision) {
+            nivel.ataque[i] = p.getAtaque();
+            nivel.defensa[i] = p.getDefensa();
+            nivel.vision[i] = vision;
+            int base = i * CAMPOS;
+            datos[base + SALUD] = p.getSalud();
+            datos[base + X] = p.getX();
+            datos[base + Y] = p.getY();
+            if (clave == null) return;
+            nivel.velocidad[i] = clave.velocidad;
+            nivel.orden[i] = clave.orden;
+            datos[base + RONDA] = clave.ronda;
+            monticulo[tamanio] = i;
+            subir(tamanio++);
+            poner(celda(p.getX(), p.getY()), i);
+            if (i != PROTA) enemigosVivos++;
+        }
+
+        int ocupante(int x, int y) {
+            return buscar(ocupantes, celda(x, y));
+        }
+
+        int celda(int x, int y) {
+            return x * nivel.terreno.getColumnas() + y;
+        }
+
+        /** Como {@code ModeloJuego.moverPersonaje}, con el daño de trampa de {@link Reglas}. */
+        void mover(int p, int nx, int ny) {
+            int base = p * CAMPOS;
+            int salud = datos[base + SALUD];
+            quitar(celda(datos[base + X], datos[base + Y]));
+            datos[base + X] = nx;
+            datos[base + Y] = ny;
+            poner(celda(nx, ny), p);
+            if (nivel.terreno.getTipo(nx, ny) == TipoCelda.TRAMPA) {
+                datos[base + SALUD] = Reglas.saludTrasTrampa(salud);
+            }
+            if (datos[base + SALUD] != salud) comprobarMuerte(p);
+        }
+
+        /** Como {@code ModeloJuego.atacar}, con el daño de {@link Reglas}. */
+        void atacar(int atacante, int defensor) {
+            int danio = Reglas.danioAtaque(nivel.ataque[atacante], nivel.defensa[defensor]);
+            datos[defensor * CAMPOS + SALUD] -= danio;
+            comprobarMuerte(defensor);
+        }
+
+        void comprobarMuerte(int p) {
+            int base = p * CAMPOS;
+            if (datos[base + SALUD] > 0) return;
+            // Se queda en el montículo y se descarta al llegar su turno
+            quitar(celda(datos[base + X], datos[base + Y]));
+            if (p != PROTA) enemigosVivos--;
+        }
+
+        void verificarFin() {
+            if (fin != EN_CURSO) return;
+            if (datos[PROTA * CAMPOS + SALUD] <= 0) fin = DERROTA;
+            else if (enemigosVivos == 0) fin = VICTORIA;
+        }
+
+        /** Réplica de {@code ColaIniciativa.siguiente}, descartando a los muertos. */
+        int siguiente() {
+            while (tamanio > 0) {
+                int p = monticulo[0];
+                if (datos[p * CAMPOS + SALUD] <= 0) {
+                    monticulo[0] = monticulo[--tamanio];
+                    if (tamanio > 0) bajar(0);
+                    continue;
+                }
+                turno = datos[p * CAMPOS + RONDA]++;
+                bajar(0);
+                return p;
+            }
+            return -1;
+        }
+
+        /** Como {@code ModeloJuego.accionEnemigo}, con la decisión de {@link Reglas}. */
+        void accionEnemigo(int e) {
+            int base = e * CAMPOS;
+            int ex = datos[base + X];
+            int ey = datos[base + Y];
+            int px = datos[PROTA * CAMPOS + X];
+            int py = datos[PROTA * CAMPOS + Y];
+
+            Calculo c = nivel.calculo.get();
+            c.flujo.actualizar(nivel.terreno, px, py);
+            c.vision.actualizar(nivel.terreno, px, py);
+            int intencion = Reglas.decidir(ex, ey, px, py, nivel.vision[e], c.vision, c.flujo,
+                                           (x, y) -> ocupante(x, y) > PROTA);
+            if (intencion == Reglas.ALEATORIO) {
+                moverAleatoriamente(e, c.azar);
+            } else if (intencion != Reglas.QUIETO) {
+                int nx = ex + Reglas.PASOS[intencion][0];
+                int ny = ey + Reglas.PASOS[intencion][1];
+                if (ocupante(nx, ny) == PROTA) atacar(e, PROTA);
+                else mover(e, nx, ny);
+            }
+        }
+
+        /** Como {@code ModeloJuego.moverAleatoriamente}, con el barajado de {@link Reglas}. */
+        void moverAleatoriamente(int e, Azar aleatorio) {
+            int ex = datos[e * CAMPOS + X];
+            int ey = datos[e * CAMPOS + Y];
+            aleatorio.setEstado(azar);
+            List<int[]> opciones = Reglas.direccionesAlAzar(aleatorio);
+            azar = aleatorio.getEstado();
+            for (int[] d : opciones) {
+                int nx = ex + d[0];
+                int ny = ey + d[1];
+                if (nivel.terreno.enLimites(nx, ny) && !nivel.terreno.esMuro(nx, ny) && ocupante(nx, ny) < 0) {
+                    mover(e, nx, ny);
+                    break;
+                }
+            }
+        }
+
+        private void subir(int i) {
+            int p = monticulo[i];
+            while (i > 0) {
+                int padre = (i - 1) / 2;
+                if (comparar(p, monticulo[padre]) >= 0) break;
+                monticulo[i] = monticulo[padre];
+                i = padre;
+            }
+            monticulo[i] = p;
+        }
+
+        private void bajar(int i) {
+            int p = monticulo[i];
+            while (true) {
+                int hijo = 2 * i + 1;
+                if (hijo >= tamanio) break;
+                if (hijo + 1 < tamanio && comparar(monticulo[hijo + 1], monticulo[hijo]) < 0) hijo++;
+                if (comparar(monticulo[hijo], p) >= 0) break;
+                monticulo[i] = monticulo[hijo];
+                i = hijo;
+            }
+            monticulo[i] = p;
+        }
+
+        /** Mismo orden de iniciativa que {@code ColaIniciativa}. */
+        private int comparar(int a, int b) {
+            int rondaA = datos[a * CAMPOS + RONDA];
+            int rondaB = datos[b * CAMPOS + RONDA];
+            if (rondaA != rondaB) return Integer.compare(rondaA, rondaB);
+            if (nivel.velocidad[a] != nivel.velocidad[b]) return Integer.compare(nivel.velocidad[b], nivel.velocidad[a]);
+            return Long.compare(nivel.orden[a], nivel.orden[b]);
+        }
+
+        private void poner(int celda, int p) {
+            int mascara = ocupantes.length / 2 - 1;
+            int i = dispersar(celda) & mascara;
+            while (ocupantes[2 * i] != 0 && ocupantes[2 * i] != celda + 1) i = (i + 1) & mascara;
+            ocupantes[2 * i] = celda + 1;
+            ocupantes[2 * i + 1] = p;
+        }
+
+        /** Borra una celda de la tabla desplazando hacia atrás las que chocaron con ella. */
+        private void quitar(int celda) {
+            int mascara = ocupantes.length / 2 - 1;
+            int i = dispersar(celda) & mascara;
+            while (ocupantes[2 * i] != celda + 1) {
+                if (ocupantes[2 * i] == 0) return;
+                i = (i + 1) & mascara;
+            }
+            int j = i;
+            while (true) {
+                j = (j + 1) & mascara;
+                if (ocupantes[2 * j] == 0) break;
+                int k = dispersar(ocupantes[2 * j] - 1) & mascara;
+                // Se mueve si su posición ideal no está entre el hueco (excluido) y j
+                boolean entre = i <= j ? (i < k && k <= j) : (i < k || k <= j);
+                if (!entre) {
+                    ocupantes[2 * i] = ocupantes[2 * j];
+                    ocupantes[2 * i + 1] = ocupantes[2 * j + 1];
+                    i = j;
+                }
+            }
+            ocupantes[2 * i] = 0;
+            ocupantes[2 * i + 1] = 0;
+        }
+    }
+
+    private static int buscar(int[] ocupantes, int celda) {
+        int mascara = ocupantes.length / 2 - 1;
+        for (int i = dispersar(celda) & mascara; ; i = (i + 1) & mascara) {
+            int clave = ocupantes[2 * i];
+            if (clave == 0) return -1;
+            if (clave == celda + 1) return ocupantes[2 * i + 1];
+        }
+    }
+
+    private static int dispersar(int celda) {
+        int h = celda * 0x9e3779b9;
+        return h ^ (h >>> 16);
+    }
+}
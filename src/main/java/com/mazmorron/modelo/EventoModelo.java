@@ -0,0 +1,151 @@
+package com.mazmorron.modelo;
+
+/**
+ * Cambio concreto ocurrido en el modelo durante un turno.
+ * Los eventos se acumulan en el modelo y se entregan juntos a los escuchas
+ * dentro de un {@link CambiosModelo}.
+ */
+public class EventoModelo {
+
+    /**
+     * Tipos de cambio que puede notificar el modelo.
+     */
+    public enum TipoEvento {
+        /** Un personaje ha pasado de una celda a otra. */
+        OCUPANTE_MOVIDO,
+        /** La salud de un personaje ha cambiado. */
+        SALUD_CAMBIADA,
+        /** Un personaje ha muerto y ha dejado libre su celda. */
+        PERSONAJE_MUERTO,
+        /** Un personaje ha entrado en el nivel ya empezado, al despertar con su trozo. */
+        PERSONAJE_AGREGADO,
+        /** Un personaje ha salido del nivel sin morir, al dormirse con su trozo, y ha dejado libre su celda. */
+        PERSONAJE_RETIRADO,
+        /** La velocidad de un personaje ha cambiado y su turno se ha recolocado en la cola de iniciativa. */
+        VELOCIDAD_CAMBIADA,
+        /** Ha comenzado una nueva ronda de turnos. */
+        TURNO_AVANZADO,
+        /** Se ha cargado el mapa o los enemigos de un nivel. */
+        NIVEL_CARGADO,
+        /** El campo de visión del protagonista ha cambiado de origen. */
+        VISION_CAMBIADA
+    }
+
+    private final TipoEvento tipo;
+    private final Personaje personaje;
+    private final int xOrigen, yOrigen;
+    private final int x, y;
+
+    private EventoModelo(TipoEvento tipo, Personaje personaje, int xOrigen, int yOrigen, int x, int y) {
+        this.tipo = tipo;
+        this.personaje = personaje;
+        this.xOrigen = xOrigen;
+        this.yOrigen = yOrigen;
+        this.x = x;
+        this.y = y;
+    }
+
+    /**
+     * Crea un evento de movimiento entre dos celdas.
+     * @param p Personaje que se mueve.
+     * @param xOrigen Fila de origen.
+     * @param yOrigen Columna de origen.
+     * @param x Fila de destino.
+     * @param y Columna de destino.
+     * @return Evento OCUPANTE_MOVIDO.
+     */
+    public static EventoModelo movido(Personaje p, int xOrigen, int yOrigen, int x, int y) {
+        return new EventoModelo(TipoEvento.OCUPANTE_MOVIDO, p, xOrigen, yOrigen, x, y);
+    }
+
+    /**
+     * Crea un evento de cambio de salud.
+     * @param p Personaje afectado.
+     * @return Evento SALUD_CAMBIADA en la posición del personaje.
+     */
+    public static EventoModelo saludCambiada(Personaje p) {
+        return new EventoModelo(TipoEvento.SALUD_CAMBIADA, p, p.getX(), p.getY(), p.getX(), p.getY());
+    }
+
+    /**
+     * Crea un evento de muerte.
+     * @param p Personaje muerto.
+     * @return Evento PERSONAJE_MUERTO en la celda que ocupaba.
+     */
+    public static EventoModelo muerto(Personaje p) {
+        return new EventoModelo(TipoEvento.PERSONAJE_MUERTO, p, p.getX(), p.getY(), p.getX(), p.getY());
+    }
+
+    /**
+     * Crea un evento de cambio de velocidad.
+     * @param p Personaje afectado.
+     * @return Evento VELOCIDAD_CAMBIADA en la posición del personaje.
+     */
+    public static EventoModelo velocidadCambiada(Personaje p) {
+        return new EventoModelo(TipoEvento.VELOCIDAD_CAMBIADA, p, p.getX(), p.getY(), p.getX(), p.getY());
+    }
+
+    /**
+     * Crea un evento de entrada de un personaje en el nivel.
+     * @param p Personaje que entra, ya en su celda.
+     * @return Evento PERSONAJE_AGREGADO en su celda.
+     */
+    public static EventoModelo agregado(Personaje p) {
+        return new EventoModelo(TipoEvento.PERSONAJE_AGREGADO, p, p.getX(), p.getY(), p.getX(), p.getY());
+    }
+
+    /**
+     * Crea un evento de salida de un personaje del nivel sin morir.
+     * @param p Personaje que sale.
+     * @return Evento PERSONAJE_RETIRADO en la celda que ocupaba.
+     */
+    public static EventoModelo retirado(Personaje p) {
+        return new EventoModelo(TipoEvento.PERSONAJE_RETIRADO, p, p.getX(), p.getY(), p.getX(), p.getY());
+    }
+
+    /**
+     * Crea un evento de avance de ronda.
+     * @return Evento TURNO_AVANZADO.
+     */
+    public static EventoModelo turnoAvanzado() {
+        return new EventoModelo(TipoEvento.TURNO_AVANZADO, null, -1, -1, -1, -1);
+    }
+
+    /**
+     * Crea un evento de cambio del campo de visión.
+     * @param xOrigen Fila del origen anterior de la visión.
+     * @param yOrigen Columna del origen anterior de la visión.
+     * @param x Fila del nuevo origen.
+     * @param y Columna del nuevo origen.
+     * @return Evento VISION_CAMBIADA.
+     */
+    public static EventoModelo visionCambiada(int xOrigen, int yOrigen, int x, int y) {
+        return new EventoModelo(TipoEvento.VISION_CAMBIADA, null, xOrigen, yOrigen, x, y);
+    }
+
+    /**
+     * Crea un evento de carga de nivel.
+     * @return Evento NIVEL_CARGADO.
+     */
+    public static EventoModelo nivelCargado() {
+        return new EventoModelo(TipoEvento.NIVEL_CARGADO, null, -1, -1, -1, -1);
+    }
+
+    /** @return Tipo del evento. */
+    public TipoEvento getTipo() { return tipo; }
+
+    /** @return Personaje afectado, o null si el evento no se refiere a uno. */
+    public Personaje getPersonaje() { return personaje; }
+
+    /** @return Fila de origen (igual a la de destino salvo en movimientos). */
+    public int getXOrigen() { return xOrigen; }
+
+    /** @return Columna de origen (igual a la de destino salvo en movimientos). */
+    public int getYOrigen() { return yOrigen; }
+
+    /** @return Fila afectada, o -1 si el evento no se refiere a una celda. */
+    public int getX() { return x; }
+
+    /** @return Columna afectada, o -1 si el evento no se refiere a una celda. */
+    public int getY() { return y; }
+}
@@ -0,0 +1,150 @@
+package com.mazmorron.modelo;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Fase de IA para los enemigos que actúan seguidos en una ronda antes que el
+ * protagonista. Sus intenciones se calculan a la vez, repartidas entre hilos,
+ * contra el nivel tal como está al empezar la fase, que nadie modifica
+ * mientras tanto. Después cada enemigo juega su turno en el orden de siempre
+ * y usa su intención solo si nadie ha tocado su celda ni sus cuatro vecinas
+ * desde entonces, que es todo lo que la decisión lee del estado cambiante.
+ *
+ * <p>Si un enemigo anterior le ha ocupado la celda a la que iba, o le ha
+ * dejado libre otra mejor, la intención se descarta y se recalcula en ese
+ * momento. Así los choques por una misma celda se resuelven a favor del que
+ * va antes en la cola, igual que resolviendo los turnos uno a uno, y el
+ * resultado para una semilla no cambia. De los paseos al azar solo se decide
+ * en la fase que el enemigo no persigue; el barajado se hace en su turno,
+ * para consumir el generador en el mismo orden.</p>
+ */
+final class FaseEnemigos {
+
+    /** Resultado de {@link #tomar} cuando no hay intención válida. */
+    static final int SIN_INTENCION = Integer.MIN_VALUE;
+
+    private static final int[][] VECINAS = {{0, 0}, {-1, 0}, {1, 0}, {0, -1}, {0, 1}};
+
+    private int ronda = -1;
+    private boolean omitida;
+    private Personaje[] grupo = new Personaje[0];
+    private int[] intenciones = new int[0];
+    private int tamanio;
+    private int cursor;
+
+    // Celdas cuyo ocupante ha cambiado desde que se calcularon las intenciones
+    private int columnas;
+    private long[] tocadas = new long[0];
+    private int[] listaTocadas = new int[16];
+    private int numTocadas;
+
+    /**
+     * @param e Enemigo al que le toca actuar.
+     * @param ronda Ronda en curso.
+     * @return True si es el siguiente del grupo en curso, o si el grupo se
+     *         decidió resolver uno a uno.
+     */
+    boolean planificada(Enemigo e, int ronda) {
+        return this.ronda == ronda && (omitida || (cursor < tamanio && grupo[cursor] == e));
+    }
+
+    /**
+     * Anota que el grupo que empieza es demasiado pequeño para repartirlo y
+     * que sus turnos se resuelven uno a uno.
+     * @param ronda Ronda en curso.
+     */
+    void omitir(int ronda) {
+        descartar();
+        this.ronda = ronda;
+        omitida = true;
+    }
+
+    /**
+     * Calcula en paralelo las intenciones de un grupo de enemigos, sustituyendo
+     * las anteriores. Los campos de flujo y visión del modelo deben estar ya
+     * actualizados para la posición del protagonista.
+     * @param modelo Modelo, que no debe cambiar hasta que termine.
+     * @param lista Enemigos en el orden en que actuarán; no puede incluir al protagonista.
+     * @param ronda Ronda en curso.
+     */
+    void planificar(ModeloJuego modelo, List<Personaje> lista, int ronda) {
+        descartar();
+        Mapa mapa = modelo.getMapa();
+        int n = lista.size();
+        if (grupo.length < n) {
+            grupo = new Personaje[n];
+            intenciones = new int[n];
+        }
+        lista.toArray(grupo);
+        tamanio = n;
+        this.ronda = ronda;
+        columnas = mapa.getColumnas();
+        int palabras = (int) (((long) mapa.getFilas() * columnas + 63) >>> 6);
+        if (tocadas.length != palabras) tocadas = new long[palabras];
+
+        // Cada hilo escribe solo en su posición del array
+        Prota prota = modelo.getProtagonista();
+        int px = prota.getX();
+        int py = prota.getY();
+        Personaje[] g = grupo;
+        int[] destino = intenciones;
+        IntStream.range(0, n).parallel().forEach(i -> destino[i] = modelo.decidir((Enemigo) g[i], px, py));
+    }
+
+    /**
+     * Anota que el ocupante de una celda ha cambiado. No hace nada si no hay
+     * intenciones pendientes.
+     * @param x Fila.
+     * @param y Columna.
+     */
+    void tocar(int x, int y) {
+        if (cursor >= tamanio) return;
+        int celda = x * columnas + y;
+        long bit = 1L << celda;
+        if ((tocadas[celda >>> 6] & bit) != 0) return;
+        tocadas[celda >>> 6] |= bit;
+        if (numTocadas == listaTocadas.length) listaTocadas = Arrays.copyOf(listaTocadas, numTocadas * 2);
+        listaTocadas[numTocadas++] = celda;
+    }
+
+    /**
+     * Retira la intención del siguiente enemigo del grupo si sigue siendo la
+     * que tomaría ahora.
+     * @param e Enemigo al que le toca actuar.
+     * @param mapa Mapa del nivel.
+     * @return Su intención, o {@link #SIN_INTENCION} si no tiene o ya no vale.
+     */
+    int tomar(Enemigo e, Mapa mapa) {
+        if (cursor >= tamanio || grupo[cursor] != e) return SIN_INTENCION;
+        int intencion = intenciones[cursor];
+        grupo[cursor++] = null;
+        if (intencion == Reglas.ALEATORIO) return intencion;
+        for (int[] v : VECINAS) {
+            int x = e.getX() + v[0];
+            int y = e.getY() + v[1];
+            if (!mapa.enLimites(x, y)) continue;
+            int celda = x * columnas + y;
+            if ((tocadas[celda >>> 6] & (1L << celda)) != 0) return SIN_INTENCION;
+        }
+        return intencion;
+    }
+
+    /**
+     * Olvida las intenciones pendientes. Se hace en cada turno del protagonista,
+     * que siempre separa un grupo del siguiente de la misma ronda, y al rebobinar.
+     */
+    void descartar() {
+        if (tamanio > 0) Arrays.fill(grupo, cursor, tamanio, null);
+        for (int i = 0; i < numTocadas; i++) {
+            int celda = listaTocadas[i];
+            tocadas[celda >>> 6] &= ~(1L << celda);
+        }
+        numTocadas = 0;
+        tamanio = 0;
+        cursor = 0;
+        ronda = -1;
+        omitida = false;
+    }
+}
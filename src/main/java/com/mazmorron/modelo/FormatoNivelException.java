@@ -0,0 +1,38 @@
+package com.mazmorron.modelo;
+
+import java.io.IOException;
+
+/**
+ * Error de formato en un fichero de nivel. Indica la línea y la columna,
+ * ambas desde 1, donde el lector encontró el problema.
+ */
+public class FormatoNivelException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int linea;
+    private final int columna;
+
+    /**
+     * Crea la excepción con la posición del error.
+     * @param origen Nombre del fichero o recurso leído.
+     * @param linea Línea del error.
+     * @param columna Columna del error.
+     * @param detalle Descripción del problema.
+     */
+    public FormatoNivelException(String origen, int linea, int columna, String detalle) {
+        super(origen + ":" + linea + ":" + columna + ": " + detalle);
+        this.linea = linea;
+        this.columna = columna;
+    }
+
+    /** @return Línea del error. */
+    public int getLinea() {
+        return linea;
+    }
+
+    /** @return Columna del error. */
+    public int getColumna() {
+        return columna;
+    }
+}
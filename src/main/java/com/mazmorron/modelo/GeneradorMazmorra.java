@@ -0,0 +1,268 @@
+package com.mazmorron.modelo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generador de mazmorras por partición binaria del espacio. Divide el mapa en
+ * regiones hasta un tamaño mínimo, excava una sala en cada hoja y une las dos
+ * mitades de cada partición con un pasillo en L, de modo que todo el suelo
+ * queda conectado con la salida del protagonista en (1, 1). Trampas y enemigos
+ * se reparten por las salas en mayor número y con más fuerza cuanto mayor es
+ * la profundidad. Con la misma semilla, tamaño y profundidad genera siempre el
+ * mismo nivel.
+ */
+public class GeneradorMazmorra {
+
+    /** Lado mínimo de un mapa generado. */
+    public static final int LADO_MINIMO = 8;
+    /** Visión máxima que puede tener un enemigo generado. */
+    public static final int VISION_MAXIMA = 7;
+
+    private static final int MIN_HOJA = 10;
+    private static final int MIN_SALA = 4;
+    private static final byte SUELO = (byte) TipoCelda.SUELO.ordinal();
+    private static final byte MURO = (byte) TipoCelda.MURO.ordinal();
+    private static final byte TRAMPA = (byte) TipoCelda.TRAMPA.ordinal();
+    private static final String[] NOMBRES = {"Pambisito", "Zombi"};
+
+    private final long semilla;
+
+    /**
+     * Crea el generador.
+     * @param semilla Semilla de la que se derivan todos los niveles.
+     */
+    public GeneradorMazmorra(long semilla) {
+        this.semilla = semilla;
+    }
+
+    /**
+     * Genera un nivel.
+     * @param filas Número de filas.
+     * @param columnas Número de columnas.
+     * @param profundidad Profundidad del nivel, desde 1; aumenta trampas y enemigos.
+     * @return Plantilla del nivel generado.
+     */
+    public PlantillaNivel generar(int filas, int columnas, int profundidad) {
+        if (filas < LADO_MINIMO || columnas < LADO_MINIMO) {
+            throw new IllegalArgumentException("El mapa generado debe medir al menos " + LADO_MINIMO + "x" + LADO_MINIMO + ".");
+        }
+        if ((long) filas * columnas > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Mapa generado demasiado grande: " + filas + "x" + columnas + ".");
+        }
+        Random r = new Random(semilla ^ (profundidad * 0x9E3779B97F4A7C15L));
+        byte[] tipos = new byte[filas * columnas];
+        Arrays.fill(tipos, MURO);
+
+        List<int[]> salas = particionar(tipos, columnas, filas, r);
+        int[] salaInicio = salas.get(0);
+        for (int[] s : salas) {
+            if (s[0] + s[1] < salaInicio[0] + salaInicio[1]) salaInicio = s;
+        }
+        excavarPasillo(tipos, columnas, 1, 1, salaInicio[0], salaInicio[1]);
+
+        colocarTrampas(tipos, columnas, salas, profundidad, r);
+        List<String> nombres = new ArrayList<>();
+        int[] datos = colocarEnemigos(tipos, columnas, salas, salaInicio, profundidad, r, nombres);
+        return new PlantillaNivel(filas, columnas, tipos, nombres.toArray(new String[0]), datos);
+    }
+
+    /**
+     * Genera un trozo cuadrado de un mundo mayor. Además de lo que hace
+     * {@link #generar}, abre una puerta en el centro de cada borde indicado y
+     * la une con el resto del suelo, de modo que trozos vecinos con puertas
+     * enfrentadas quedan conectados.
+     * @param lado Lado del trozo.
+     * @param profundidad Profundidad del trozo.
+     * @param norte True para abrir el borde de la fila 0.
+     * @param sur True para abrir el borde de la última fila.
+     * @param oeste True para abrir el borde de la columna 0.
+     * @param este True para abrir el borde de la última columna.
+     * @return Plantilla del trozo.
+     */
+    PlantillaNivel generarTrozo(int lado, int profundidad, boolean norte, boolean sur, boolean oeste, boolean este) {
+        PlantillaNivel base = generar(lado, lado, profundidad);
+        byte[] tipos = base.copiarTipos();
+        int m = lado / 2;
+        if (norte) abrirPuerta(tipos, lado, 0, m, 1, m);
+        if (sur) abrirPuerta(tipos, lado, lado - 1, m, lado - 2, m);
+        if (oeste) abrirPuerta(tipos, lado, m, 0, m, 1);
+        if (este) abrirPuerta(tipos, lado, m, lado - 1, m, lado - 2);
+        return base.conTipos(tipos);
+    }
+
+    /**
+     * Abre una puerta en el borde y la une con la salida en (1, 1), que ya
+     * está conectada con todo el suelo del trozo.
+     */
+    private static void abrirPuerta(byte[] tipos, int lado, int px, int py, int ix, int iy) {
+        tipos[px * lado + py] = SUELO;
+        excavarPasillo(tipos, lado, ix, iy, 1, 1);
+    }
+
+    /**
+     * Divide el interior del mapa en regiones, excava una sala por hoja y
+     * conecta las dos mitades de cada división. El árbol se guarda en arrays
+     * en preorden, así que recorrerlo al revés visita los hijos antes que el
+     * padre sin recursión, también en mapas de millones de celdas.
+     * @return Salas como {x, y, alto, ancho}.
+     */
+    private static List<int[]> particionar(byte[] tipos, int columnas, int filas, Random r) {
+        int capacidad = 16;
+        int[] rx = new int[capacidad], ry = new int[capacidad], rh = new int[capacidad], rw = new int[capacidad];
+        int[] hijo = new int[capacidad];
+        int n = 1;
+        rx[0] = 1;
+        ry[0] = 1;
+        rh[0] = filas - 2;
+        rw[0] = columnas - 2;
+        for (int i = 0; i < n; i++) {
+            hijo[i] = -1;
+            boolean horizontal = rh[i] >= 2 * MIN_HOJA && (rh[i] >= rw[i] || rw[i] < 2 * MIN_HOJA);
+            boolean vertical = !horizontal && rw[i] >= 2 * MIN_HOJA;
+            if (!horizontal && !vertical) continue;
+            if (n + 2 > capacidad) {
+                capacidad *= 2;
+                rx = Arrays.copyOf(rx, capacidad);
+                ry = Arrays.copyOf(ry, capacidad);
+                rh = Arrays.copyOf(rh, capacidad);
+                rw = Arrays.copyOf(rw, capacidad);
+                hijo = Arrays.copyOf(hijo, capacidad);
+            }
+            int a = n, b = n + 1;
+            n += 2;
+            hijo[i] = a;
+            if (horizontal) {
+                int corte = MIN_HOJA + r.nextInt(rh[i] - 2 * MIN_HOJA + 1);
+                rx[a] = rx[i]; ry[a] = ry[i]; rh[a] = corte; rw[a] = rw[i];
+                rx[b] = rx[i] + corte; ry[b] = ry[i]; rh[b] = rh[i] - corte; rw[b] = rw[i];
+            } else {
+                int corte = MIN_HOJA + r.nextInt(rw[i] - 2 * MIN_HOJA + 1);
+                rx[a] = rx[i]; ry[a] = ry[i]; rh[a] = rh[i]; rw[a] = corte;
+                rx[b] = rx[i]; ry[b] = ry[i] + corte; rh[b] = rh[i]; rw[b] = rw[i] - corte;
+            }
+        }
+
+        List<int[]> salas = new ArrayList<>();
+        // Punto de cada subárbol por el que se le conecta un pasillo
+        int[] px = new int[n], py = new int[n];
+        for (int i = n - 1; i >= 0; i--) {
+            if (hijo[i] < 0) {
+                int[] s = excavarSala(tipos, columnas, rx[i], ry[i], rh[i], rw[i], r);
+                salas.add(s);
+                px[i] = s[0] + r.nextInt(s[2]);
+                py[i] = s[1] + r.nextInt(s[3]);
+            } else {
+                int a = hijo[i], b = a + 1;
+                excavarPasillo(tipos, columnas, px[a], py[a], px[b], py[b]);
+                int elegido = r.nextBoolean() ? a : b;
+                px[i] = px[elegido];
+                py[i] = py[elegido];
+            }
+        }
+        return salas;
+    }
+
+    /**
+     * Excava una sala al azar dentro de una región, dejando al menos una celda
+     * de muro en su borde cuando la región lo permite.
+     * @return Sala como {x, y, alto, ancho}.
+     */
+    private static int[] excavarSala(byte[] tipos, int columnas, int x, int y, int alto, int ancho, Random r) {
+        int maxAlto = Math.max(1, alto - 2);
+        int maxAncho = Math.max(1, ancho - 2);
+        int h = Math.min(maxAlto, MIN_SALA + r.nextInt(Math.max(1, maxAlto - MIN_SALA + 1)));
+        int w = Math.min(maxAncho, MIN_SALA + r.nextInt(Math.max(1, maxAncho - MIN_SALA + 1)));
+        int sx = x + (alto > h ? 1 + r.nextInt(Math.max(1, alto - h - 1)) : 0);
+        int sy = y + (ancho > w ? 1 + r.nextInt(Math.max(1, ancho - w - 1)) : 0);
+        for (int i = sx; i < sx + h; i++) {
+            Arrays.fill(tipos, i * columnas + sy, i * columnas + sy + w, SUELO);
+        }
+        return new int[]{sx, sy, h, w};
+    }
+
+    /** Excava un pasillo en L: primero a lo largo de la fila de origen y después por la columna de destino. */
+    private static void excavarPasillo(byte[] tipos, int columnas, int x1, int y1, int x2, int y2) {
+        for (int j = Math.min(y1, y2); j <= Math.max(y1, y2); j++) {
+            tipos[x1 * columnas + j] = SUELO;
+        }
+        for (int i = Math.min(x1, x2); i <= Math.max(x1, x2); i++) {
+            tipos[i * columnas + y2] = SUELO;
+        }
+    }
+
+    /**
+     * Siembra trampas en las salas. Los pasillos quedan libres y la salida del
+     * protagonista y sus vecinas nunca tienen trampa.
+     */
+    private static void colocarTrampas(byte[] tipos, int columnas, List<int[]> salas, int profundidad, Random r) {
+        double probabilidad = Math.min(0.08, 0.015 + 0.005 * profundidad);
+        for (int[] s : salas) {
+            for (int i = s[0]; i < s[0] + s[2]; i++) {
+                for (int j = s[1]; j < s[1] + s[3]; j++) {
+                    if (i <= 2 && j <= 2) continue;
+                    if (r.nextDouble() < probabilidad) tipos[i * columnas + j] = TRAMPA;
+                }
+            }
+        }
+    }
+
+    /**
+     * Reparte enemigos por las salas en número y fuerza crecientes con la
+     * profundidad. La sala de inicio solo recibe enemigos si es la única, y
+     * nunca junto a la salida. Todo nivel tiene al menos un enemigo.
+     * @param nombres Recibe el nombre de cada enemigo colocado.
+     * @return Datos de los enemigos en el formato interno de {@link PlantillaNivel}.
+     */
+    private static int[] colocarEnemigos(byte[] tipos, int columnas, List<int[]> salas, int[] salaInicio,
+                                         int profundidad, Random r, List<String> nombres) {
+        double porSala = Math.min(4.0, 0.5 + 0.25 * profundidad);
+        int[][] datos = {new int[16 * PlantillaNivel.CAMPOS_ENEMIGO]};
+        BitSet ocupadas = new BitSet();
+        for (int[] s : salas) {
+            if (s == salaInicio && salas.size() > 1) continue;
+            int cantidad = (int) porSala + (r.nextDouble() < porSala - (int) porSala ? 1 : 0);
+            for (int k = 0; k < cantidad; k++) {
+                colocarEnemigo(tipos, columnas, s, profundidad, r, ocupadas, datos, nombres);
+            }
+        }
+        for (int intento = 0; nombres.isEmpty() && intento < 100; intento++) {
+            int[] s = salas.get(r.nextInt(salas.size()));
+            if (s != salaInicio || salas.size() == 1) {
+                colocarEnemigo(tipos, columnas, s, profundidad, r, ocupadas, datos, nombres);
+            }
+        }
+        return Arrays.copyOf(datos[0], nombres.size() * PlantillaNivel.CAMPOS_ENEMIGO);
+    }
+
+    /**
+     * Intenta colocar un enemigo en una celda libre al azar de una sala.
+     * @param datos Array de datos de enemigos, que se sustituye si crece.
+     * @return True si se colocó.
+     */
+    private static boolean colocarEnemigo(byte[] tipos, int columnas, int[] sala, int profundidad, Random r,
+                                          BitSet ocupadas, int[][] datos, List<String> nombres) {
+        int x = sala[0] + r.nextInt(sala[2]);
+        int y = sala[1] + r.nextInt(sala[3]);
+        int celda = x * columnas + y;
+        if (tipos[celda] != SUELO || ocupadas.get(celda) || (x <= 3 && y <= 3)) return false;
+        ocupadas.set(celda);
+        int base = nombres.size() * PlantillaNivel.CAMPOS_ENEMIGO;
+        if (base + PlantillaNivel.CAMPOS_ENEMIGO > datos[0].length) {
+            datos[0] = Arrays.copyOf(datos[0], datos[0].length * 2);
+        }
+        int[] d = datos[0];
+        d[base] = x;
+        d[base + 1] = y;
+        d[base + 2] = 20 + 5 * profundidad + r.nextInt(11);
+        d[base + 3] = 3 + profundidad + r.nextInt(3);
+        d[base + 4] = 1 + profundidad / 2 + r.nextInt(2);
+        d[base + 5] = 1 + r.nextInt(2 + profundidad / 3);
+        d[base + 6] = Math.min(VISION_MAXIMA, 3 + Math.min(3, profundidad / 2) + r.nextInt(2));
+        nombres.add(NOMBRES[r.nextInt(NOMBRES.length)]);
+        return true;
+    }
+}
@@ -0,0 +1,162 @@
+package com.mazmorron.modelo;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Historial de los últimos turnos del jugador para poder rebobinarlos. En
+ * lugar de copias del estado, cada turno guarda solo lo que cambió desde que
+ * empezó: el valor anterior de cada personaje tocado (con su clave en la cola
+ * de iniciativa) y las celdas que se exploraron por primera vez, más unos
+ * pocos valores globales. Así mil turnos cuestan lo que cambió en ellos, no
+ * mil mapas.
+ */
+final class HistorialTurnos {
+
+    /**
+     * Estado de un personaje al empezar el turno, antes de su primer cambio.
+     */
+    static final class Cambio {
+        final Personaje personaje;
+        final int salud;
+        final int x;
+        final int y;
+        final int velocidad;
+        final boolean vivo;
+        final ColaIniciativa.Clave clave;
+
+        Cambio(Personaje personaje, boolean vivo, ColaIniciativa.Clave clave) {
+            this.personaje = personaje;
+            this.salud = personaje.getSalud();
+            this.x = personaje.getX();
+            this.y = personaje.getY();
+            this.velocidad = personaje.getVelocidad();
+            this.vivo = vivo;
+            this.clave = clave;
+        }
+    }
+
+    /**
+     * Cambios de un turno del jugador, desde su acción hasta su siguiente turno.
+     */
+    static final class Turno {
+        final int ronda;
+        final long azar;
+        final ColaIniciativa.Marca cola;
+        Cambio[] cambios;
+        int[] exploradas;
+
+        private Turno(int ronda, long azar, ColaIniciativa.Marca cola) {
+            this.ronda = ronda;
+            this.azar = azar;
+            this.cola = cola;
+        }
+    }
+
+    private final int maxTurnos;
+    private final ArrayDeque<Turno> turnos = new ArrayDeque<>();
+
+    // Turno en curso: se compacta en arrays al cerrarlo
+    private Turno abierto;
+    private final Set<Personaje> tocados = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final List<Cambio> cambios = new ArrayList<>();
+    private int[] exploradas = new int[64];
+    private int numExploradas;
+
+    /**
+     * Crea un historial.
+     * @param maxTurnos Turnos que se conservan; al superarlos se olvidan los más antiguos.
+     */
+    HistorialTurnos(int maxTurnos) {
+        this.maxTurnos = maxTurnos;
+    }
+
+    /** @return Turnos que se conservan como máximo. */
+    int getMaxTurnos() {
+        return maxTurnos;
+    }
+
+    /** @return Turnos que se pueden rebobinar. */
+    int getTamanio() {
+        return turnos.size();
+    }
+
+    /**
+     * Empieza a anotar un turno del jugador.
+     * @param ronda Ronda al empezar.
+     * @param azar Estado del generador aleatorio al empezar.
+     * @param cola Estado global de la cola de iniciativa al empezar.
+     */
+    void empezar(int ronda, long azar, ColaIniciativa.Marca cola) {
+        cerrar();
+        abierto = new Turno(ronda, azar, cola);
+        turnos.addLast(abierto);
+        if (turnos.size() > maxTurnos) turnos.removeFirst();
+    }
+
+    /**
+     * Descarta el turno en curso, que no llegó a cambiar nada.
+     */
+    void descartar() {
+        if (abierto == null) return;
+        turnos.removeLast();
+        abierto = null;
+        limpiar();
+    }
+
+    /**
+     * Indica si hay que anotar el estado de un personaje: solo la primera
+     * vez que cambia en el turno en curso.
+     * @param p Personaje a punto de cambiar.
+     * @return True si hay un turno abierto y el personaje aún no se había tocado.
+     */
+    boolean primeraVez(Personaje p) {
+        return abierto != null && tocados.add(p);
+    }
+
+    /**
+     * Anota el estado anterior de un personaje.
+     * @param c Estado antes del cambio.
+     */
+    void anotar(Cambio c) {
+        cambios.add(c);
+    }
+
+    /**
+     * Anota una celda explorada por primera vez en el turno en curso.
+     * @param indice Índice de la celda, fila por columnas más columna.
+     */
+    void explorada(int indice) {
+        if (abierto == null) return;
+        if (numExploradas == exploradas.length) exploradas = Arrays.copyOf(exploradas, 2 * numExploradas);
+        exploradas[numExploradas++] = indice;
+    }
+
+    /**
+     * Saca el último turno para deshacerlo.
+     * @return Turno más reciente, o null si no queda ninguno.
+     */
+    Turno deshacer() {
+        cerrar();
+        return turnos.pollLast();
+    }
+
+    private void cerrar() {
+        if (abierto == null) return;
+        abierto.cambios = cambios.toArray(new Cambio[0]);
+        abierto.exploradas = Arrays.copyOf(exploradas, numExploradas);
+        abierto = null;
+        limpiar();
+    }
+
+    private void limpiar() {
+        tocados.clear();
+        cambios.clear();
+        numExploradas = 0;
+    }
+}
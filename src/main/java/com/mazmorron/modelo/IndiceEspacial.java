@@ -0,0 +1,151 @@
+package com.mazmorron.modelo;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Índice espacial de personajes basado en una rejilla uniforme de cubetas.
+ * Cada cubeta agrupa los personajes de un bloque de {@value #TAM_CUBETA}x{@value #TAM_CUBETA}
+ * celdas, así que las consultas por rango o por cercanía solo recorren las cubetas
+ * que tocan la zona buscada, independientemente del número total de personajes.
+ * Los personajes registrados avisan al índice desde {@link Personaje#setPosicion}.
+ */
+public class IndiceEspacial {
+
+    /** Lado de cada cubeta, en celdas. */
+    public static final int TAM_CUBETA = 16;
+
+    private final Map<Long, List<Personaje>> cubetas = new HashMap<>();
+    private int tamanio;
+
+    /** @return Número de personajes registrados. */
+    public int getTamanio() {
+        return tamanio;
+    }
+
+    /**
+     * Registra un personaje en su posición actual.
+     * @param p Personaje a registrar.
+     */
+    public void agregar(Personaje p) {
+        cubetas.computeIfAbsent(cubeta(p.getX(), p.getY()), k -> new ArrayList<>()).add(p);
+        p.indice = this;
+        tamanio++;
+    }
+
+    /**
+     * Elimina un personaje del índice.
+     * @param p Personaje a eliminar.
+     */
+    public void quitar(Personaje p) {
+        if (p.indice != this) return;
+        quitarDeCubeta(p, cubeta(p.getX(), p.getY()));
+        p.indice = null;
+        tamanio--;
+    }
+
+    /**
+     * Elimina todos los personajes del índice.
+     */
+    public void vaciar() {
+        for (List<Personaje> lista : cubetas.values()) {
+            for (Personaje p : lista) p.indice = null;
+        }
+        cubetas.clear();
+        tamanio = 0;
+    }
+
+    /**
+     * Actualiza la cubeta de un personaje que ha cambiado de posición.
+     * Solo hay trabajo cuando cruza el borde de una cubeta.
+     * @param p Personaje movido, ya con la posición nueva.
+     * @param xAnterior Fila anterior.
+     * @param yAnterior Columna anterior.
+     */
+    void mover(Personaje p, int xAnterior, int yAnterior) {
+        long antes = cubeta(xAnterior, yAnterior);
+        long despues = cubeta(p.getX(), p.getY());
+        if (antes == despues) return;
+        quitarDeCubeta(p, antes);
+        cubetas.computeIfAbsent(despues, k -> new ArrayList<>()).add(p);
+    }
+
+    /**
+     * Busca los personajes a una distancia Manhattan dada de un punto.
+     * @param x Fila del centro.
+     * @param y Columna del centro.
+     * @param radio Distancia máxima.
+     * @param salida Lista donde se añaden los personajes encontrados.
+     */
+    public void buscarEnRango(int x, int y, int radio, List<Personaje> salida) {
+        int cx0 = Math.floorDiv(x - radio, TAM_CUBETA), cx1 = Math.floorDiv(x + radio, TAM_CUBETA);
+        int cy0 = Math.floorDiv(y - radio, TAM_CUBETA), cy1 = Math.floorDiv(y + radio, TAM_CUBETA);
+        for (int cx = cx0; cx <= cx1; cx++) {
+            for (int cy = cy0; cy <= cy1; cy++) {
+                List<Personaje> lista = cubetas.get(clave(cx, cy));
+                if (lista == null) continue;
+                for (Personaje p : lista) {
+                    if (Math.abs(p.getX() - x) + Math.abs(p.getY() - y) <= radio) salida.add(p);
+                }
+            }
+        }
+    }
+
+    /**
+     * Busca el personaje más cercano a un punto (distancia Manhattan) que cumpla
+     * un filtro, recorriendo anillos de cubetas cada vez más alejados.
+     * @param x Fila del centro.
+     * @param y Columna del centro.
+     * @param radioMaximo Distancia máxima de búsqueda.
+     * @param filtro Condición que debe cumplir el personaje.
+     * @return Personaje más cercano, o null si no hay ninguno dentro del radio.
+     */
+    public Personaje buscarMasCercano(int x, int y, int radioMaximo, Predicate<Personaje> filtro) {
+        int cx = Math.floorDiv(x, TAM_CUBETA);
+        int cy = Math.floorDiv(y, TAM_CUBETA);
+        int anillos = radioMaximo / TAM_CUBETA + 1;
+        Personaje mejor = null;
+        int mejorDist = radioMaximo + 1;
+        for (int a = 0; a <= anillos; a++) {
+            // Cualquier celda del anillo a está como mínimo a (a - 1) * TAM_CUBETA + 1 pasos
+            if (mejor != null && (a - 1) * TAM_CUBETA + 1 > mejorDist) break;
+            for (int i = cx - a; i <= cx + a; i++) {
+                for (int j = cy - a; j <= cy + a; j++) {
+                    if (Math.max(Math.abs(i - cx), Math.abs(j - cy)) != a) continue;
+                    List<Personaje> lista = cubetas.get(clave(i, j));
+                    if (lista == null) continue;
+                    for (Personaje p : lista) {
+                        int d = Math.abs(p.getX() - x) + Math.abs(p.getY() - y);
+                        if (d < mejorDist && filtro.test(p)) {
+                            mejor = p;
+                            mejorDist = d;
+                        }
+                    }
+                }
+            }
+        }
+        return mejor;
+    }
+
+    private void quitarDeCubeta(Personaje p, long clave) {
+        List<Personaje> lista = cubetas.get(clave);
+        if (lista == null) return;
+        int i = lista.indexOf(p);
+        if (i < 0) return;
+        // Se sustituye por el último para evitar desplazar la lista
+        lista.set(i, lista.get(lista.size() - 1));
+        lista.remove(lista.size() - 1);
+        if (lista.isEmpty()) cubetas.remove(clave);
+    }
+
+    private static long cubeta(int x, int y) {
+        return clave(Math.floorDiv(x, TAM_CUBETA), Math.floorDiv(y, TAM_CUBETA));
+    }
+
+    private static long clave(int cx, int cy) {
+        return ((long) cx << 32) | (cy & 0xffffffffL);
+    }
+}
@@ -0,0 +1,137 @@
+package com.mazmorron.modelo;
+
+import java.util.Arrays;
+
+/**
+ * Tabla hash de direccionamiento abierto que asocia posiciones del mapa con el
+ * personaje que las ocupa. Las claves son primitivas (fila y columna empaquetadas
+ * en un long), así que consultar o mover un ocupante no crea objetos, y la
+ * memoria depende del número de personajes y no del tamaño del mapa.
+ */
+public class IndiceOcupantes {
+
+    private static final long VACIA = Long.MIN_VALUE;
+
+    private long[] claves;
+    private Personaje[] valores;
+    private int tamanio;
+    private int mascara;
+
+    /**
+     * Crea un índice vacío.
+     */
+    public IndiceOcupantes() {
+        reservar(16);
+    }
+
+    /** @return Número de celdas ocupadas. */
+    public int getTamanio() {
+        return tamanio;
+    }
+
+    /**
+     * Obtiene el ocupante de una celda.
+     * @param x Fila.
+     * @param y Columna.
+     * @return Personaje en la celda, o null si está vacía.
+     */
+    public Personaje obtener(int x, int y) {
+        long clave = clave(x, y);
+        for (int i = posicion(clave); ; i = (i + 1) & mascara) {
+            long c = claves[i];
+            if (c == clave) return valores[i];
+            if (c == VACIA) return null;
+        }
+    }
+
+    /**
+     * Establece o libera el ocupante de una celda.
+     * @param x Fila.
+     * @param y Columna.
+     * @param p Personaje, o null para dejar la celda vacía.
+     */
+    public void poner(int x, int y, Personaje p) {
+        if (p == null) {
+            quitar(clave(x, y));
+            return;
+        }
+        if ((tamanio + 1) * 2 > claves.length) {
+            redimensionar(claves.length * 2);
+        }
+        insertar(clave(x, y), p);
+    }
+
+    /**
+     * Vacía el índice.
+     */
+    public void limpiar() {
+        reservar(16);
+    }
+
+    private void insertar(long clave, Personaje p) {
+        int i = posicion(clave);
+        while (claves[i] != VACIA) {
+            if (claves[i] == clave) {
+                valores[i] = p;
+                return;
+            }
+            i = (i + 1) & mascara;
+        }
+        claves[i] = clave;
+        valores[i] = p;
+        tamanio++;
+    }
+
+    /**
+     * Elimina una clave desplazando hacia atrás las entradas siguientes del mismo
+     * grupo, de forma que no quedan marcas de borrado que alarguen las búsquedas.
+     * @param clave Clave a eliminar.
+     */
+    private void quitar(long clave) {
+        int i = posicion(clave);
+        while (claves[i] != clave) {
+            if (claves[i] == VACIA) return;
+            i = (i + 1) & mascara;
+        }
+        tamanio--;
+        int hueco = i;
+        for (int j = (hueco + 1) & mascara; claves[j] != VACIA; j = (j + 1) & mascara) {
+            int ideal = posicion(claves[j]);
+            // La entrada j puede ocupar el hueco si su posición ideal no está entre el hueco y j
+            boolean mover = hueco <= j ? (ideal <= hueco || ideal > j) : (ideal <= hueco && ideal > j);
+            if (mover) {
+                claves[hueco] = claves[j];
+                valores[hueco] = valores[j];
+                hueco = j;
+            }
+        }
+        claves[hueco] = VACIA;
+        valores[hueco] = null;
+    }
+
+    private void redimensionar(int capacidad) {
+        long[] viejasClaves = claves;
+        Personaje[] viejosValores = valores;
+        reservar(capacidad);
+        for (int i = 0; i < viejasClaves.length; i++) {
+            if (viejasClaves[i] != VACIA) insertar(viejasClaves[i], viejosValores[i]);
+        }
+    }
+
+    private void reservar(int capacidad) {
+        claves = new long[capacidad];
+        Arrays.fill(claves, VACIA);
+        valores = new Personaje[capacidad];
+        mascara = capacidad - 1;
+        tamanio = 0;
+    }
+
+    private int posicion(long clave) {
+        long h = clave * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mascara;
+    }
+
+    private static long clave(int x, int y) {
+        return ((long) x << 32) | (y & 0xffffffffL);
+    }
+}
@@ -0,0 +1,299 @@
+package com.mazmorron.modelo;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Lector de ficheros de nivel que recorre los bytes una sola vez, desde un
+ * fichero proyectado en memoria o desde un flujo con búfer propio, y escribe
+ * el terreno directamente en el array del {@link Mapa}. No crea una cadena por
+ * línea ni por campo: solo los nombres de enemigos nuevos generan un String.
+ * Los errores se lanzan como {@link FormatoNivelException} con línea y columna.
+ */
+public final class LectorNivel implements Closeable {
+
+    private static final int TAM_BLOQUE = 1 << 16;
+    private static final int MAX_CELDAS = Integer.MAX_VALUE - 8;
+    private static final int MAX_NOMBRES_CONOCIDOS = 16;
+    private static final byte CODIGO_MURO = (byte) TipoCelda.MURO.ordinal();
+    private static final byte CODIGO_TRAMPA = (byte) TipoCelda.TRAMPA.ordinal();
+
+    private final String origen;
+    private final ByteBuffer proyectado;
+    private final InputStream entrada;
+    private final byte[] bloque;
+    private int pos;
+    private int lim;
+
+    private int linea = 1;
+    private int columna = 0;
+    private boolean finLinea;
+    private boolean agotado;
+
+    private LectorNivel(String origen, ByteBuffer proyectado, InputStream entrada) {
+        this.origen = origen;
+        this.proyectado = proyectado;
+        this.entrada = entrada;
+        this.bloque = entrada != null ? new byte[TAM_BLOQUE] : null;
+    }
+
+    /**
+     * Crea un lector sobre un flujo. El lector cierra el flujo al cerrarse.
+     * @param in Flujo de entrada.
+     * @param origen Nombre del recurso para los mensajes de error.
+     * @return Lector preparado.
+     */
+    public static LectorNivel de(InputStream in, String origen) {
+        if (in == null) throw new IllegalArgumentException(origen + ": recurso no encontrado.");
+        return new LectorNivel(origen, null, in);
+    }
+
+    /**
+     * Crea un lector que proyecta en memoria el fichero completo.
+     * @param ruta Fichero del nivel.
+     * @return Lector preparado.
+     * @throws IOException Si no se puede abrir o proyectar el fichero.
+     */
+    public static LectorNivel abrir(Path ruta) throws IOException {
+        try (FileChannel canal = FileChannel.open(ruta, StandardOpenOption.READ)) {
+            long tamanio = canal.size();
+            if (tamanio > Integer.MAX_VALUE) {
+                throw new IOException(ruta + ": fichero de nivel demasiado grande.");
+            }
+            return new LectorNivel(ruta.toString(), canal.map(FileChannel.MapMode.READ_ONLY, 0, tamanio), null);
+        }
+    }
+
+    /**
+     * Lee un mapa: una fila por línea, '#' muro, '@' trampa y cualquier otro
+     * carácter suelo. Las líneas en blanco se ignoran y las filas más cortas
+     * se completan con suelo.
+     * @return Mapa leído.
+     * @throws IOException Si falla la lectura o el mapa está vacío o es demasiado grande.
+     */
+    public MapaPlano leerMapa() throws IOException {
+        byte[] codigos = new byte[capacidadInicial()];
+        int[] anchos = new int[64];
+        int n = 0;
+        int filas = 0;
+        int columnas = 0;
+        int inicioFila = 0;
+        boolean enBlanco = true;
+        int b;
+        do {
+            b = leer();
+            if (b == '\n' || b == -1) {
+                if (enBlanco) {
+                    n = inicioFila;
+                } else {
+                    if (filas == anchos.length) anchos = Arrays.copyOf(anchos, filas * 2);
+                    int ancho = n - inicioFila;
+                    anchos[filas++] = ancho;
+                    columnas = Math.max(columnas, ancho);
+                    inicioFila = n;
+                }
+                enBlanco = true;
+            } else if (b != '\r' && (b & 0xC0) != 0x80) {
+                if (n == codigos.length) {
+                    if (n == MAX_CELDAS) throw error("el mapa es demasiado grande");
+                    codigos = Arrays.copyOf(codigos, (int) Math.min(MAX_CELDAS, 2L * n));
+                }
+                codigos[n++] = b == '#' ? CODIGO_MURO : b == '@' ? CODIGO_TRAMPA : 0;
+                if (b > ' ') enBlanco = false;
+            }
+        } while (b != -1);
+
+        if (filas == 0) throw error("el mapa no tiene filas");
+        if ((long) filas * columnas > MAX_CELDAS) throw error("el mapa es demasiado grande");
+        int celdas = filas * columnas;
+        byte[] tipos;
+        if (n == celdas) {
+            tipos = codigos.length == celdas ? codigos : Arrays.copyOf(codigos, celdas);
+        } else {
+            // Filas de distinto ancho: se recolocan y los huecos quedan como suelo
+            tipos = new byte[celdas];
+            for (int i = 0, desde = 0; i < filas; desde += anchos[i], i++) {
+                System.arraycopy(codigos, desde, tipos, i * columnas, anchos[i]);
+            }
+        }
+        return new MapaPlano(filas, columnas, tipos);
+    }
+
+    /**
+     * Lee enemigos con el formato {@code nombre,x,y,salud,ataque,defensa,velocidad,vision},
+     * uno por línea, ignorando las líneas en blanco.
+     * @param mapa Mapa del nivel, para comprobar que las posiciones están dentro.
+     * @param destino Recibe cada enemigo ya posicionado.
+     * @throws IOException Si falla la lectura o alguna línea está mal formada.
+     */
+    public void leerEnemigos(Mapa mapa, Consumer<Enemigo> destino) throws IOException {
+        List<byte[]> bytesConocidos = new ArrayList<>();
+        List<String> nombresConocidos = new ArrayList<>();
+        byte[] nombre = new byte[32];
+        while (true) {
+            int b = leer();
+            while (b != -1 && b <= ' ') b = leer();
+            if (b == -1) return;
+
+            int largo = 0;
+            while (b != ',') {
+                if (b == '\n' || b == -1) throw error("se esperaba ',' tras el nombre");
+                if (largo == nombre.length) nombre = Arrays.copyOf(nombre, largo * 2);
+                nombre[largo++] = (byte) b;
+                b = leer();
+            }
+            String n = nombre(nombre, largo, bytesConocidos, nombresConocidos);
+
+            int lineaPos = linea;
+            int columnaPos = columna + 1;
+            int x = leerEntero(false);
+            int y = leerEntero(false);
+            int salud = leerEntero(false);
+            int ataque = leerEntero(false);
+            int defensa = leerEntero(false);
+            int velocidad = leerEntero(false);
+            int vision = leerEntero(true);
+            if (!mapa.enLimites(x, y)) {
+                throw new FormatoNivelException(origen, lineaPos, columnaPos,
+                    "posición (" + x + ", " + y + ") fuera del mapa");
+            }
+            Enemigo e = new Enemigo(n, salud, ataque, defensa, velocidad, vision);
+            e.setPosicion(x, y);
+            destino.accept(e);
+        }
+    }
+
+    /**
+     * Cierra el flujo de entrada, si lo hay. La proyección la libera el recolector.
+     * @throws IOException Si falla el cierre del flujo.
+     */
+    @Override
+    public void close() throws IOException {
+        if (entrada != null) entrada.close();
+    }
+
+    /**
+     * Lee un entero decimal, opcionalmente negativo, y su separador.
+     * @param ultimo True si es el último campo de la línea.
+     * @return Valor leído.
+     * @throws IOException Si el campo no es un número o falta el separador.
+     */
+    private int leerEntero(boolean ultimo) throws IOException {
+        int b = leer();
+        boolean negativo = b == '-';
+        if (negativo) b = leer();
+        if (b < '0' || b > '9') throw error("se esperaba un número");
+        long valor = 0;
+        do {
+            valor = valor * 10 + (b - '0');
+            if (valor > Integer.MAX_VALUE) throw error("número fuera de rango");
+            b = leer();
+        } while (b >= '0' && b <= '9');
+        if (ultimo) {
+            while (b == ' ' || b == '\t' || b == '\r') b = leer();
+            if (b != '\n' && b != -1) throw error("sobran datos al final de la línea");
+        } else if (b != ',') {
+            throw error(b == '\n' || b == -1 ? "faltan campos" : "se esperaba ','");
+        }
+        return negativo ? (int) -valor : (int) valor;
+    }
+
+    /**
+     * Devuelve el nombre leído reutilizando el String si ya apareció antes.
+     * @param nombre Bytes del nombre.
+     * @param largo Número de bytes válidos.
+     * @param bytesConocidos Bytes de los nombres ya vistos.
+     * @param nombresConocidos Nombres ya vistos, en el mismo orden.
+     * @return Nombre como String.
+     */
+    private static String nombre(byte[] nombre, int largo, List<byte[]> bytesConocidos, List<String> nombresConocidos) {
+        for (int i = 0; i < bytesConocidos.size(); i++) {
+            byte[] conocido = bytesConocidos.get(i);
+            if (Arrays.equals(conocido, 0, conocido.length, nombre, 0, largo)) {
+                return nombresConocidos.get(i);
+            }
+        }
+        String n = new String(nombre, 0, largo, StandardCharsets.UTF_8);
+        if (bytesConocidos.size() < MAX_NOMBRES_CONOCIDOS) {
+            bytesConocidos.add(Arrays.copyOf(nombre, largo));
+            nombresConocidos.add(n);
+        }
+        return n;
+    }
+
+    /**
+     * Lee el siguiente byte y actualiza línea y columna. Los bytes de
+     * continuación UTF-8 no cuentan como columna.
+     * @return Byte leído sin signo, o -1 al final de la entrada.
+     * @throws IOException Si falla la lectura del flujo.
+     */
+    private int leer() throws IOException {
+        int b;
+        if (proyectado != null) {
+            if (!proyectado.hasRemaining()) return agotar();
+            b = proyectado.get() & 0xFF;
+        } else {
+            if (pos == lim && !rellenar()) return agotar();
+            b = bloque[pos++] & 0xFF;
+        }
+        if (finLinea) {
+            linea++;
+            columna = 0;
+            finLinea = false;
+        }
+        if (b == '\n') {
+            finLinea = true;
+        } else if ((b & 0xC0) != 0x80) {
+            columna++;
+        }
+        return b;
+    }
+
+    /**
+     * Marca el final de la entrada.
+     * @return -1.
+     */
+    private int agotar() {
+        agotado = true;
+        return -1;
+    }
+
+    /**
+     * Rellena el búfer desde el flujo.
+     * @return False si el flujo se ha agotado.
+     * @throws IOException Si falla la lectura.
+     */
+    private boolean rellenar() throws IOException {
+        int leidos = entrada.read(bloque, 0, bloque.length);
+        if (leidos <= 0) return false;
+        pos = 0;
+        lim = leidos;
+        return true;
+    }
+
+    /** @return Capacidad inicial del array de terreno según el tamaño conocido de la entrada. */
+    private int capacidadInicial() throws IOException {
+        int conocido = proyectado != null ? proyectado.remaining() : entrada.available();
+        return Math.max(1024, conocido);
+    }
+
+    /**
+     * Crea un error en la posición actual. Un error al final de una línea o de
+     * la entrada se sitúa justo después del último carácter.
+     * @param detalle Descripción del problema.
+     * @return Excepción a lanzar.
+     */
+    private FormatoNivelException error(String detalle) {
+        return new FormatoNivelException(origen, linea, finLinea || agotado || columna == 0 ? columna + 1 : columna, detalle);
+    }
+}
@@ -0,0 +1,110 @@
+package com.mazmorron.modelo;
+
+/**
+ * Mapa de un nivel: sus dimensiones, el terreno y las celdas exploradas de
+ * cada celda y sus ocupantes, guardados en un índice disperso por posición.
+ * Cómo se guardan el terreno y la exploración lo decide cada subclase:
+ * {@link MapaPlano} los tiene enteros en memoria y {@link MundoTroceado} por
+ * trozos que carga y desaloja. Lo que necesita el mapa entero, como copiar
+ * el terreno para guardar una partida, solo lo ofrece {@link MapaPlano}.
+ */
+public abstract class Mapa {
+
+    private final int filas;
+    private final int columnas;
+    private final IndiceOcupantes ocupantes = new IndiceOcupantes();
+
+    /**
+     * Crea un mapa sin ocupantes.
+     * @param filas Número de filas.
+     * @param columnas Número de columnas.
+     */
+    Mapa(int filas, int columnas) {
+        this.filas = filas;
+        this.columnas = columnas;
+    }
+
+    /** @return Número de filas. */
+    public int getFilas() {
+        return filas;
+    }
+
+    /** @return Número de columnas. */
+    public int getColumnas() {
+        return columnas;
+    }
+
+    /**
+     * Comprueba si unas coordenadas están dentro del mapa.
+     * @param x Fila.
+     * @param y Columna.
+     * @return True si están dentro.
+     */
+    public boolean enLimites(int x, int y) {
+        return x >= 0 && y >= 0 && x < filas && y < columnas;
+    }
+
+    /**
+     * Obtiene el tipo de terreno de una celda.
+     * @param x Fila.
+     * @param y Columna.
+     * @return Tipo de la celda.
+     */
+    public abstract TipoCelda getTipo(int x, int y);
+
+    /**
+     * Establece el tipo de terreno de una celda.
+     * @param x Fila.
+     * @param y Columna.
+     * @param tipo Nuevo tipo.
+     */
+    public abstract void setTipo(int x, int y, TipoCelda tipo);
+
+    /**
+     * @param x Fila.
+     * @param y Columna.
+     * @return True si la celda es un muro.
+     */
+    public abstract boolean esMuro(int x, int y);
+
+    /**
+     * @param x Fila.
+     * @param y Columna.
+     * @return Personaje que ocupa la celda, o null si está vacía.
+     */
+    public Personaje getOcupante(int x, int y) {
+        return ocupantes.obtener(x, y);
+    }
+
+    /**
+     * Establece el ocupante de una celda. No aplica efectos del terreno,
+     * que son responsabilidad del modelo.
+     * @param x Fila.
+     * @param y Columna.
+     * @param p Personaje, o null para vaciar la celda.
+     */
+    public void setOcupante(int x, int y, Personaje p) {
+        ocupantes.poner(x, y, p);
+    }
+
+    /**
+     * Marca una celda como vista por el protagonista.
+     * @param x Fila.
+     * @param y Columna.
+     */
+    public abstract void marcarExplorada(int x, int y);
+
+    /**
+     * Vuelve a marcar una celda como no vista, al deshacer un turno.
+     * @param x Fila.
+     * @param y Columna.
+     */
+    abstract void desmarcarExplorada(int x, int y);
+
+    /**
+     * @param x Fila.
+     * @param y Columna.
+     * @return True si el protagonista ha visto alguna vez la celda.
+     */
+    public abstract boolean estaExplorada(int x, int y);
+}
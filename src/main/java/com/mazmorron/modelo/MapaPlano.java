@@ -0,0 +1,92 @@
+package com.mazmorron.modelo;
+
+import java.util.BitSet;
+
+/**
+ * Mapa entero en memoria con representación compacta: el terreno se guarda
+ * en un único array de bytes recorrido por filas y las celdas exploradas en
+ * un conjunto de bits. Un mapa de millones de celdas ocupa así un byte por
+ * celda, en lugar de un objeto por celda, y consultar el terreno no sigue
+ * ningún puntero. Es el mapa de los niveles normales, el único que se puede
+ * copiar para guardar o registrar una partida.
+ */
+public class MapaPlano extends Mapa {
+
+    private final byte[] tipos;
+    private final BitSet exploradas = new BitSet();
+
+    /**
+     * Crea un mapa con todas las celdas de suelo.
+     * @param filas Número de filas.
+     * @param columnas Número de columnas.
+     * @throws IllegalArgumentException Si alguna dimensión no es positiva o
+     *                                  el mapa no cabe en un array.
+     */
+    public MapaPlano(int filas, int columnas) {
+        super(filas, columnas);
+        if (filas <= 0 || columnas <= 0 || (long) filas * columnas > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Dimensiones de mapa no válidas: " + filas + "x" + columnas + ".");
+        }
+        this.tipos = new byte[filas * columnas];
+    }
+
+    /**
+     * Crea un mapa sobre un array de terreno ya relleno, sin copiarlo.
+     * @param filas Número de filas.
+     * @param columnas Número de columnas.
+     * @param tipos Ordinales de {@link TipoCelda} por filas; pasa a ser del mapa.
+     */
+    MapaPlano(int filas, int columnas, byte[] tipos) {
+        super(filas, columnas);
+        this.tipos = tipos;
+    }
+
+    @Override
+    public TipoCelda getTipo(int x, int y) {
+        return TipoCelda.deCodigo(tipos[x * getColumnas() + y]);
+    }
+
+    @Override
+    public void setTipo(int x, int y, TipoCelda tipo) {
+        tipos[x * getColumnas() + y] = (byte) tipo.ordinal();
+    }
+
+    @Override
+    public boolean esMuro(int x, int y) {
+        return tipos[x * getColumnas() + y] == TipoCelda.MURO.ordinal();
+    }
+
+    @Override
+    public void marcarExplorada(int x, int y) {
+        exploradas.set(x * getColumnas() + y);
+    }
+
+    @Override
+    void desmarcarExplorada(int x, int y) {
+        exploradas.clear(x * getColumnas() + y);
+    }
+
+    @Override
+    public boolean estaExplorada(int x, int y) {
+        return exploradas.get(x * getColumnas() + y);
+    }
+
+    /** @return Copia del terreno, por filas, como ordinales de {@link TipoCelda}. */
+    byte[] copiarTipos() {
+        return tipos.clone();
+    }
+
+    /** @return Celdas exploradas como palabras de 64 bits, en el formato de {@link BitSet#toLongArray()}. */
+    long[] copiarExploradas() {
+        return exploradas.toLongArray();
+    }
+
+    /**
+     * Sustituye las celdas exploradas.
+     * @param bits Palabras de 64 bits en el formato de {@link BitSet#valueOf(long[])}.
+     */
+    void restaurarExploradas(long[] bits) {
+        exploradas.clear();
+        exploradas.or(BitSet.valueOf(bits));
+    }
+}
@@ -1,15 +1,19 @@
 package com.mazmorron.modelo;
 
-import java.io.BufferedReader;
+import com.mazmorron.diagnostico.EventoAccionEnemigo;
+import com.mazmorron.diagnostico.EventoAtaque;
+import com.mazmorron.diagnostico.EventoCargaNivel;
+import com.mazmorron.diagnostico.EventoTurno;
+
+import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.nio.file.Path;
 import java.util.*;
 
-import javafx.animation.PauseTransition;
-import javafx.util.Duration;
-
 /**
  * Modelo del juego que gestiona mapa, personajes, turnos y lógica de combate.
+ * No depende de JavaFX: la temporización de los turnos enemigos la decide
+ * el {@link PlanificadorTurnos} configurado, por defecto inmediato.
  */
 public class ModeloJuego {
 
@@ -19,18 +23,46 @@ public class ModeloJuego {
     public interface EscuchaModelo {
         /**
          * Se invoca cuando el modelo cambia para actualizar la vista.
+         * @param cambios Lote con los eventos ocurridos desde la última notificación.
          */
-        void alCambiarModelo();
+        void alCambiarModelo(CambiosModelo cambios);
     }
 
+    /** Radio mínimo, en pasos, del campo de persecución de los enemigos. */
+    private static final int RADIO_PERSECUCION_MIN = 8;
+    /** Longitud máxima de camino que sigue un enemigo, en múltiplos de su visión. */
+    private static final int FACTOR_PERSECUCION = 3;
+    /** Alcance mínimo del campo de visión, en celdas. */
+    private static final int RADIO_VISION_PROTA = 6;
+    /** Enemigos seguidos a partir de los cuales su IA se calcula en paralelo. */
+    private static final int UMBRAL_PARALELO = 1024;
+
+
     private final List<EscuchaModelo> escuchas = new ArrayList<>();
-    private final List<Enemigo> enemigos = new ArrayList<>();
-    private Queue<Personaje> colaTurnos = new LinkedList<>();
+    private final List<EventoModelo> eventosPendientes = new ArrayList<>();
+    private final Set<Enemigo> enemigos = new LinkedHashSet<>();
+    private final Collection<Enemigo> vistaEnemigos = Collections.unmodifiableCollection(enemigos);
+    private final IndiceEspacial indiceEnemigos = new IndiceEspacial();
+    private final ColaIniciativa colaTurnos = new ColaIniciativa();
     private Personaje personajeActual;
     private Prota protagonista;
-    private Celda[][] mapa;
+    private Mapa mapa;
+    private int salidaX = PlantillaNivel.SALIDA_FILA;
+    private int salidaY = PlantillaNivel.SALIDA_COLUMNA;
     private Runnable accionFin;
+    private PlanificadorTurnos planificador = new PlanificadorInmediato();
+    private Azar aleatorio = new Azar(System.nanoTime());
     private int turnoActual = 1;
+    private long turnosJugados = 0;
+    private int visionMaxima = 0;
+    private CampoFlujo campoFlujo = new CampoFlujo(RADIO_PERSECUCION_MIN);
+    private CampoVision campoVision = new CampoVision(RADIO_VISION_PROTA);
+    private boolean terminado = false;
+    private boolean victoria = false;
+    private HistorialTurnos historial;
+    private final FaseEnemigos faseEnemigos = new FaseEnemigos();
+    // Con un solo núcleo repartir no compensa lo que cuesta preparar el grupo
+    private int umbralParalelo = Runtime.getRuntime().availableProcessors() > 1 ? UMBRAL_PARALELO : Integer.MAX_VALUE;
 
     /**
      * Registra un escucha para recibir notificaciones de cambio.
@@ -41,14 +73,26 @@ public class ModeloJuego {
     }
 
     /**
-     * Notifica a todos los escuchas que el modelo ha cambiado.
+     * Entrega a todos los escuchas, en un único lote, los eventos acumulados
+     * desde la última notificación. No hace nada si no hay cambios pendientes.
      */
     public void notificarEscuchas() {
+        if (eventosPendientes.isEmpty()) return;
+        CambiosModelo cambios = new CambiosModelo(eventosPendientes);
+        eventosPendientes.clear();
         for (EscuchaModelo e : escuchas) {
-            e.alCambiarModelo();
+            e.alCambiarModelo(cambios);
         }
     }
 
+    /**
+     * Acumula un evento hasta la siguiente notificación a los escuchas.
+     * @param evento Evento ocurrido.
+     */
+    private void registrar(EventoModelo evento) {
+        eventosPendientes.add(evento);
+    }
+
     /**
      * Establece el protagonista del juego.
      * @param p Instancia del protagonista.
@@ -74,18 +118,43 @@ public class ModeloJuego {
     }
 
     /**
-     * Obtiene la lista de enemigos vivos.
-     * @return Lista de Enemigo.
+     * Obtiene los enemigos vivos, en orden de carga.
+     * @return Vista no modificable de los enemigos.
      */
-    public List<Enemigo> getEnemigos() {
-        return enemigos;
+    public Collection<Enemigo> getEnemigos() {
+        return vistaEnemigos;
     }
 
     /**
-     * Obtiene la matriz de celdas del mapa.
-     * @return Matriz de Celda.
+     * Busca los enemigos vivos a una distancia Manhattan dada de un punto,
+     * consultando solo las cubetas del índice espacial que tocan la zona.
+     * @param x Fila del centro.
+     * @param y Columna del centro.
+     * @param radio Distancia máxima.
+     * @return Enemigos encontrados.
      */
-    public Celda[][] getMapa() {
+    public List<Personaje> buscarEnemigosEnRango(int x, int y, int radio) {
+        List<Personaje> encontrados = new ArrayList<>();
+        indiceEnemigos.buscarEnRango(x, y, radio, encontrados);
+        return encontrados;
+    }
+
+    /**
+     * Busca el enemigo vivo más cercano a un punto.
+     * @param x Fila del centro.
+     * @param y Columna del centro.
+     * @param radioMaximo Distancia Manhattan máxima de búsqueda.
+     * @return Enemigo más cercano, o null si no hay ninguno en el radio.
+     */
+    public Enemigo buscarEnemigoMasCercano(int x, int y, int radioMaximo) {
+        return (Enemigo) indiceEnemigos.buscarMasCercano(x, y, radioMaximo, p -> true);
+    }
+
+    /**
+     * Obtiene el mapa del nivel.
+     * @return Mapa con el terreno y los ocupantes.
+     */
+    public Mapa getMapa() {
         return mapa;
     }
 
@@ -97,6 +166,15 @@ public class ModeloJuego {
         return turnoActual;
     }
 
+    /**
+     * Obtiene los turnos entregados desde que se creó el modelo, de cualquier
+     * personaje y en cualquier nivel, para medir el ritmo de juego.
+     * @return Número de turnos.
+     */
+    public long getTurnosJugados() {
+        return turnosJugados;
+    }
+
     /**
      * Establece la acción a ejecutar al finalizar el juego o nivel.
      * @param accion Runnable a ejecutar.
@@ -105,87 +183,434 @@ public class ModeloJuego {
         this.accionFin = accion;
     }
 
+    /**
+     * Establece el planificador que temporiza los turnos de los enemigos.
+     * @param planificador Planificador a utilizar.
+     */
+    public void setPlanificador(PlanificadorTurnos planificador) {
+        this.planificador = planificador;
+    }
+
+    /**
+     * Establece el generador aleatorio de la partida, por ejemplo con semilla
+     * fija para que una simulación sea reproducible.
+     * @param aleatorio Generador a utilizar.
+     */
+    public void setAleatorio(Azar aleatorio) {
+        this.aleatorio = aleatorio;
+    }
+
+    /**
+     * Establece a partir de cuántos enemigos que actúan seguidos antes que el
+     * protagonista se calculan sus intenciones en paralelo. El resultado de
+     * la partida es el mismo con cualquier valor.
+     * @param umbral Tamaño mínimo del grupo, o {@link Integer#MAX_VALUE} para
+     *               resolver siempre los turnos uno a uno.
+     */
+    public void setUmbralParalelo(int umbral) {
+        this.umbralParalelo = umbral;
+    }
+
+    /** @return Generador aleatorio de la partida, para guardar su estado. */
+    Azar getAleatorio() {
+        return aleatorio;
+    }
+
+    /**
+     * Empieza a guardar el historial de turnos del jugador para poder
+     * rebobinarlos, olvidando el anterior. Solo se anotan los turnos jugados
+     * con {@link #accionProtagonista}.
+     * @param maxTurnos Turnos que se conservan, o 0 para no guardar historial.
+     * @throws IllegalStateException Si el mapa es un mundo troceado, cuyos
+     *         trozos entran y salen de memoria.
+     */
+    public void activarHistorial(int maxTurnos) {
+        if (maxTurnos > 0 && mapa instanceof MundoTroceado) {
+            throw new IllegalStateException("Un mundo troceado no guarda historial de turnos.");
+        }
+        historial = maxTurnos > 0 ? new HistorialTurnos(maxTurnos) : null;
+    }
+
+    /** @return Turnos del jugador que se pueden rebobinar ahora mismo. */
+    public int getTurnosRebobinables() {
+        return historial == null || !(terminado || personajeActual == protagonista) ? 0 : historial.getTamanio();
+    }
+
+    /**
+     * Deshace el último turno del jugador y los de los enemigos que lo
+     * siguieron, volviendo al momento en que el protagonista iba a actuar.
+     * Solo se puede cuando le toca al protagonista o la partida ha terminado.
+     * @return True si había un turno que rebobinar.
+     */
+    public boolean rebobinar() {
+        if (getTurnosRebobinables() == 0) return false;
+        HistorialTurnos.Turno turno = historial.deshacer();
+        faseEnemigos.descartar();
+
+        // Primero se vacían las celdas actuales, porque un personaje puede volver a la de otro
+        for (HistorialTurnos.Cambio c : turno.cambios) {
+            Personaje p = c.personaje;
+            if (mapa.getOcupante(p.getX(), p.getY()) == p) mapa.setOcupante(p.getX(), p.getY(), null);
+        }
+        for (HistorialTurnos.Cambio c : turno.cambios) {
+            Personaje p = c.personaje;
+            p.setPosicion(c.x, c.y);
+            p.setSalud(c.salud);
+            p.setVelocidad(c.velocidad);
+            if (c.vivo) {
+                mapa.setOcupante(c.x, c.y, p);
+                if (p instanceof Enemigo e && enemigos.add(e)) indiceEnemigos.agregar(e);
+            }
+            colaTurnos.reponer(p, c.clave);
+        }
+        colaTurnos.volverA(turno.cola);
+        int columnas = mapa.getColumnas();
+        for (int i : turno.exploradas) mapa.desmarcarExplorada(i / columnas, i % columnas);
+
+        turnoActual = turno.ronda;
+        aleatorio.setEstado(turno.azar);
+        personajeActual = protagonista;
+        terminado = false;
+        victoria = false;
+        actualizarVision();
+        registrar(EventoModelo.nivelCargado());
+        notificarEscuchas();
+        return true;
+    }
+
+    /**
+     * Anota en el historial el estado de un personaje antes de su primer
+     * cambio en el turno en curso.
+     * @param p Personaje a punto de cambiar.
+     */
+    private void anotarCambio(Personaje p) {
+        if (historial == null || p == null || !historial.primeraVez(p)) return;
+        boolean vivo = mapa.getOcupante(p.getX(), p.getY()) == p;
+        historial.anotar(new HistorialTurnos.Cambio(p, vivo, colaTurnos.clave(p)));
+    }
+
+    /**
+     * Lleva al protagonista a la salida del nivel cargado y lo coloca allí.
+     * Al pasar de nivel su posición es la del anterior, que en el nuevo
+     * puede ser un muro, una zona aislada o la celda de un enemigo.
+     */
+    public void colocarProtagonistaEnSalida() {
+        protagonista.setPosicion(salidaX, salidaY);
+        colocarProtagonista();
+    }
+
+    /**
+     * Coloca al protagonista en la celda de su posición actual.
+     */
+    public void colocarProtagonista() {
+        actualizarTrozos();
+        ocupar(protagonista);
+        actualizarVision();
+    }
+
+    /**
+     * Indica si una celda está dentro del campo de visión del protagonista.
+     * @param x Fila.
+     * @param y Columna.
+     * @return True si es visible ahora mismo.
+     */
+    public boolean esVisible(int x, int y) {
+        return campoVision.esVisible(x, y);
+    }
+
+    /**
+     * Indica si el protagonista ha visto alguna vez una celda.
+     * @param x Fila.
+     * @param y Columna.
+     * @return True si la celda ya fue explorada.
+     */
+    public boolean estaExplorada(int x, int y) {
+        return mapa.estaExplorada(x, y);
+    }
+
+    /** @return Alcance del campo de visión en celdas. */
+    public int getRadioVision() {
+        return campoVision.getRadio();
+    }
+
+    /** @return Longitud máxima de los caminos que siguen los enemigos al perseguir. */
+    int getRadioPersecucion() {
+        return campoFlujo.getRadio();
+    }
+
+    /**
+     * Recalcula la visión si el protagonista se ha movido, marca como exploradas
+     * las celdas visibles y registra el cambio para la niebla de guerra.
+     */
+    private void actualizarVision() {
+        int ox = campoVision.getOrigenX();
+        int oy = campoVision.getOrigenY();
+        int px = protagonista.getX();
+        int py = protagonista.getY();
+        if (!campoVision.actualizar(mapa, px, py)) return;
+
+        int r = campoVision.getRadio();
+        for (int x = Math.max(0, px - r); x <= Math.min(mapa.getFilas() - 1, px + r); x++) {
+            for (int y = Math.max(0, py - r); y <= Math.min(mapa.getColumnas() - 1, py + r); y++) {
+                if (!campoVision.esVisible(x, y)) continue;
+                if (historial != null && !mapa.estaExplorada(x, y)) historial.explorada(x * mapa.getColumnas() + y);
+                mapa.marcarExplorada(x, y);
+            }
+        }
+        registrar(EventoModelo.visionCambiada(ox, oy, px, py));
+    }
+
+    /**
+     * Indica si la partida ha terminado, por victoria o por derrota.
+     * @return True si ya no quedan turnos por jugar.
+     */
+    public boolean isTerminado() {
+        return terminado;
+    }
+
+    /**
+     * Indica si la partida terminó con la victoria del protagonista.
+     * @return True si se eliminaron todos los enemigos.
+     */
+    public boolean isVictoria() {
+        return victoria;
+    }
+
     /**
      * Notifica la finalización del juego con resultado.
      * @param victoria True si victoria; false si derrota.
      */
     private void notificarFin(boolean victoria) {
+        this.terminado = true;
+        this.victoria = victoria;
         if (accionFin != null) {
             accionFin.run();
         }
     }
 
     /**
-     * Carga un mapa desde un InputStream, crea celdas y notifica cambios.
-     * @param in Flujo de entrada del archivo de mapa.
+     * Carga un mapa desde un InputStream y crea las celdas. El cambio se
+     * entrega a los escuchas en la siguiente notificación.
+     * @param in Flujo de entrada del archivo de mapa; se cierra al terminar.
+     * @throws IOException Si falla la lectura o el mapa está mal formado.
      */
-    public void cargarMapaDesde(InputStream in) {
-    if (in == null) throw new IllegalArgumentException("Mapa: recurso no encontrado.");
-    try (BufferedReader r = new BufferedReader(new InputStreamReader(in))) {
-        List<String> lines = new ArrayList<>();
-        String line;
-        int maxC = 0;
-        while ((line = r.readLine()) != null) {
-            if (!line.trim().isEmpty()) {
-                lines.add(line);
-                maxC = Math.max(maxC, line.length());
-            }
+    public void cargarMapaDesde(InputStream in) throws IOException {
+        try (LectorNivel lector = LectorNivel.de(in, "Mapa")) {
+            cargarMapa(lector);
         }
-        mapa = new Celda[lines.size()][maxC];
-        for (int i = 0; i < lines.size(); i++) {
-            String row = lines.get(i);
-            for (int j = 0; j < maxC; j++) {
-                if (j < row.length()) {
-                    char c = row.charAt(j);
-                    if (c == '#') {
-                        mapa[i][j] = new Celda(Celda.TipoCelda.MURO);
-                    } else if (c == '@') {
-                        mapa[i][j] = new Celda(Celda.TipoCelda.TRAMPA);
-                    } else {
-                        mapa[i][j] = new Celda(Celda.TipoCelda.SUELO);
-                    }
-                } else {
-                    mapa[i][j] = new Celda(Celda.TipoCelda.SUELO); // Espacios vacíos como suelo.
-                }
-            }
+    }
+
+    /**
+     * Carga un mapa desde un fichero proyectado en memoria.
+     * @param ruta Fichero de mapa.
+     * @throws IOException Si falla la lectura o el mapa está mal formado.
+     */
+    public void cargarMapaDesde(Path ruta) throws IOException {
+        try (LectorNivel lector = LectorNivel.abrir(ruta)) {
+            cargarMapa(lector);
         }
-        notificarEscuchas();
-    } catch (Exception e) {
-        e.printStackTrace();
-    }
-}
-
-    /**
-     * Carga enemigos desde un InputStream, los coloca en el mapa y notifica cambios.
-     * @param in Flujo de entrada del archivo de enemigos.
-     */
-    public void cargarEnemigosDesde(InputStream in) {
-        if (in == null) throw new IllegalArgumentException("Enemigos: recurso no encontrado.");
-        try (BufferedReader r = new BufferedReader(new InputStreamReader(in))) {
-            String line;
-            while ((line = r.readLine()) != null) {
-                if (line.trim().isEmpty()) continue;
-                String[] p = line.split(",");
-                Enemigo e = new Enemigo(
-                    p[0],
-                    Integer.parseInt(p[3]),
-                    Integer.parseInt(p[4]),
-                    Integer.parseInt(p[5]),
-                    Integer.parseInt(p[6]),
-                    Integer.parseInt(p[7])
-                );
-                int x = Integer.parseInt(p[1]);
-                int y = Integer.parseInt(p[2]);
-                e.setPosicion(x, y);
-                enemigos.add(e);
-                mapa[x][y].setOcupante(e);
-            }
-            notificarEscuchas();
-        } catch (Exception e) {
-            e.printStackTrace();
+    }
+
+    /**
+     * Carga enemigos desde un InputStream y los coloca en el mapa. El cambio se
+     * entrega a los escuchas en la siguiente notificación.
+     * @param in Flujo de entrada del archivo de enemigos; se cierra al terminar.
+     * @throws IOException Si falla la lectura o alguna línea está mal formada.
+     */
+    public void cargarEnemigosDesde(InputStream in) throws IOException {
+        try (LectorNivel lector = LectorNivel.de(in, "Enemigos")) {
+            cargarEnemigos(lector);
         }
     }
 
+    /**
+     * Carga enemigos desde un fichero proyectado en memoria.
+     * @param ruta Fichero de enemigos.
+     * @throws IOException Si falla la lectura o alguna línea está mal formada.
+     */
+    public void cargarEnemigosDesde(Path ruta) throws IOException {
+        try (LectorNivel lector = LectorNivel.abrir(ruta)) {
+            cargarEnemigos(lector);
+        }
+    }
+
+    /**
+     * Sustituye el mapa por el que devuelve el lector.
+     * @param lector Lector del fichero de mapa.
+     * @throws IOException Si falla la lectura.
+     */
+    private void cargarMapa(LectorNivel lector) throws IOException {
+        EventoCargaNivel evento = new EventoCargaNivel();
+        evento.begin();
+        mapa = lector.leerMapa();
+        salidaX = PlantillaNivel.SALIDA_FILA;
+        salidaY = PlantillaNivel.SALIDA_COLUMNA;
+        registrar(EventoModelo.nivelCargado());
+        anotarCarga(evento, "mapa");
+    }
+
+    /**
+     * Añade los enemigos que devuelve el lector y ajusta los campos de
+     * persecución y visión.
+     * @param lector Lector del fichero de enemigos.
+     * @throws IOException Si falla la lectura.
+     */
+    private void cargarEnemigos(LectorNivel lector) throws IOException {
+        if (mapa == null) throw new IllegalStateException("Enemigos: el mapa debe cargarse antes.");
+        EventoCargaNivel evento = new EventoCargaNivel();
+        evento.begin();
+        lector.leerEnemigos(mapa, this::agregarEnemigo);
+        ajustarCampos();
+        registrar(EventoModelo.nivelCargado());
+        anotarCarga(evento, "enemigos");
+    }
+
+    /**
+     * Carga un nivel a partir de una plantilla, con copias nuevas de su mapa y
+     * sus enemigos, sin leer ni analizar ningún fichero. El cambio se entrega a
+     * los escuchas en la siguiente notificación.
+     * @param plantilla Plantilla del nivel.
+     */
+    public void cargarPlantilla(PlantillaNivel plantilla) {
+        EventoCargaNivel evento = new EventoCargaNivel();
+        evento.begin();
+        mapa = plantilla.crearMapa();
+        salidaX = plantilla.getSalidaFila();
+        salidaY = plantilla.getSalidaColumna();
+        for (Enemigo e : plantilla.crearEnemigos()) {
+            agregarEnemigo(e);
+        }
+        ajustarCampos();
+        registrar(EventoModelo.nivelCargado());
+        anotarCarga(evento, "plantilla");
+    }
+
+    /**
+     * Termina y, si JFR lo graba, completa y emite un evento de carga de nivel.
+     * @param evento Evento empezado antes de cargar.
+     * @param origen Qué se ha cargado.
+     */
+    private void anotarCarga(EventoCargaNivel evento, String origen) {
+        evento.end();
+        if (!evento.shouldCommit()) return;
+        evento.origen = origen;
+        evento.filas = mapa.getFilas();
+        evento.columnas = mapa.getColumnas();
+        evento.enemigos = enemigos.size();
+        evento.commit();
+    }
+
+    /**
+     * Sustituye el estado del juego por uno guardado, con el turno en manos
+     * del protagonista. No aplica efectos de terreno: la salud restaurada ya
+     * los incluye.
+     * @param mapa Mapa con el terreno y las celdas exploradas.
+     * @param prota Protagonista, ya posicionado.
+     * @param lista Enemigos vivos, ya posicionados.
+     * @param turno Ronda actual.
+     */
+    void restaurar(Mapa mapa, Prota prota, List<Enemigo> lista, int turno) {
+        EventoCargaNivel evento = new EventoCargaNivel();
+        evento.begin();
+        this.mapa = mapa;
+        this.protagonista = prota;
+        enemigos.clear();
+        indiceEnemigos.vaciar();
+        visionMaxima = 0;
+        mapa.setOcupante(prota.getX(), prota.getY(), prota);
+        for (Enemigo e : lista) {
+            enemigos.add(e);
+            indiceEnemigos.agregar(e);
+            mapa.setOcupante(e.getX(), e.getY(), e);
+            visionMaxima = Math.max(visionMaxima, e.getVision());
+        }
+        ajustarCampos();
+        turnoActual = turno;
+        personajeActual = prota;
+        faseEnemigos.descartar();
+        if (historial != null) historial = new HistorialTurnos(historial.getMaxTurnos());
+        terminado = false;
+        victoria = false;
+        actualizarVision();
+        registrar(EventoModelo.nivelCargado());
+        anotarCarga(evento, "partida");
+    }
+
+    /** @return Cola de iniciativa, para guardar y restaurar partidas. */
+    ColaIniciativa getColaTurnos() {
+        return colaTurnos;
+    }
+
+    /**
+     * Carga un mundo troceado. Sus trozos, y los enemigos que contienen, se
+     * cargan alrededor del protagonista al colocarlo y cada vez que se mueve.
+     * El cambio se entrega a los escuchas en la siguiente notificación.
+     * @param mundo Mundo a jugar.
+     */
+    public void cargarMundo(MundoTroceado mundo) {
+        EventoCargaNivel evento = new EventoCargaNivel();
+        evento.begin();
+        mapa = mundo;
+        salidaX = PlantillaNivel.SALIDA_FILA;
+        salidaY = PlantillaNivel.SALIDA_COLUMNA;
+        visionMaxima = Math.max(visionMaxima, GeneradorMazmorra.VISION_MAXIMA);
+        ajustarCampos();
+        registrar(EventoModelo.nivelCargado());
+        anotarCarga(evento, "mundo");
+    }
+
+    /**
+     * En un mundo troceado, carga los trozos alrededor del protagonista y
+     * desaloja los sobrantes, pasando al modelo los enemigos que despiertan
+     * y sacando de él los que se duermen.
+     */
+    private void actualizarTrozos() {
+        if (!(mapa instanceof MundoTroceado mundo)) return;
+        mundo.actualizarAlrededor(protagonista.getX(), protagonista.getY(), turnoActual,
+            this::despertarEnemigo, this::dormirEnemigo);
+    }
+
+    /**
+     * Añade al juego un enemigo de un trozo recién cargado.
+     * @param e Enemigo ya posicionado.
+     */
+    private void despertarEnemigo(Enemigo e) {
+        agregarEnemigo(e);
+        if (colaTurnos.getTamanio() > 0) colaTurnos.agregar(e);
+        registrar(EventoModelo.agregado(e));
+    }
+
+    /**
+     * Saca del juego a un enemigo de un trozo desalojado.
+     * @param e Enemigo dormido.
+     */
+    private void dormirEnemigo(Enemigo e) {
+        enemigos.remove(e);
+        indiceEnemigos.quitar(e);
+        colaTurnos.quitar(e);
+        registrar(EventoModelo.retirado(e));
+    }
+
+    /**
+     * Añade un enemigo ya posicionado al nivel y lo coloca en el mapa.
+     * @param e Enemigo.
+     */
+    private void agregarEnemigo(Enemigo e) {
+        enemigos.add(e);
+        indiceEnemigos.agregar(e);
+        ocupar(e);
+        visionMaxima = Math.max(visionMaxima, e.getVision());
+    }
+
+    /**
+     * Ajusta el alcance de los campos de persecución y visión a la visión
+     * máxima de los enemigos cargados.
+     */
+    private void ajustarCampos() {
+        campoFlujo = new CampoFlujo(Math.max(RADIO_PERSECUCION_MIN, FACTOR_PERSECUCION * visionMaxima));
+        campoVision = new CampoVision(Math.max(RADIO_VISION_PROTA, visionMaxima));
+    }
+
     /**
      * Intenta mover al protagonista, gestiona combate y retorna si hubo movimiento.
      * @param dx Desplazamiento en X.
@@ -198,92 +623,205 @@ public class ModeloJuego {
         int y = protagonista.getY();
         int nx = x + dx;
         int ny = y + dy;
-        if (!enLimites(nx, ny) || mapa[nx][ny].esMuro()) return false;
+        if (!enLimites(nx, ny) || mapa.esMuro(nx, ny)) return false;
 
-        Personaje obj = mapa[nx][ny].getOcupante();
+        Personaje obj = mapa.getOcupante(nx, ny);
         if (obj instanceof Enemigo) {
             atacar(protagonista, obj);
         } else {
-            mapa[x][y].setOcupante(null);
-            mapa[nx][ny].setOcupante(protagonista);
-            protagonista.setPosicion(nx, ny);
+            moverPersonaje(protagonista, nx, ny);
         }
         return true;
     }
 
     /**
-     * Avanza al siguiente turno, ejecuta acción de enemigo tras pausa si aplica.
+     * Resuelve un turno completo del protagonista: lo mueve o ataca, comprueba el
+     * fin de la partida, avanza al siguiente turno y notifica los cambios.
+     * @param dx Desplazamiento en X.
+     * @param dy Desplazamiento en Y.
+     * @return True si la acción se realizó y consumió el turno.
+     */
+    public boolean accionProtagonista(int dx, int dy) {
+        boolean anotando = historial != null && personajeActual == protagonista && !terminado;
+        if (anotando) historial.empezar(turnoActual, aleatorio.getEstado(), colaTurnos.marcar());
+        if (!moverProtagonista(dx, dy)) {
+            if (anotando) historial.descartar();
+            return false;
+        }
+        verificarFin();
+        turnoSiguiente();
+        notificarEscuchas();
+        return true;
+    }
+
+    /**
+     * Avanza al siguiente turno. Si corresponde a un enemigo, su acción se
+     * programa en el planificador; si es del protagonista, espera su entrada.
      */
     public void turnoSiguiente() {
-        if (colaTurnos.isEmpty()) {
-            turnoActual++;
+        if (terminado) return;
+        EventoTurno evento = new EventoTurno();
+        evento.begin();
+        if (colaTurnos.getTamanio() == 0) {
             prepararTurnos();
         }
-        personajeActual = colaTurnos.poll();
-        if (personajeActual == null || personajeActual.getSalud() <= 0) {
-            turnoSiguiente();
-            return;
+        anotarCambio(colaTurnos.primero());
+        personajeActual = colaTurnos.siguiente();
+        if (personajeActual == null) return;
+        turnosJugados++;
+        if (colaTurnos.getRonda() != turnoActual) {
+            turnoActual = colaTurnos.getRonda();
+            registrar(EventoModelo.turnoAvanzado());
+        }
+
+        if (personajeActual == protagonista) {
+            faseEnemigos.descartar();
+        } else if (personajeActual instanceof Enemigo e) {
+            prepararFase(e);
+        }
+        evento.end();
+        if (evento.shouldCommit()) {
+            evento.ronda = turnoActual;
+            evento.personaje = personajeActual.getNombre();
+            evento.enemigo = personajeActual != protagonista;
+            evento.commit();
         }
+
         if (personajeActual instanceof Enemigo e) {
-            PauseTransition pause = new PauseTransition(Duration.millis(300));
-            pause.setOnFinished(evt -> {
+            planificador.programar(() -> {
+                if (terminado) return;
                 accionEnemigo(e);
                 verificarFin();
-                notificarEscuchas();
                 turnoSiguiente();
+                notificarEscuchas();
             });
-            pause.play();
         }
     }
 
     /**
-     * Prepara la cola de turnos ordenando personajes por velocidad.
+     * Cuando a un enemigo le toca actuar sin intención calculada, empieza un
+     * grupo: los enemigos que actuarán seguidos en esta ronda antes que el
+     * protagonista. Si son al menos {@link #umbralParalelo}, sus intenciones
+     * se calculan en paralelo; si no, el grupo se resuelve uno a uno.
+     * @param e Enemigo al que le toca actuar.
+     */
+    private void prepararFase(Enemigo e) {
+        // Los trozos de un mundo troceado se cargan al leerlos: no admiten lecturas concurrentes
+        if (enemigos.size() < umbralParalelo || mapa instanceof MundoTroceado
+                || faseEnemigos.planificada(e, turnoActual)) return;
+        List<Personaje> grupo = new ArrayList<>();
+        grupo.add(e);
+        colaTurnos.recogerAntesDe(protagonista, grupo);
+        if (grupo.size() < umbralParalelo) {
+            faseEnemigos.omitir(turnoActual);
+            return;
+        }
+        campoFlujo.actualizar(mapa, protagonista.getX(), protagonista.getY());
+        actualizarVision();
+        faseEnemigos.planificar(this, grupo, turnoActual);
+    }
+
+    /**
+     * Llena la cola de iniciativa con el protagonista y los enemigos vivos.
+     * Solo se hace una vez por nivel: después cada personaje vuelve a la cola
+     * al terminar su turno y los muertos se quitan al morir.
      */
     private void prepararTurnos() {
-        colaTurnos.clear();
-        List<Personaje> all = new ArrayList<>();
-        all.add(protagonista);
-        all.addAll(enemigos);
-        all.sort((a, b) -> Integer.compare(b.getVelocidad(), a.getVelocidad()));
-        colaTurnos.addAll(all);
+        colaTurnos.vaciar();
+        colaTurnos.agregar(protagonista);
+        for (Enemigo e : enemigos) {
+            colaTurnos.agregar(e);
+        }
+    }
+
+    /**
+     * Cambia la velocidad de un personaje y recoloca su turno en la cola de iniciativa.
+     * @param p Personaje afectado.
+     * @param velocidad Nueva velocidad.
+     */
+    public void cambiarVelocidad(Personaje p, int velocidad) {
+        anotarCambio(p);
+        p.setVelocidad(velocidad);
+        colaTurnos.actualizarVelocidad(p);
+        registrar(EventoModelo.velocidadCambiada(p));
     }
 
     /**
      * Comprueba condiciones de fin de juego: derrota o eliminación de enemigos.
      */
     public void verificarFin() {
-        enemigos.removeIf(e -> e.getSalud() <= 0);
+        if (terminado) return;
         if (protagonista.getSalud() <= 0) notificarFin(false);
-        else if (enemigos.isEmpty())    notificarFin(true);
+        // Un mundo troceado siempre tiene más trozos que explorar: solo termina con la derrota
+        else if (enemigos.isEmpty() && !(mapa instanceof MundoTroceado)) notificarFin(true);
     }
 
     /**
-     * Lógica de acción de un enemigo: movimiento o ataque según visión.
+     * Resuelve la acción de un enemigo como {@link #accionEnemigo}, sin
+     * avanzar la cola de turnos ni notificar a los escuchas. Solo existe para
+     * que los benchmarks midan el turno de un enemigo aislado; el juego
+     * resuelve los turnos con {@link #turnoSiguiente}.
      * @param e Enemigo que actúa.
      */
-    private void accionEnemigo(Enemigo e) {
+    public void accionEnemigoParaBenchmark(Enemigo e) {
+        accionEnemigo(e);
+    }
+
+    /**
+     * Lógica de acción de un enemigo: si ve al protagonista (dentro de su alcance y
+     * sin muros de por medio, según el campo de visión compartido) avanza hacia él por el
+     * camino más corto del campo de flujo compartido, o le ataca si está al lado;
+     * si no, se mueve al azar. No avanza la cola de turnos ni notifica a los escuchas.
+     * @param e Enemigo que actúa.
+     */
+    void accionEnemigo(Enemigo e) {
+        EventoAccionEnemigo evento = new EventoAccionEnemigo();
+        evento.begin();
         int ex = e.getX();
         int ey = e.getY();
         int px = protagonista.getX();
         int py = protagonista.getY();
-        int dx = Integer.compare(px, ex);
-        int dy = Integer.compare(py, ey);
-        int dist = Math.abs(px - ex) + Math.abs(py - ey);
-        int nx = ex + dx;
-        int ny = ey + dy;
-
-        if (dist <= e.getVision() && enLimites(nx, ny)) {
-            if (mapa[nx][ny].getOcupante() instanceof Prota) atacar(e, protagonista);
-            else if (!mapa[nx][ny].esMuro() && mapa[nx][ny].getOcupante() == null) {
-                mapa[ex][ey].setOcupante(null);
-                e.setPosicion(nx, ny);
-                mapa[nx][ny].setOcupante(e);
-            }
-        } else {
+        campoFlujo.actualizar(mapa, px, py);
+        actualizarVision();
+
+        int intencion = faseEnemigos.tomar(e, mapa);
+        boolean previa = intencion != FaseEnemigos.SIN_INTENCION;
+        if (!previa) intencion = decidir(e, px, py);
+        if (intencion == Reglas.ALEATORIO) {
             moverAleatoriamente(e);
+        } else if (intencion != Reglas.QUIETO) {
+            int nx = e.getX() + Reglas.PASOS[intencion][0];
+            int ny = e.getY() + Reglas.PASOS[intencion][1];
+            if (mapa.getOcupante(nx, ny) instanceof Prota) atacar(e, protagonista);
+            else moverPersonaje(e, nx, ny);
+        }
+        evento.end();
+        if (evento.shouldCommit()) {
+            evento.enemigo = e.getNombre();
+            evento.x = ex;
+            evento.y = ey;
+            evento.intencionPrevia = previa;
+            evento.commit();
         }
     }
 
+    /**
+     * Decide qué hará un enemigo sin modificar nada, con los campos de flujo y
+     * visión ya actualizados para la posición del protagonista. Se puede llamar
+     * desde varios hilos a la vez mientras nadie modifique el nivel.
+     * @param e Enemigo.
+     * @param px Fila del protagonista.
+     * @param py Columna del protagonista.
+     * @return Índice en {@link Reglas#PASOS} del paso hacia el protagonista,
+     *         {@link Reglas#ALEATORIO} o {@link Reglas#QUIETO}.
+     */
+    int decidir(Enemigo e, int px, int py) {
+        return Reglas.decidir(e.getX(), e.getY(), px, py, e.getVision(), campoVision, campoFlujo, (x, y) -> {
+            Personaje ocupante = mapa.getOcupante(x, y);
+            return ocupante != null && !(ocupante instanceof Prota);
+        });
+    }
+
     /**
      * Mueve un enemigo en dirección aleatoria válida.
      * @param e Enemigo a mover.
@@ -291,31 +829,92 @@ public class ModeloJuego {
     private void moverAleatoriamente(Enemigo e) {
         int ex = e.getX();
         int ey = e.getY();
-        int[][] dirs = {{-1,0},{1,0},{0,-1},{0,1}};
-        List<int[]> opts = Arrays.asList(dirs);
-        Collections.shuffle(opts);
-        for (int[] d : opts) {
+        for (int[] d : Reglas.direccionesAlAzar(aleatorio)) {
             int nx = ex + d[0];
             int ny = ey + d[1];
-            if (enLimites(nx, ny) && !mapa[nx][ny].esMuro() && mapa[nx][ny].getOcupante()==null) {
-                mapa[ex][ey].setOcupante(null);
-                e.setPosicion(nx, ny);
-                mapa[nx][ny].setOcupante(e);
+            if (enLimites(nx, ny) && !mapa.esMuro(nx, ny) && mapa.getOcupante(nx, ny)==null) {
+                moverPersonaje(e, nx, ny);
                 break;
             }
         }
     }
 
+    /**
+     * Mueve un personaje a una celda libre, aplicando el daño de trampa si la hay,
+     * y registra los eventos correspondientes.
+     * @param p Personaje a mover.
+     * @param nx Fila de destino.
+     * @param ny Columna de destino.
+     */
+    private void moverPersonaje(Personaje p, int nx, int ny) {
+        anotarCambio(p);
+        int x = p.getX();
+        int y = p.getY();
+        int salud = p.getSalud();
+        mapa.setOcupante(x, y, null);
+        p.setPosicion(nx, ny);
+        ocupar(p);
+        faseEnemigos.tocar(x, y);
+        faseEnemigos.tocar(nx, ny);
+        registrar(EventoModelo.movido(p, x, y, nx, ny));
+        if (p == protagonista) {
+            actualizarTrozos();
+            actualizarVision();
+        }
+        if (p.getSalud() != salud) {
+            registrar(EventoModelo.saludCambiada(p));
+            comprobarMuerte(p);
+        }
+    }
+
+    /**
+     * Coloca un personaje en la celda de su posición, aplicando el daño de trampa si la hay.
+     * @param p Personaje a colocar.
+     */
+    private void ocupar(Personaje p) {
+        mapa.setOcupante(p.getX(), p.getY(), p);
+        if (mapa.getTipo(p.getX(), p.getY()) == TipoCelda.TRAMPA) {
+            p.setSalud(Reglas.saludTrasTrampa(p.getSalud()));
+        }
+    }
+
     /**
      * Realiza un ataque entre dos personajes y actualiza salud.
      * @param atk Atacante.
      * @param def Defensor.
      */
     private void atacar(Personaje atk, Personaje def) {
-        int danio = Math.max(1, atk.getAtaque() - def.getDefensa());
+        EventoAtaque evento = new EventoAtaque();
+        evento.begin();
+        int danio = Reglas.danioAtaque(atk.getAtaque(), def.getDefensa());
+        anotarCambio(def);
         def.setSalud(def.getSalud() - danio);
-        if (def.getSalud() <= 0) {
-            mapa[def.getX()][def.getY()].setOcupante(null);
+        registrar(EventoModelo.saludCambiada(def));
+        comprobarMuerte(def);
+        evento.end();
+        if (evento.shouldCommit()) {
+            evento.atacante = atk.getNombre();
+            evento.defensor = def.getNombre();
+            evento.danio = danio;
+            evento.muerto = def.getSalud() <= 0;
+            evento.commit();
+        }
+    }
+
+    /**
+     * Si el personaje se ha quedado sin salud, libera su celda y registra su muerte.
+     * @param p Personaje a comprobar.
+     */
+    private void comprobarMuerte(Personaje p) {
+        if (p.getSalud() <= 0) {
+            mapa.setOcupante(p.getX(), p.getY(), null);
+            faseEnemigos.tocar(p.getX(), p.getY());
+            colaTurnos.quitar(p);
+            if (p instanceof Enemigo e) {
+                enemigos.remove(e);
+                indiceEnemigos.quitar(e);
+            }
+            registrar(EventoModelo.muerto(p));
         }
     }
 
@@ -326,6 +925,6 @@ public class ModeloJuego {
      * @return True si dentro del mapa.
      */
     private boolean enLimites(int x, int y) {
-        return x >= 0 && y >= 0 && x < mapa.length && y < mapa[0].length;
+        return mapa.enLimites(x, y);
     }
 }
\ No newline at end of file
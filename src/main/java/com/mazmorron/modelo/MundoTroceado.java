@@ -0,0 +1,354 @@
+package com.mazmorron.modelo;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Mundo de gran tamaño dividido en trozos cuadrados que se generan o se leen
+ * de disco cuando el protagonista se acerca y se desalojan, los menos usados
+ * primero, cuando se supera el número máximo de trozos en memoria. Así la
+ * memoria queda acotada por ese máximo y no por lo que se haya explorado.
+ *
+ * <p>Los enemigos de un trozo desalojado se duermen: salen del modelo y, si
+ * hay directorio de desalojo, se guardan con el trozo. Al volver a cargarlo
+ * se simula su ausencia con fidelidad reducida, un paseo aleatorio corto
+ * dentro del trozo según las rondas transcurridas, y se despiertan. Sin
+ * directorio, el trozo desalojado se descarta y se regenerará desde cero.</p>
+ *
+ * <p>Las celdas de trozos no cargados se comportan como muros sin explorar,
+ * de modo que ningún enemigo puede entrar en ellas.</p>
+ */
+public class MundoTroceado extends Mapa {
+
+    /** Lado de cada trozo en celdas. */
+    public static final int LADO_TROZO = 32;
+    /** Radio, en trozos, que se mantiene cargado alrededor del protagonista. */
+    public static final int RADIO_CARGA = 2;
+    /** Trozos que necesita como mínimo el área cargada alrededor del protagonista. */
+    public static final int MIN_TROZOS = (2 * RADIO_CARGA + 1) * (2 * RADIO_CARGA + 1);
+
+    private static final int MAX_PASOS_DORMIDO = 8;
+    private static final int[][] DIRECCIONES = {{1, 0}, {-1, 0}, {0, 1}, {0, -1}};
+
+    /**
+     * Trozo cargado en memoria.
+     */
+    private static final class Trozo {
+        final int cx;
+        final int cy;
+        final byte[] tipos;
+        final BitSet exploradas;
+
+        Trozo(int cx, int cy, byte[] tipos, BitSet exploradas) {
+            this.cx = cx;
+            this.cy = cy;
+            this.tipos = tipos;
+            this.exploradas = exploradas;
+        }
+    }
+
+    private final int trozosAlto;
+    private final int trozosAncho;
+    private final long semilla;
+    private final int maxTrozos;
+    private final Path directorio;
+    // Sin orden de acceso: las consultas de terreno no reordenan, solo actualizarAlrededor
+    private final LinkedHashMap<Long, Trozo> cargados = new LinkedHashMap<>();
+    private final Set<Long> enDisco = new HashSet<>();
+    private Trozo ultimo;
+
+    /**
+     * Crea un mundo sin ningún trozo cargado.
+     * @param trozosAlto Número de trozos en vertical.
+     * @param trozosAncho Número de trozos en horizontal.
+     * @param semilla Semilla de la que se deriva cada trozo.
+     * @param maxTrozos Trozos en memoria como máximo; al menos {@link #MIN_TROZOS}.
+     * @param directorio Directorio donde guardar los trozos desalojados, o null para descartarlos.
+     */
+    public MundoTroceado(int trozosAlto, int trozosAncho, long semilla, int maxTrozos, Path directorio) {
+        super(Math.multiplyExact(trozosAlto, LADO_TROZO), Math.multiplyExact(trozosAncho, LADO_TROZO));
+        if (maxTrozos < MIN_TROZOS) {
+            throw new IllegalArgumentException("El mundo necesita al menos " + MIN_TROZOS + " trozos en memoria.");
+        }
+        this.trozosAlto = trozosAlto;
+        this.trozosAncho = trozosAncho;
+        this.semilla = semilla;
+        this.maxTrozos = maxTrozos;
+        this.directorio = directorio;
+    }
+
+    /** @return Número de trozos en memoria. */
+    public int getTrozosCargados() {
+        return cargados.size();
+    }
+
+    /** @return Número de trozos desalojados que esperan en disco. */
+    public int getTrozosEnDisco() {
+        return enDisco.size();
+    }
+
+    /**
+     * Carga los trozos alrededor de una posición y desaloja los menos usados
+     * si se supera el máximo. Nunca desaloja trozos dentro del radio de carga.
+     * Los enemigos de los trozos cargados despiertan cuando ya están todos en
+     * memoria, para que al colocarlos se vea su terreno.
+     * @param x Fila del protagonista.
+     * @param y Columna del protagonista.
+     * @param ronda Ronda actual, para simular a los enemigos dormidos.
+     * @param alDespertar Recibe cada enemigo que entra en el mundo activo, ya posicionado.
+     * @param alDormir Recibe cada enemigo que sale del mundo activo; ya no ocupa su celda.
+     */
+    public void actualizarAlrededor(int x, int y, int ronda, Consumer<Enemigo> alDespertar, Consumer<Enemigo> alDormir) {
+        int cx0 = x / LADO_TROZO;
+        int cy0 = y / LADO_TROZO;
+        List<Enemigo> despiertos = new ArrayList<>();
+        for (int cx = Math.max(0, cx0 - RADIO_CARGA); cx <= Math.min(trozosAlto - 1, cx0 + RADIO_CARGA); cx++) {
+            for (int cy = Math.max(0, cy0 - RADIO_CARGA); cy <= Math.min(trozosAncho - 1, cy0 + RADIO_CARGA); cy++) {
+                long clave = clave(cx, cy);
+                Trozo t = cargados.remove(clave);
+                if (t == null) t = cargar(cx, cy, ronda, despiertos);
+                cargados.put(clave, t);
+            }
+        }
+        despiertos.forEach(alDespertar);
+        Iterator<Trozo> it = cargados.values().iterator();
+        while (cargados.size() > maxTrozos && it.hasNext()) {
+            Trozo t = it.next();
+            if (Math.abs(t.cx - cx0) <= RADIO_CARGA && Math.abs(t.cy - cy0) <= RADIO_CARGA) continue;
+            it.remove();
+            desalojar(t, ronda, alDormir);
+        }
+        ultimo = null;
+    }
+
+    /**
+     * Borra del directorio de desalojo los trozos guardados por este mundo.
+     */
+    public void borrarDesalojados() {
+        if (directorio == null) return;
+        for (long clave : enDisco) {
+            try {
+                Files.deleteIfExists(fichero((int) (clave >> 32), (int) clave));
+            } catch (IOException e) {
+                System.err.println("No se pudo borrar un trozo desalojado: " + e.getMessage());
+            }
+        }
+        enDisco.clear();
+    }
+
+    @Override
+    public TipoCelda getTipo(int x, int y) {
+        Trozo t = trozo(x, y);
+        return t == null ? TipoCelda.MURO : TipoCelda.deCodigo(t.tipos[indiceLocal(x, y)]);
+    }
+
+    @Override
+    public void setTipo(int x, int y, TipoCelda tipo) {
+        Trozo t = trozo(x, y);
+        if (t == null) throw new IllegalStateException("Trozo no cargado en (" + x + ", " + y + ").");
+        t.tipos[indiceLocal(x, y)] = (byte) tipo.ordinal();
+    }
+
+    @Override
+    public boolean esMuro(int x, int y) {
+        Trozo t = trozo(x, y);
+        return t == null || t.tipos[indiceLocal(x, y)] == TipoCelda.MURO.ordinal();
+    }
+
+    @Override
+    public void marcarExplorada(int x, int y) {
+        Trozo t = trozo(x, y);
+        if (t != null) t.exploradas.set(indiceLocal(x, y));
+    }
+
+    @Override
+    public boolean estaExplorada(int x, int y) {
+        Trozo t = trozo(x, y);
+        return t != null && t.exploradas.get(indiceLocal(x, y));
+    }
+
+    @Override
+    void desmarcarExplorada(int x, int y) {
+        Trozo t = trozo(x, y);
+        if (t != null) t.exploradas.clear(indiceLocal(x, y));
+    }
+
+    /**
+     * Obtiene el trozo cargado que contiene una celda. Recuerda el último
+     * consultado, porque las búsquedas suelen quedarse dentro del mismo.
+     * @return Trozo, o null si no está cargado.
+     */
+    private Trozo trozo(int x, int y) {
+        int cx = x / LADO_TROZO;
+        int cy = y / LADO_TROZO;
+        Trozo t = ultimo;
+        if (t != null && t.cx == cx && t.cy == cy) return t;
+        t = cargados.get(clave(cx, cy));
+        if (t != null) ultimo = t;
+        return t;
+    }
+
+    /**
+     * Trae un trozo a memoria desde disco o generándolo, y añade a sus
+     * enemigos, ya posicionados, a los que hay que despertar.
+     */
+    private Trozo cargar(int cx, int cy, int ronda, List<Enemigo> despiertos) {
+        long clave = clave(cx, cy);
+        if (enDisco.remove(clave)) {
+            try {
+                return leer(cx, cy, ronda, despiertos);
+            } catch (IOException e) {
+                System.err.println("No se pudo leer el trozo (" + cx + ", " + cy + "), se regenera: " + e.getMessage());
+            }
+        }
+        int profundidad = 1 + (cx + cy) / 4;
+        GeneradorMazmorra generador = new GeneradorMazmorra(
+            semilla ^ (cx * 0x9E3779B97F4A7C15L) ^ (cy * 0xC2B2AE3D27D4EB4FL));
+        PlantillaNivel p = generador.generarTrozo(LADO_TROZO, profundidad,
+            cx > 0, cx < trozosAlto - 1, cy > 0, cy < trozosAncho - 1);
+        for (Enemigo e : p.crearEnemigos()) {
+            e.setPosicion(e.getX() + cx * LADO_TROZO, e.getY() + cy * LADO_TROZO);
+            despiertos.add(e);
+        }
+        return new Trozo(cx, cy, p.copiarTipos(), new BitSet());
+    }
+
+    /**
+     * Saca del mundo activo a los enemigos de un trozo y lo guarda en disco si
+     * hay directorio de desalojo.
+     */
+    private void desalojar(Trozo t, int ronda, Consumer<Enemigo> alDormir) {
+        List<Enemigo> dormidos = new ArrayList<>();
+        int x0 = t.cx * LADO_TROZO;
+        int y0 = t.cy * LADO_TROZO;
+        for (int i = x0; i < x0 + LADO_TROZO; i++) {
+            for (int j = y0; j < y0 + LADO_TROZO; j++) {
+                if (getOcupante(i, j) instanceof Enemigo e) {
+                    setOcupante(i, j, null);
+                    alDormir.accept(e);
+                    dormidos.add(e);
+                }
+            }
+        }
+        if (directorio == null) return;
+        try {
+            escribir(t, ronda, dormidos);
+            enDisco.add(clave(t.cx, t.cy));
+        } catch (IOException e) {
+            System.err.println("No se pudo guardar el trozo (" + t.cx + ", " + t.cy + "), se descarta: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Guarda un trozo: terreno, celdas exploradas, ronda de desalojo y enemigos dormidos.
+     */
+    private void escribir(Trozo t, int ronda, List<Enemigo> dormidos) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(fichero(t.cx, t.cy))))) {
+            out.write(t.tipos);
+            long[] bits = t.exploradas.toLongArray();
+            out.writeInt(bits.length);
+            for (long b : bits) out.writeLong(b);
+            out.writeInt(ronda);
+            out.writeInt(dormidos.size());
+            for (Enemigo e : dormidos) {
+                out.writeUTF(e.getNombre());
+                out.writeInt(e.getX());
+                out.writeInt(e.getY());
+                out.writeInt(e.getSalud());
+                out.writeInt(e.getAtaque());
+                out.writeInt(e.getDefensa());
+                out.writeInt(e.getVelocidad());
+                out.writeInt(e.getVision());
+            }
+        }
+    }
+
+    /**
+     * Lee un trozo desalojado, simula a sus enemigos durante las rondas que
+     * ha estado fuera y los añade a los que hay que despertar.
+     */
+    private Trozo leer(int cx, int cy, int ronda, List<Enemigo> despiertos) throws IOException {
+        Path f = fichero(cx, cy);
+        Trozo t;
+        List<Enemigo> dormidos = new ArrayList<>();
+        int rondaDesalojo;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(f)))) {
+            byte[] tipos = new byte[LADO_TROZO * LADO_TROZO];
+            in.readFully(tipos);
+            long[] bits = new long[in.readInt()];
+            for (int i = 0; i < bits.length; i++) bits[i] = in.readLong();
+            t = new Trozo(cx, cy, tipos, BitSet.valueOf(bits));
+            rondaDesalojo = in.readInt();
+            int n = in.readInt();
+            for (int i = 0; i < n; i++) {
+                String nombre = in.readUTF();
+                int x = in.readInt();
+                int y = in.readInt();
+                Enemigo e = new Enemigo(nombre, in.readInt(), in.readInt(), in.readInt(), in.readInt(), in.readInt());
+                e.setPosicion(x, y);
+                dormidos.add(e);
+            }
+        }
+        Files.deleteIfExists(f);
+        simularDormidos(t, dormidos, ronda - rondaDesalojo, new Random(semilla ^ clave(cx, cy) ^ ronda));
+        despiertos.addAll(dormidos);
+        return t;
+    }
+
+    /**
+     * Simulación de fidelidad reducida: cada enemigo da unos pocos pasos al
+     * azar dentro de su trozo, tantos como rondas ha estado dormido hasta un
+     * máximo, sin combate ni trampas.
+     */
+    private static void simularDormidos(Trozo t, List<Enemigo> dormidos, int rondas, Random r) {
+        int pasos = Math.min(MAX_PASOS_DORMIDO, Math.max(0, rondas));
+        if (pasos == 0) return;
+        int x0 = t.cx * LADO_TROZO;
+        int y0 = t.cy * LADO_TROZO;
+        BitSet ocupadas = new BitSet();
+        for (Enemigo e : dormidos) ocupadas.set((e.getX() - x0) * LADO_TROZO + (e.getY() - y0));
+        for (Enemigo e : dormidos) {
+            int lx = e.getX() - x0;
+            int ly = e.getY() - y0;
+            for (int p = 0; p < pasos; p++) {
+                int[] d = DIRECCIONES[r.nextInt(DIRECCIONES.length)];
+                int nx = lx + d[0];
+                int ny = ly + d[1];
+                if (nx < 0 || ny < 0 || nx >= LADO_TROZO || ny >= LADO_TROZO) continue;
+                int k = nx * LADO_TROZO + ny;
+                if (t.tipos[k] != TipoCelda.SUELO.ordinal() || ocupadas.get(k)) continue;
+                ocupadas.clear(lx * LADO_TROZO + ly);
+                ocupadas.set(k);
+                lx = nx;
+                ly = ny;
+            }
+            e.setPosicion(x0 + lx, y0 + ly);
+        }
+    }
+
+    private Path fichero(int cx, int cy) {
+        return directorio.resolve("trozo_" + cx + "_" + cy + ".bin");
+    }
+
+    private static int indiceLocal(int x, int y) {
+        return (x % LADO_TROZO) * LADO_TROZO + (y % LADO_TROZO);
+    }
+
+    private static long clave(int cx, int cy) {
+        return ((long) cx << 32) | (cy & 0xFFFFFFFFL);
+    }
+}
@@ -8,6 +8,9 @@ public abstract class Personaje {
     protected int salud, ataque, defensa, velocidad;
     protected int x, y;
 
+    // Índice espacial en el que está registrado el personaje, si lo hay
+    IndiceEspacial indice;
+
     /**
      * Constructor de personaje con estadísticas básicas.
      * @param nombre Nombre del personaje.
@@ -42,6 +45,9 @@ public abstract class Personaje {
     /** @return Valor de velocidad. */
     public int getVelocidad() { return velocidad; }
 
+    /** @param velocidad Nuevo valor de velocidad. */
+    public void setVelocidad(int velocidad) { this.velocidad = velocidad; }
+
     /** @return Coordenada X en el mapa. */
     public int getX() { return x; }
 
@@ -49,13 +55,19 @@ public abstract class Personaje {
     public int getY() { return y; }
 
     /**
-     * Establece la posición del personaje en el mapa.
+     * Establece la posición del personaje en el mapa y, si está registrado
+     * en un índice espacial, lo mantiene al día.
      * @param x Coordenada X.
      * @param y Coordenada Y.
      */
     public void setPosicion(int x, int y) {
+        int xAnterior = this.x;
+        int yAnterior = this.y;
         this.x = x;
         this.y = y;
+        if (indice != null) {
+            indice.mover(this, xAnterior, yAnterior);
+        }
     }
 
     protected void recibirDanio(int i){
@@ -0,0 +1,31 @@
+package com.mazmorron.modelo;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Planificador sin interfaz gráfica que ejecuta los turnos en cuanto se programan.
+ * Los turnos programados mientras otro se está ejecutando se encolan y se
+ * procesan en un bucle, de modo que la pila no crece con el número de turnos.
+ */
+public class PlanificadorInmediato implements PlanificadorTurnos {
+
+    private final Deque<Runnable> pendientes = new ArrayDeque<>();
+    private boolean ejecutando = false;
+
+    @Override
+    public void programar(Runnable turno) {
+        pendientes.add(turno);
+        if (ejecutando) return;
+        ejecutando = true;
+        try {
+            Runnable siguiente;
+            while ((siguiente = pendientes.poll()) != null) {
+                siguiente.run();
+            }
+        } finally {
+            ejecutando = false;
+            pendientes.clear();
+        }
+    }
+}
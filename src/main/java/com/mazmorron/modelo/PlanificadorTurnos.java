@@ -0,0 +1,16 @@
+package com.mazmorron.modelo;
+
+/**
+ * Decide cuándo se ejecutan los turnos de los enemigos.
+ * Permite separar la lógica de turnos de su temporización: la interfaz
+ * gráfica los reparte entre los fotogramas de su bucle, mientras que una
+ * simulación sin interfaz los ejecuta tan rápido como sea posible.
+ */
+public interface PlanificadorTurnos {
+
+    /**
+     * Programa la ejecución del turno de un enemigo.
+     * @param turno Acción que resuelve el turno y avanza al siguiente.
+     */
+    void programar(Runnable turno);
+}
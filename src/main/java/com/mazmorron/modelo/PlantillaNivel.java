@@ -0,0 +1,238 @@
+package com.mazmorron.modelo;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Nivel ya leído e inmutable: terreno, trampas y enemigos con sus
+ * estadísticas. Una misma plantilla se puede compartir entre hilos y
+ * reutilizar en cada reintento o cambio de nivel; cada partida recibe copias
+ * nuevas del mapa y de los enemigos.
+ *
+ * <p>Formato binario, en orden de red: la firma {@code MZNV}, la versión
+ * (short), filas y columnas (int), el terreno a dos bits por celda recorrido
+ * por filas (cuatro celdas por byte, la primera en los bits bajos), el número
+ * de enemigos (int) y, por cada enemigo, su nombre (UTF modificado) seguido de
+ * x, y, salud, ataque, defensa, velocidad y visión (int).</p>
+ */
+public final class PlantillaNivel {
+
+    /** Firma con la que empieza todo nivel compilado. */
+    public static final int FIRMA = 0x4D5A4E56;
+    /** Versión del formato binario que escribe esta clase. */
+    public static final short VERSION = 1;
+    /** Extensión de los ficheros de nivel compilados. */
+    public static final String EXTENSION = ".mzn";
+
+    /** Fila de la salida del protagonista; los niveles de texto y los generados la dejan libre. */
+    public static final int SALIDA_FILA = 1;
+    /** Columna de la salida del protagonista. */
+    public static final int SALIDA_COLUMNA = 1;
+
+    /** Enteros por enemigo: x, y, salud, ataque, defensa, velocidad y visión. */
+    static final int CAMPOS_ENEMIGO = 7;
+
+    private final int filas;
+    private final int columnas;
+    private final byte[] tipos;
+    private final String[] nombres;
+    private final int[] datosEnemigos;
+
+    /**
+     * Crea una plantilla que pasa a ser dueña de los arrays recibidos.
+     * @param filas Número de filas.
+     * @param columnas Número de columnas.
+     * @param tipos Terreno por filas como ordinales de {@link TipoCelda}.
+     * @param nombres Nombre de cada enemigo.
+     * @param datosEnemigos {@link #CAMPOS_ENEMIGO} enteros por enemigo.
+     */
+    PlantillaNivel(int filas, int columnas, byte[] tipos, String[] nombres, int[] datosEnemigos) {
+        this.filas = filas;
+        this.columnas = columnas;
+        this.tipos = tipos;
+        this.nombres = nombres;
+        this.datosEnemigos = datosEnemigos;
+    }
+
+    /**
+     * Crea una plantilla a partir de los ficheros de texto del nivel.
+     * @param mapa Lector del fichero de mapa.
+     * @param enemigos Lector del fichero de enemigos.
+     * @return Plantilla del nivel.
+     * @throws IOException Si falla la lectura o algún fichero está mal formado.
+     */
+    public static PlantillaNivel desdeTexto(LectorNivel mapa, LectorNivel enemigos) throws IOException {
+        MapaPlano m = mapa.leerMapa();
+        List<Enemigo> lista = new ArrayList<>();
+        enemigos.leerEnemigos(m, lista::add);
+        String[] nombres = new String[lista.size()];
+        int[] datos = new int[lista.size() * CAMPOS_ENEMIGO];
+        for (int i = 0; i < nombres.length; i++) {
+            Enemigo e = lista.get(i);
+            nombres[i] = e.getNombre();
+            int k = i * CAMPOS_ENEMIGO;
+            datos[k] = e.getX();
+            datos[k + 1] = e.getY();
+            datos[k + 2] = e.getSalud();
+            datos[k + 3] = e.getAtaque();
+            datos[k + 4] = e.getDefensa();
+            datos[k + 5] = e.getVelocidad();
+            datos[k + 6] = e.getVision();
+        }
+        return new PlantillaNivel(m.getFilas(), m.getColumnas(), m.copiarTipos(), nombres, datos);
+    }
+
+    /**
+     * Lee una plantilla en formato binario. No cierra el flujo.
+     * @param in Flujo de entrada.
+     * @return Plantilla leída.
+     * @throws IOException Si falla la lectura o el contenido no es un nivel válido.
+     */
+    public static PlantillaNivel leer(InputStream in) throws IOException {
+        DataInputStream datos = new DataInputStream(in);
+        if (datos.readInt() != FIRMA) throw new IOException("Nivel compilado: firma no reconocida.");
+        short version = datos.readShort();
+        if (version != VERSION) throw new IOException("Nivel compilado: versión " + version + " no soportada.");
+        int filas = datos.readInt();
+        int columnas = datos.readInt();
+        if (filas <= 0 || columnas <= 0 || (long) filas * columnas > Integer.MAX_VALUE - 8) {
+            throw new IOException("Nivel compilado: dimensiones " + filas + "x" + columnas + " no válidas.");
+        }
+        byte[] tipos = leerTerreno(datos, filas * columnas, "Nivel compilado");
+        int n = datos.readInt();
+        if (n < 0) throw new IOException("Nivel compilado: número de enemigos no válido.");
+        String[] nombres = new String[n];
+        int[] stats = new int[n * CAMPOS_ENEMIGO];
+        for (int i = 0; i < n; i++) {
+            nombres[i] = datos.readUTF();
+            for (int k = 0; k < CAMPOS_ENEMIGO; k++) {
+                stats[i * CAMPOS_ENEMIGO + k] = datos.readInt();
+            }
+            int x = stats[i * CAMPOS_ENEMIGO];
+            int y = stats[i * CAMPOS_ENEMIGO + 1];
+            if (x < 0 || y < 0 || x >= filas || y >= columnas) {
+                throw new IOException("Nivel compilado: enemigo " + i + " fuera del mapa.");
+            }
+        }
+        return new PlantillaNivel(filas, columnas, tipos, nombres, stats);
+    }
+
+    /**
+     * Escribe la plantilla en formato binario. No cierra el flujo.
+     * @param out Flujo de salida.
+     * @throws IOException Si falla la escritura.
+     */
+    public void escribir(OutputStream out) throws IOException {
+        DataOutputStream datos = new DataOutputStream(out);
+        datos.writeInt(FIRMA);
+        datos.writeShort(VERSION);
+        datos.writeInt(filas);
+        datos.writeInt(columnas);
+        escribirTerreno(datos, tipos);
+        datos.writeInt(nombres.length);
+        for (int i = 0; i < nombres.length; i++) {
+            datos.writeUTF(nombres[i]);
+            for (int k = 0; k < CAMPOS_ENEMIGO; k++) {
+                datos.writeInt(datosEnemigos[i * CAMPOS_ENEMIGO + k]);
+            }
+        }
+        datos.flush();
+    }
+
+    /**
+     * Escribe el terreno a dos bits por celda, cuatro celdas por byte con la
+     * primera en los bits bajos.
+     * @param datos Flujo de salida.
+     * @param tipos Terreno por filas.
+     * @throws IOException Si falla la escritura.
+     */
+    static void escribirTerreno(DataOutputStream datos, byte[] tipos) throws IOException {
+        byte[] empaquetado = new byte[(tipos.length + 3) / 4];
+        for (int i = 0; i < tipos.length; i++) {
+            empaquetado[i >> 2] |= (byte) (tipos[i] << ((i & 3) * 2));
+        }
+        datos.write(empaquetado);
+    }
+
+    /**
+     * Lee un terreno escrito con {@link #escribirTerreno}.
+     * @param datos Flujo de entrada.
+     * @param celdas Número de celdas.
+     * @param origen Nombre del formato para los mensajes de error.
+     * @return Terreno por filas.
+     * @throws IOException Si falla la lectura o alguna celda no es válida.
+     */
+    static byte[] leerTerreno(DataInputStream datos, int celdas, String origen) throws IOException {
+        byte[] tipos = new byte[celdas];
+        byte[] empaquetado = new byte[(celdas + 3) / 4];
+        datos.readFully(empaquetado);
+        for (int i = 0; i < celdas; i++) {
+            int codigo = (empaquetado[i >> 2] >> ((i & 3) * 2)) & 3;
+            if (codigo > TipoCelda.TRAMPA.ordinal()) throw new IOException(origen + ": celda " + i + " no válida.");
+            tipos[i] = (byte) codigo;
+        }
+        return tipos;
+    }
+
+    /** @return Número de filas. */
+    public int getFilas() {
+        return filas;
+    }
+
+    /** @return Número de columnas. */
+    public int getColumnas() {
+        return columnas;
+    }
+
+    /** @return Fila en la que empieza el protagonista. */
+    public int getSalidaFila() {
+        return SALIDA_FILA;
+    }
+
+    /** @return Columna en la que empieza el protagonista. */
+    public int getSalidaColumna() {
+        return SALIDA_COLUMNA;
+    }
+
+    /** @return Número de enemigos del nivel. */
+    public int getNumeroEnemigos() {
+        return nombres.length;
+    }
+
+    /** @return Mapa nuevo con el terreno de la plantilla, sin ocupantes ni celdas exploradas. */
+    public MapaPlano crearMapa() {
+        return new MapaPlano(filas, columnas, tipos.clone());
+    }
+
+    /** @return Copia del terreno, por filas, como ordinales de {@link TipoCelda}. */
+    byte[] copiarTipos() {
+        return tipos.clone();
+    }
+
+    /**
+     * Crea una plantilla con los mismos enemigos y otro terreno del mismo tamaño.
+     * @param otrosTipos Terreno nuevo; pasa a ser de la plantilla.
+     * @return Plantilla nueva.
+     */
+    PlantillaNivel conTipos(byte[] otrosTipos) {
+        return new PlantillaNivel(filas, columnas, otrosTipos, nombres, datosEnemigos);
+    }
+
+    /** @return Enemigos nuevos, ya posicionados, en el orden del fichero original. */
+    public List<Enemigo> crearEnemigos() {
+        List<Enemigo> lista = new ArrayList<>(nombres.length);
+        for (int i = 0; i < nombres.length; i++) {
+            int k = i * CAMPOS_ENEMIGO;
+            Enemigo e = new Enemigo(nombres[i], datosEnemigos[k + 2], datosEnemigos[k + 3],
+                datosEnemigos[k + 4], datosEnemigos[k + 5], datosEnemigos[k + 6]);
+            e.setPosicion(datosEnemigos[k], datosEnemigos[k + 1]);
+            lista.add(e);
+        }
+        return lista;
+    }
+}
@@ -5,6 +5,10 @@ package com.mazmorron.modelo;
  * Extiende Personaje sin atributos adicionales.
  */
 public class Prota extends Personaje {
+
+    /** Puntos totales que se pueden repartir entre las estadísticas del protagonista. */
+    public static final int MAX_PUNTOS = 80;
+
     /**
      * Constructor del protagonista con estadísticas establecidas.
      * @param nombre Nombre del protagonista.
@@ -0,0 +1,238 @@
+package com.mazmorron.modelo;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Registro de solo añadir con las entradas del jugador, suficiente para
+ * reproducir una partida sin interfaz. Como todo el azar sale del {@link Azar}
+ * de la partida, basta con el estado inicial y las acciones del protagonista:
+ * los turnos de los enemigos se recalculan igual.
+ *
+ * <p>Formato: la firma {@code MZRG} y la versión (short), seguidas de
+ * registros que empiezan por un byte. Los valores 0 a 3 son una acción del
+ * protagonista, un byte cada una, en el orden de {@link #DIRECCIONES}, y el 4
+ * rebobina un turno. {@code 'N'} empieza un nivel, {@code 'C'} es un punto de
+ * control y {@code 'S'} salta a otro estado; los tres llevan la longitud
+ * (int) y una partida de {@link SerializadorPartida}. El primero y el último
+ * se restauran sin más; el segundo permite comprobar que la reproducción no
+ * se ha desviado y saltar hasta él sin simular lo anterior.</p>
+ *
+ * <p>Un rebobinado solo se anota como tal si no va más atrás de la última
+ * partida escrita, que es todo el historial con el que cuenta quien reproduce
+ * desde ella; si no, se escribe un salto al estado rebobinado. La versión 1
+ * no tenía rebobinados ni saltos y se sigue leyendo.</p>
+ *
+ * <p>La instantánea de un nivel se toma con la primera acción del jugador,
+ * que siempre llega en el turno del protagonista, el único momento en que
+ * una partida se puede guardar.</p>
+ */
+public final class RegistroPartida implements Closeable {
+
+    /** Firma con la que empieza todo registro. */
+    public static final int FIRMA = 0x4D5A5247;
+    /** Versión del formato que escribe esta clase. */
+    public static final short VERSION = 2;
+    /** Desplazamientos {dx, dy} de cada código de acción. */
+    public static final int[][] DIRECCIONES = {{-1, 0}, {1, 0}, {0, -1}, {0, 1}};
+
+    private static final int REBOBINAR = DIRECCIONES.length;
+    private static final int NIVEL = 'N';
+    private static final int CONTROL = 'C';
+    private static final int SALTO = 'S';
+
+    /**
+     * Recibe los registros al recorrer un registro de partida.
+     */
+    public interface Oyente {
+
+        /**
+         * Empieza un nivel, ya sea el primero, el siguiente tras una victoria
+         * o una partida cargada.
+         * @param partida Partida guardada al empezar.
+         * @throws IOException Si la partida no es válida.
+         */
+        void alEmpezarNivel(byte[] partida) throws IOException;
+
+        /**
+         * Un punto de control, con el estado justo antes de la acción siguiente.
+         * @param partida Partida guardada en ese momento.
+         * @throws IOException Si la partida no es válida.
+         */
+        void alControlar(byte[] partida) throws IOException;
+
+        /**
+         * Un salto a otro estado, tras rebobinar más atrás de la última partida escrita.
+         * @param partida Partida guardada tras rebobinar.
+         * @throws IOException Si la partida no es válida.
+         */
+        void alSaltar(byte[] partida) throws IOException;
+
+        /**
+         * Una acción del protagonista.
+         * @param dx Desplazamiento en X.
+         * @param dy Desplazamiento en Y.
+         */
+        void alActuar(int dx, int dy);
+
+        /**
+         * El jugador rebobinó un turno.
+         */
+        void alRebobinar();
+    }
+
+    private final DataOutputStream out;
+    private final int intervaloControl;
+    private ModeloJuego modelo;
+    private int nivel;
+    private int partidaPendiente;
+    private int accionesDesdeControl;
+    private int turnosAlEscribir;
+
+    /**
+     * Crea un registro sobre un flujo y escribe la cabecera.
+     * @param out Flujo de salida; el registro lo cierra al cerrarse.
+     * @param intervaloControl Acciones entre puntos de control, o 0 para no escribirlos.
+     * @throws IOException Si falla la escritura.
+     */
+    public RegistroPartida(OutputStream out, int intervaloControl) throws IOException {
+        this.out = new DataOutputStream(out);
+        this.intervaloControl = intervaloControl;
+        this.out.writeInt(FIRMA);
+        this.out.writeShort(VERSION);
+        this.out.flush();
+    }
+
+    /**
+     * Empieza a registrar un nivel. La instantánea se escribe con la primera
+     * acción registrada.
+     * @param modelo Modelo del nivel; no puede ser un mundo troceado.
+     * @param nivel Índice del nivel de la aplicación.
+     */
+    public void empezarNivel(ModeloJuego modelo, int nivel) {
+        if (!(modelo.getMapa() instanceof MapaPlano)) {
+            throw new IllegalArgumentException("Un mundo troceado no se puede registrar.");
+        }
+        this.modelo = modelo;
+        this.nivel = nivel;
+        this.partidaPendiente = NIVEL;
+        this.accionesDesdeControl = 0;
+    }
+
+    /**
+     * Registra una acción del protagonista antes de aplicarla al modelo. Se
+     * ignora si no hay nivel empezado o no es el turno del protagonista.
+     * @param dx Desplazamiento en X.
+     * @param dy Desplazamiento en Y.
+     * @throws IOException Si falla la escritura.
+     */
+    public void anotar(int dx, int dy) throws IOException {
+        if (modelo == null || modelo.isTerminado() || modelo.getPersonajeActual() != modelo.getProtagonista()) return;
+        int codigo = codigo(dx, dy);
+        if (partidaPendiente != 0) {
+            escribirPartida(partidaPendiente);
+            partidaPendiente = 0;
+        } else if (intervaloControl > 0 && accionesDesdeControl >= intervaloControl) {
+            escribirPartida(CONTROL);
+        }
+        out.writeByte(codigo);
+        out.flush();
+        accionesDesdeControl++;
+    }
+
+    /**
+     * Registra que el jugador acaba de rebobinar un turno del modelo.
+     * @throws IOException Si falla la escritura.
+     */
+    public void anotarRebobinado() throws IOException {
+        if (modelo == null || partidaPendiente == NIVEL) return;
+        if (partidaPendiente == 0 && modelo.getTurnosRebobinables() >= turnosAlEscribir) {
+            out.writeByte(REBOBINAR);
+            out.flush();
+        } else {
+            // Más atrás de la última partida escrita: quien reproduzca no tiene ese historial
+            partidaPendiente = SALTO;
+        }
+    }
+
+    /**
+     * Recorre un registro de principio a fin. Un registro cortado justo entre
+     * dos registros, como el de una partida en curso, termina sin error.
+     * @param in Flujo de entrada; no se cierra.
+     * @param oyente Receptor de los registros.
+     * @throws IOException Si falla la lectura, el registro no es válido o se
+     *         corta a mitad de un registro ({@link EOFException}).
+     */
+    public static void recorrer(InputStream in, Oyente oyente) throws IOException {
+        DataInputStream datos = new DataInputStream(in);
+        if (datos.readInt() != FIRMA) throw new IOException("Registro: firma no reconocida.");
+        short version = datos.readShort();
+        if (version != VERSION && version != 1) throw new IOException("Registro: versión " + version + " no soportada.");
+
+        int tipo;
+        while ((tipo = datos.read()) != -1) {
+            if (tipo < DIRECCIONES.length) {
+                oyente.alActuar(DIRECCIONES[tipo][0], DIRECCIONES[tipo][1]);
+            } else if (tipo == REBOBINAR) {
+                oyente.alRebobinar();
+            } else if (tipo == NIVEL || tipo == CONTROL || tipo == SALTO) {
+                int longitud = datos.readInt();
+                if (longitud <= 0) throw new IOException("Registro: longitud " + longitud + " no válida.");
+                byte[] partida = new byte[longitud];
+                datos.readFully(partida);
+                if (tipo == NIVEL) oyente.alEmpezarNivel(partida);
+                else if (tipo == CONTROL) oyente.alControlar(partida);
+                else oyente.alSaltar(partida);
+            } else {
+                throw new IOException("Registro: tipo de registro " + tipo + " desconocido.");
+            }
+        }
+    }
+
+    /**
+     * Serializa un modelo como partida en memoria.
+     * @param modelo Modelo en el turno del protagonista.
+     * @param nivel Índice del nivel de la aplicación.
+     * @return Bytes de la partida.
+     * @throws IOException No debería ocurrir al escribir en memoria.
+     */
+    public static byte[] instantanea(ModeloJuego modelo, int nivel) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(1 << 12);
+        SerializadorPartida.escribir(modelo, nivel, bytes);
+        return bytes.toByteArray();
+    }
+
+    private void escribirPartida(int tipo) throws IOException {
+        byte[] partida = instantanea(modelo, nivel);
+        out.writeByte(tipo);
+        out.writeInt(partida.length);
+        out.write(partida);
+        accionesDesdeControl = 0;
+        turnosAlEscribir = modelo.getTurnosRebobinables();
+    }
+
+    /**
+     * Código de una acción en el registro.
+     * @param dx Desplazamiento en X.
+     * @param dy Desplazamiento en Y.
+     * @return Índice de la acción en {@link #DIRECCIONES}.
+     * @throws IllegalArgumentException Si no es un paso ortogonal.
+     */
+    public static int codigo(int dx, int dy) {
+        for (int i = 0; i < DIRECCIONES.length; i++) {
+            if (DIRECCIONES[i][0] == dx && DIRECCIONES[i][1] == dy) return i;
+        }
+        throw new IllegalArgumentException("Acción no registrable: " + dx + "," + dy);
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
@@ -0,0 +1,86 @@
+package com.mazmorron.modelo;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Reglas del juego que aplican tanto {@link ModeloJuego}, sobre personajes y
+ * mapa, como {@link EstadoJuego}, sobre sus arrays: el daño de los ataques y
+ * de las trampas, la decisión de un enemigo entre perseguir y pasear, y el
+ * orden al azar en que prueba las direcciones al pasear. Cambiarlas aquí
+ * cambia las dos representaciones a la vez, así que la anticipación y el
+ * simulador no se desincronizan del juego.
+ */
+final class Reglas {
+
+    /** Daño que sufre un personaje al entrar en una trampa. */
+    static final int DANIO_TRAMPA = 10;
+
+    /** Pasos de persecución de un enemigo; la intención de perseguir es su índice. */
+    static final int[][] PASOS = {{-1, 0}, {1, 0}, {0, -1}, {0, 1}};
+    /** Intención de un enemigo que no persigue al protagonista y pasea al azar. */
+    static final int ALEATORIO = -1;
+    /** Intención de un enemigo que persigue pero no tiene paso que le acerque. */
+    static final int QUIETO = -2;
+
+    private Reglas() {
+    }
+
+    /**
+     * @param ataque Ataque del atacante.
+     * @param defensa Defensa del defensor.
+     * @return Salud que pierde el defensor; al menos 1.
+     */
+    static int danioAtaque(int ataque, int defensa) {
+        return Math.max(1, ataque - defensa);
+    }
+
+    /**
+     * @param salud Salud de quien entra en una trampa.
+     * @return Salud tras el daño de la trampa, sin bajar de cero.
+     */
+    static int saludTrasTrampa(int salud) {
+        return Math.max(0, salud - DANIO_TRAMPA);
+    }
+
+    /**
+     * Decide qué hará un enemigo: si ve al protagonista dentro de su alcance
+     * y le puede alcanzar, el paso que más le acerca sin pisar a otro
+     * enemigo; si no, pasear al azar. No modifica nada.
+     * @param ex Fila del enemigo.
+     * @param ey Columna del enemigo.
+     * @param px Fila del protagonista.
+     * @param py Columna del protagonista.
+     * @param alcance Visión del enemigo.
+     * @param vision Campo de visión del protagonista, ya actualizado.
+     * @param flujo Campo de flujo hacia el protagonista, ya actualizado.
+     * @param bloqueo Celdas ocupadas por otros enemigos.
+     * @return Índice en {@link #PASOS}, {@link #ALEATORIO} o {@link #QUIETO}.
+     */
+    static int decidir(int ex, int ey, int px, int py, int alcance,
+                       CampoVision vision, CampoFlujo flujo, CampoFlujo.Bloqueo bloqueo) {
+        int dist = Math.abs(px - ex) + Math.abs(py - ey);
+        boolean veAlProta = dist <= alcance && vision.esVisible(ex, ey);
+        if (!veAlProta || flujo.distancia(ex, ey) == CampoFlujo.INALCANZABLE) return ALEATORIO;
+        int[] paso = flujo.siguientePaso(ex, ey, bloqueo);
+        if (paso == null) return QUIETO;
+        for (int d = 0; d < PASOS.length; d++) {
+            if (ex + PASOS[d][0] == paso[0] && ey + PASOS[d][1] == paso[1]) return d;
+        }
+        throw new IllegalStateException("Paso no ortogonal: " + paso[0] + "," + paso[1]);
+    }
+
+    /**
+     * Baraja las direcciones en que un enemigo intenta pasear; se queda con
+     * la primera transitable y libre.
+     * @param aleatorio Generador de la partida.
+     * @return Direcciones {dx, dy} en el orden en que se prueban.
+     */
+    static List<int[]> direccionesAlAzar(Random aleatorio) {
+        List<int[]> opciones = Arrays.asList(new int[][]{{-1, 0}, {1, 0}, {0, -1}, {0, 1}});
+        Collections.shuffle(opciones, aleatorio);
+        return opciones;
+    }
+}
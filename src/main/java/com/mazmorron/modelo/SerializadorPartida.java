@@ -0,0 +1,183 @@
+package com.mazmorron.modelo;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Guarda y restaura partidas en un formato binario compacto y versionado.
+ * Solo se guarda cuando le toca al protagonista, que es cuando el estado está
+ * completo y quieto: mapa, celdas exploradas, personajes, ronda y cola de
+ * iniciativa exacta, de modo que la partida sigue igual que se dejó.
+ *
+ * <p>Formato, en orden de red: la firma {@code MZPG}, la versión (short), el
+ * nivel de la aplicación y la ronda (int); el estado del {@link Azar} de la
+ * partida (long, desde la versión 2); filas y columnas (int) y el terreno
+ * a dos bits por celda como en {@link PlantillaNivel}; las celdas exploradas
+ * (int con el número de palabras y cada palabra como long); el protagonista
+ * (nombre en UTF modificado, salud, ataque, defensa, velocidad, x e y); el
+ * número de enemigos y cada uno con los mismos campos más su visión; y por
+ * último la cola de iniciativa, donde -1 es el protagonista y los demás
+ * índices son posiciones en la lista de enemigos.</p>
+ */
+public final class SerializadorPartida {
+
+    /** Firma con la que empieza toda partida guardada. */
+    public static final int FIRMA = 0x4D5A5047;
+    /** Versión del formato que escribe esta clase. */
+    public static final short VERSION = 2;
+    /** Versión más antigua que se sigue leyendo; no guardaba el generador aleatorio. */
+    private static final short VERSION_SIN_AZAR = 1;
+
+    private static final int INDICE_PROTA = -1;
+
+    /**
+     * Partida restaurada: el modelo y el nivel de la aplicación en que estaba.
+     */
+    public static final class Partida {
+        private final int nivel;
+        private final ModeloJuego modelo;
+
+        private Partida(int nivel, ModeloJuego modelo) {
+            this.nivel = nivel;
+            this.modelo = modelo;
+        }
+
+        /** @return Índice del nivel de la aplicación. */
+        public int getNivel() {
+            return nivel;
+        }
+
+        /** @return Modelo con el turno en manos del protagonista. */
+        public ModeloJuego getModelo() {
+            return modelo;
+        }
+    }
+
+    private SerializadorPartida() {
+    }
+
+    /**
+     * Escribe la partida. No cierra el flujo.
+     * @param modelo Modelo a guardar; debe ser el turno del protagonista.
+     * @param nivel Índice del nivel de la aplicación.
+     * @param out Flujo de salida.
+     * @throws IOException Si falla la escritura.
+     * @throws IllegalStateException Si no es el turno del protagonista, la partida
+     *         ha terminado o el mapa es un mundo troceado.
+     */
+    public static void escribir(ModeloJuego modelo, int nivel, OutputStream out) throws IOException {
+        Prota prota = modelo.getProtagonista();
+        if (modelo.isTerminado() || modelo.getPersonajeActual() != prota) {
+            throw new IllegalStateException("Solo se puede guardar en el turno del protagonista.");
+        }
+        if (!(modelo.getMapa() instanceof MapaPlano mapa)) {
+            throw new IllegalStateException("Un mundo troceado no se puede guardar como partida.");
+        }
+
+        DataOutputStream datos = new DataOutputStream(out);
+        datos.writeInt(FIRMA);
+        datos.writeShort(VERSION);
+        datos.writeInt(nivel);
+        datos.writeInt(modelo.getTurnoActual());
+        datos.writeLong(modelo.getAleatorio().getEstado());
+
+        datos.writeInt(mapa.getFilas());
+        datos.writeInt(mapa.getColumnas());
+        PlantillaNivel.escribirTerreno(datos, mapa.copiarTipos());
+        long[] exploradas = mapa.copiarExploradas();
+        datos.writeInt(exploradas.length);
+        for (long palabra : exploradas) datos.writeLong(palabra);
+
+        escribirPersonaje(datos, prota);
+        Map<Personaje, Integer> indices = new IdentityHashMap<>();
+        datos.writeInt(modelo.getEnemigos().size());
+        for (Enemigo e : modelo.getEnemigos()) {
+            indices.put(e, indices.size());
+            escribirPersonaje(datos, e);
+            datos.writeInt(e.getVision());
+        }
+        modelo.getColaTurnos().escribir(datos, p -> p == prota ? INDICE_PROTA : indices.get(p));
+        datos.flush();
+    }
+
+    /**
+     * Lee una partida. No cierra el flujo.
+     * @param in Flujo de entrada.
+     * @return Partida restaurada.
+     * @throws IOException Si falla la lectura o el contenido no es una partida válida.
+     */
+    public static Partida leer(InputStream in) throws IOException {
+        DataInputStream datos = new DataInputStream(in);
+        if (datos.readInt() != FIRMA) throw new IOException("Partida: firma no reconocida.");
+        short version = datos.readShort();
+        if (version != VERSION && version != VERSION_SIN_AZAR) {
+            throw new IOException("Partida: versión " + version + " no soportada.");
+        }
+        int nivel = datos.readInt();
+        int turno = datos.readInt();
+        Azar aleatorio = version == VERSION_SIN_AZAR ? new Azar(System.nanoTime()) : new Azar(datos.readLong());
+
+        int filas = datos.readInt();
+        int columnas = datos.readInt();
+        if (filas <= 0 || columnas <= 0 || (long) filas * columnas > Integer.MAX_VALUE - 8) {
+            throw new IOException("Partida: dimensiones " + filas + "x" + columnas + " no válidas.");
+        }
+        byte[] tipos = PlantillaNivel.leerTerreno(datos, filas * columnas, "Partida");
+        MapaPlano mapa = new MapaPlano(filas, columnas, tipos);
+        int palabras = datos.readInt();
+        if (palabras < 0 || palabras > (tipos.length + 63) / 64) throw new IOException("Partida: celdas exploradas no válidas.");
+        long[] exploradas = new long[palabras];
+        for (int i = 0; i < palabras; i++) exploradas[i] = datos.readLong();
+        mapa.restaurarExploradas(exploradas);
+
+        Prota prota = new Prota(datos.readUTF(), datos.readInt(), datos.readInt(), datos.readInt(), datos.readInt());
+        leerPosicion(datos, prota, mapa);
+        int n = datos.readInt();
+        if (n < 0) throw new IOException("Partida: número de enemigos no válido.");
+        List<Enemigo> enemigos = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            String nombre = datos.readUTF();
+            int salud = datos.readInt();
+            int ataque = datos.readInt();
+            int defensa = datos.readInt();
+            int velocidad = datos.readInt();
+            int x = datos.readInt();
+            int y = datos.readInt();
+            Enemigo e = new Enemigo(nombre, salud, ataque, defensa, velocidad, datos.readInt());
+            colocar(e, x, y, mapa);
+            enemigos.add(e);
+        }
+
+        ModeloJuego modelo = new ModeloJuego();
+        modelo.setAleatorio(aleatorio);
+        modelo.getColaTurnos().leer(datos, i -> i == INDICE_PROTA ? prota : i >= 0 && i < n ? enemigos.get(i) : null);
+        modelo.restaurar(mapa, prota, enemigos, turno);
+        return new Partida(nivel, modelo);
+    }
+
+    private static void escribirPersonaje(DataOutputStream datos, Personaje p) throws IOException {
+        datos.writeUTF(p.getNombre());
+        datos.writeInt(p.getSalud());
+        datos.writeInt(p.getAtaque());
+        datos.writeInt(p.getDefensa());
+        datos.writeInt(p.getVelocidad());
+        datos.writeInt(p.getX());
+        datos.writeInt(p.getY());
+    }
+
+    private static void leerPosicion(DataInputStream datos, Personaje p, Mapa mapa) throws IOException {
+        colocar(p, datos.readInt(), datos.readInt(), mapa);
+    }
+
+    private static void colocar(Personaje p, int x, int y, Mapa mapa) throws IOException {
+        if (!mapa.enLimites(x, y)) throw new IOException("Partida: " + p.getNombre() + " fuera del mapa.");
+        p.setPosicion(x, y);
+    }
+}
@@ -0,0 +1,20 @@
+package com.mazmorron.modelo;
+
+/**
+ * Tipo de terreno de una celda del mapa.
+ * El ordinal de cada valor es el byte que se guarda en el {@link Mapa}.
+ */
+public enum TipoCelda {
+    SUELO, MURO, TRAMPA;
+
+    private static final TipoCelda[] VALORES = values();
+
+    /**
+     * Obtiene el tipo correspondiente a un byte guardado en el mapa.
+     * @param codigo Ordinal del tipo.
+     * @return Tipo de celda.
+     */
+    public static TipoCelda deCodigo(int codigo) {
+        return VALORES[codigo];
+    }
+}
@@ -0,0 +1,142 @@
+package com.mazmorron.simulacion;
+
+import com.mazmorron.modelo.Azar;
+import com.mazmorron.modelo.Enemigo;
+import com.mazmorron.modelo.EstadoJuego;
+import com.mazmorron.modelo.ModeloJuego;
+import com.mazmorron.modelo.PlantillaNivel;
+import com.mazmorron.modelo.Prota;
+
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Comprueba que {@link EstadoJuego#paso} sigue las mismas reglas que
+ * {@link ModeloJuego}: juega cada nivel incluido con las mismas semillas en
+ * los dos, con movimientos al azar del protagonista, y compara después de
+ * cada acción el final de la partida, el turno, la salud y posición del
+ * protagonista y la salud de cada enemigo vivo. A veces sigue encadenando
+ * estados en vez de rehacerlos desde el modelo, para cubrir también varios
+ * pasos seguidos de {@code EstadoJuego}. Una diferencia indica que se ha
+ * cambiado una regla en una representación y no en la otra.
+ *
+ * <p>Uso: {@code ComprobadorEstado [partidas] [semilla]}</p>
+ */
+public class ComprobadorEstado {
+
+    /** Acciones máximas del protagonista por partida. */
+    private static final int MAX_ACCIONES = 3_000;
+    /** Divergencias que se describen antes de solo contarlas. */
+    private static final int MAX_INFORMADAS = 5;
+
+    private static final int[][] DIRECCIONES = {{-1, 0}, {1, 0}, {0, -1}, {0, 1}};
+
+    private final int partidas;
+    private final long semilla;
+    private long acciones;
+    private int divergencias;
+
+    /**
+     * Crea un comprobador.
+     * @param partidas Partidas por nivel.
+     * @param semilla Semilla base; la de cada partida se deriva de ella.
+     */
+    public ComprobadorEstado(int partidas, long semilla) {
+        this.partidas = partidas;
+        this.semilla = semilla;
+    }
+
+    /**
+     * Juega las partidas de un nivel en los dos motores.
+     * @param nivel Plantilla del nivel.
+     * @param nombre Nombre del nivel para los mensajes.
+     */
+    public void comprobarNivel(PlantillaNivel nivel, String nombre) {
+        for (int i = 0; i < partidas; i++) {
+            long semillaPartida = SimuladorBalance.mezclar(semilla + i);
+            Random aleatorio = new Random(semillaPartida);
+            int[] s = SimuladorBalance.repartirPuntos(aleatorio);
+            Prota prota = new Prota("Comprobado", s[0], s[1], s[2], s[3]);
+            prota.setPosicion(1, 1);
+
+            ModeloJuego modelo = new ModeloJuego();
+            modelo.setAleatorio(new Azar(SimuladorBalance.mezclar(semillaPartida)));
+            modelo.setProtagonista(prota);
+            modelo.cargarPlantilla(nivel);
+            modelo.colocarProtagonista();
+            modelo.turnoSiguiente();
+
+            EstadoJuego estado = EstadoJuego.de(modelo);
+            for (int k = 0; k < MAX_ACCIONES; k++) {
+                int[] d = DIRECCIONES[aleatorio.nextInt(DIRECCIONES.length)];
+                EstadoJuego siguiente = estado.paso(d[0], d[1]);
+                modelo.accionProtagonista(d[0], d[1]);
+                acciones++;
+                String diferencia = comparar(modelo, siguiente);
+                if (diferencia != null) {
+                    if (divergencias++ < MAX_INFORMADAS) {
+                        System.err.printf("%s, partida %d, acción %d: %s%n", nombre, i, k, diferencia);
+                    }
+                    break;
+                }
+                if (modelo.isTerminado()) break;
+                // Normalmente se parte del modelo; una de cada cuatro veces se encadena el estado
+                estado = aleatorio.nextInt(4) == 0 ? siguiente : EstadoJuego.de(modelo);
+            }
+        }
+    }
+
+    /**
+     * Compara el modelo con el estado que debería haber resultado.
+     * @param m Modelo tras la acción.
+     * @param e Estado tras el mismo paso.
+     * @return Descripción de la primera diferencia, o null si coinciden.
+     */
+    private static String comparar(ModeloJuego m, EstadoJuego e) {
+        if (m.isTerminado() != e.isTerminado()) return "fin " + m.isTerminado() + " frente a " + e.isTerminado();
+        if (m.isTerminado() && m.isVictoria() != e.isVictoria()) return "victoria " + m.isVictoria() + " frente a " + e.isVictoria();
+        if (m.getTurnoActual() != e.getTurno()) return "turno " + m.getTurnoActual() + " frente a " + e.getTurno();
+        Prota p = m.getProtagonista();
+        if (Math.max(0, p.getSalud()) != Math.max(0, e.getSalud(0))) {
+            return "salud del protagonista " + p.getSalud() + " frente a " + e.getSalud(0);
+        }
+        if (p.getX() != e.getX(0) || p.getY() != e.getY(0)) {
+            return "protagonista en " + p.getX() + "," + p.getY() + " frente a " + e.getX(0) + "," + e.getY(0);
+        }
+        if (m.getEnemigos().size() != e.getEnemigosVivos()) {
+            return "enemigos vivos " + m.getEnemigos().size() + " frente a " + e.getEnemigosVivos();
+        }
+        for (Enemigo en : m.getEnemigos()) {
+            int o = e.getOcupante(en.getX(), en.getY());
+            if (o <= 0 || e.getSalud(o) != en.getSalud()) {
+                return "enemigo en " + en.getX() + "," + en.getY() + (o <= 0 ? " ausente" : " con salud " + e.getSalud(o)
+                    + " frente a " + en.getSalud());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Punto de entrada.
+     * @param args Partidas por nivel y semilla, opcionales.
+     * @throws IOException Si no se puede leer un nivel.
+     */
+    public static void main(String[] args) throws IOException {
+        int partidas = args.length > 0 ? Integer.parseInt(args[0]) : 300;
+        long semilla = args.length > 1 ? Long.parseLong(args[1]) : 1;
+        if (partidas <= 0) {
+            System.err.println("Uso: ComprobadorEstado [partidas] [semilla]");
+            System.exit(2);
+        }
+        ComprobadorEstado comprobador = new ComprobadorEstado(partidas, semilla);
+        long inicio = System.nanoTime();
+        for (String[] rutas : SimuladorBalance.NIVELES) {
+            comprobador.comprobarNivel(SimuladorBalance.leerNivel(rutas[0], rutas[1]), rutas[0]);
+        }
+        double segundos = (System.nanoTime() - inicio) / 1e9;
+        System.out.printf("Niveles: %d  partidas por nivel: %d  acciones: %d  divergencias: %d  (%.0f acciones/s)%n",
+            SimuladorBalance.NIVELES.length, partidas, comprobador.acciones, comprobador.divergencias,
+            comprobador.acciones / segundos);
+        if (comprobador.divergencias > 0) System.exit(1);
+    }
+}
@@ -0,0 +1,109 @@
+package com.mazmorron.simulacion;
+
+/**
+ * Acumulador de resultados de las partidas simuladas de un nivel.
+ * Solo guarda sumas e histogramas, por lo que el resultado no depende del
+ * orden en que se agregan las partidas ni de cómo se reparten entre hilos.
+ */
+public class EstadisticasNivel {
+
+    /** Número de cubetas de los histogramas; los valores mayores se acumulan en la última. */
+    static final int CUBETAS = 1024;
+
+    private long partidas, victorias, abandonadas;
+    private long sumaTurnosVictoria, sumaDanio;
+    private final long[] turnosVictoria = new long[CUBETAS];
+    private final long[] danio = new long[CUBETAS];
+
+    /**
+     * Agrega el resultado de una partida.
+     * @param victoria True si el protagonista eliminó a todos los enemigos.
+     * @param terminada False si se alcanzó el límite de acciones sin terminar.
+     * @param turnos Turnos jugados.
+     * @param danioRecibido Salud perdida por el protagonista.
+     */
+    public void agregar(boolean victoria, boolean terminada, int turnos, int danioRecibido) {
+        partidas++;
+        if (!terminada) abandonadas++;
+        if (victoria) {
+            victorias++;
+            sumaTurnosVictoria += turnos;
+            turnosVictoria[Math.min(turnos, CUBETAS - 1)]++;
+        }
+        sumaDanio += danioRecibido;
+        danio[Math.min(danioRecibido, CUBETAS - 1)]++;
+    }
+
+    /**
+     * Suma en este acumulador los resultados de otro.
+     * @param otro Acumulador a combinar.
+     */
+    public void combinar(EstadisticasNivel otro) {
+        partidas += otro.partidas;
+        victorias += otro.victorias;
+        abandonadas += otro.abandonadas;
+        sumaTurnosVictoria += otro.sumaTurnosVictoria;
+        sumaDanio += otro.sumaDanio;
+        for (int i = 0; i < CUBETAS; i++) {
+            turnosVictoria[i] += otro.turnosVictoria[i];
+            danio[i] += otro.danio[i];
+        }
+    }
+
+    /** @return Partidas simuladas. */
+    public long getPartidas() { return partidas; }
+
+    /** @return Proporción de victorias entre 0 y 1. */
+    public double getTasaVictoria() {
+        return partidas == 0 ? 0 : (double) victorias / partidas;
+    }
+
+    /** @return Partidas que alcanzaron el límite de acciones sin terminar. */
+    public long getAbandonadas() { return abandonadas; }
+
+    /** @return Media de turnos de las partidas ganadas. */
+    public double getMediaTurnosVictoria() {
+        return victorias == 0 ? 0 : (double) sumaTurnosVictoria / victorias;
+    }
+
+    /** @return Media de salud perdida por partida. */
+    public double getMediaDanio() {
+        return partidas == 0 ? 0 : (double) sumaDanio / partidas;
+    }
+
+    /**
+     * Percentil de turnos de las partidas ganadas.
+     * @param p Percentil entre 0 y 1.
+     * @return Valor del percentil.
+     */
+    public int percentilTurnosVictoria(double p) {
+        return percentil(turnosVictoria, victorias, p);
+    }
+
+    /**
+     * Percentil de salud perdida por partida.
+     * @param p Percentil entre 0 y 1.
+     * @return Valor del percentil.
+     */
+    public int percentilDanio(double p) {
+        return percentil(danio, partidas, p);
+    }
+
+    /**
+     * Calcula un percentil a partir de un histograma.
+     * @param histograma Cuenta por valor.
+     * @param total Suma de las cuentas.
+     * @param p Percentil entre 0 y 1.
+     * @return Menor valor cuya frecuencia acumulada alcanza el percentil.
+     */
+    private static int percentil(long[] histograma, long total, double p) {
+        if (total == 0) return 0;
+        long objetivo = (long) Math.ceil(p * total);
+        long acumulado = 0;
+        for (int i = 0; i < histograma.length; i++) {
+            acumulado += histograma[i];
+            if (acumulado >= Math.max(1, objetivo)) return i;
+        }
+        return histograma.length - 1;
+    }
+}
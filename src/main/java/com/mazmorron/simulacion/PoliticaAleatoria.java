@@ -0,0 +1,16 @@
+package com.mazmorron.simulacion;
+
+import com.mazmorron.modelo.ModeloJuego;
+
+import java.util.Random;
+
+/**
+ * Política que mueve al protagonista en una dirección aleatoria cada turno.
+ */
+public class PoliticaAleatoria implements PoliticaProta {
+
+    @Override
+    public int[] elegir(ModeloJuego modelo, Random aleatorio) {
+        return DIRECCIONES[aleatorio.nextInt(DIRECCIONES.length)];
+    }
+}
@@ -0,0 +1,146 @@
+package com.mazmorron.simulacion;
+
+import com.mazmorron.modelo.Azar;
+import com.mazmorron.modelo.EstadoJuego;
+import com.mazmorron.modelo.ModeloJuego;
+
+import java.util.Random;
+import java.util.stream.IntStream;
+
+/**
+ * Política que mira hacia delante: para cada dirección juega varias
+ * continuaciones cortas sobre {@link EstadoJuego}, cada una con un futuro
+ * aleatorio distinto, y elige la de mejor puntuación media. Las continuaciones
+ * se reparten entre hilos sin bloqueos, porque cada una avanza su propia
+ * rama de estados inmutables.
+ *
+ * <p>Dentro de una continuación el protagonista se acerca al enemigo vivo más
+ * cercano en línea recta, o se mueve al azar si no puede. El resultado solo
+ * depende del modelo y del generador de la partida, no del número de hilos.</p>
+ */
+public class PoliticaAnticipacion implements PoliticaProta {
+
+    private static final double PUNTOS_VICTORIA = 1e6;
+    private static final double PUNTOS_DERROTA = -1e6;
+
+    private final int profundidad;
+    private final int muestras;
+
+    /**
+     * Crea la política.
+     * @param profundidad Acciones del protagonista por continuación.
+     * @param muestras Continuaciones por dirección.
+     */
+    public PoliticaAnticipacion(int profundidad, int muestras) {
+        if (profundidad < 1 || muestras < 1) throw new IllegalArgumentException("Profundidad y muestras deben ser positivas.");
+        this.profundidad = profundidad;
+        this.muestras = muestras;
+    }
+
+    @Override
+    public int[] elegir(ModeloJuego modelo, Random aleatorio) {
+        EstadoJuego raiz = EstadoJuego.de(modelo);
+        long semilla = aleatorio.nextLong();
+        double[] puntos = IntStream.range(0, DIRECCIONES.length * muestras).parallel()
+            .mapToDouble(i -> continuar(raiz, i / muestras, SimuladorBalance.mezclar(semilla ^ i)))
+            .toArray();
+
+        int mejor = -1;
+        double mejorMedia = Double.NEGATIVE_INFINITY;
+        for (int d = 0; d < DIRECCIONES.length; d++) {
+            if (!raiz.esTransitable(raiz.getX(EstadoJuego.PROTA) + DIRECCIONES[d][0],
+                                    raiz.getY(EstadoJuego.PROTA) + DIRECCIONES[d][1])) continue;
+            // Suma en orden fijo para no depender del reparto entre hilos
+            double suma = 0;
+            for (int m = 0; m < muestras; m++) suma += puntos[d * muestras + m];
+            double media = suma / muestras;
+            if (media > mejorMedia) {
+                mejorMedia = media;
+                mejor = d;
+            }
+        }
+        return DIRECCIONES[mejor < 0 ? aleatorio.nextInt(DIRECCIONES.length) : mejor];
+    }
+
+    /**
+     * Juega una continuación empezando por una dirección.
+     * @param raiz Estado actual.
+     * @param direccion Índice de la primera dirección.
+     * @param semilla Semilla de la continuación.
+     * @return Puntuación del estado final.
+     */
+    private double continuar(EstadoJuego raiz, int direccion, long semilla) {
+        Azar azar = new Azar(semilla);
+        EstadoJuego estado = raiz.conAzar(azar.nextLong())
+            .paso(DIRECCIONES[direccion][0], DIRECCIONES[direccion][1]);
+        for (int i = 1; i < profundidad && !estado.isTerminado(); i++) {
+            int[] d = pasoVoraz(estado, azar);
+            estado = estado.paso(d[0], d[1]);
+        }
+        return puntuar(estado);
+    }
+
+    /**
+     * Paso en línea recta hacia el enemigo vivo más cercano, o uno al azar
+     * entre los transitables si ese está bloqueado por un muro.
+     * @param estado Estado actual.
+     * @param azar Generador de la continuación.
+     * @return Desplazamiento {dx, dy}.
+     */
+    private static int[] pasoVoraz(EstadoJuego estado, Azar azar) {
+        int px = estado.getX(EstadoJuego.PROTA);
+        int py = estado.getY(EstadoJuego.PROTA);
+        int cercano = enemigoMasCercano(estado);
+        if (cercano > 0) {
+            int dx = Integer.compare(estado.getX(cercano), px);
+            int dy = Integer.compare(estado.getY(cercano), py);
+            if (dx != 0 && estado.esTransitable(px + dx, py)) return new int[]{dx, 0};
+            if (dy != 0 && estado.esTransitable(px, py + dy)) return new int[]{0, dy};
+        }
+        int inicio = azar.nextInt(DIRECCIONES.length);
+        for (int k = 0; k < DIRECCIONES.length; k++) {
+            int[] d = DIRECCIONES[(inicio + k) % DIRECCIONES.length];
+            if (estado.esTransitable(px + d[0], py + d[1])) return d;
+        }
+        return DIRECCIONES[inicio];
+    }
+
+    /**
+     * Valora un estado: la victoria y la derrota mandan; si no, cuenta la
+     * salud propia, la salud que les queda a los enemigos y la distancia al
+     * más cercano.
+     * @param estado Estado a valorar.
+     * @return Puntuación, mayor cuanto mejor para el protagonista.
+     */
+    private static double puntuar(EstadoJuego estado) {
+        if (estado.isTerminado()) {
+            return estado.isVictoria() ? PUNTOS_VICTORIA - estado.getTurno() : PUNTOS_DERROTA + estado.getTurno();
+        }
+        double puntos = estado.getSalud(EstadoJuego.PROTA);
+        for (int i = 1; i < estado.getNumPersonajes(); i++) {
+            if (estado.estaVivo(i)) puntos -= estado.getSalud(i);
+        }
+        int cercano = enemigoMasCercano(estado);
+        if (cercano > 0) puntos -= distancia(estado, cercano);
+        return puntos;
+    }
+
+    private static int enemigoMasCercano(EstadoJuego estado) {
+        int mejor = -1;
+        int mejorDistancia = Integer.MAX_VALUE;
+        for (int i = 1; i < estado.getNumPersonajes(); i++) {
+            if (!estado.estaVivo(i)) continue;
+            int d = distancia(estado, i);
+            if (d < mejorDistancia) {
+                mejorDistancia = d;
+                mejor = i;
+            }
+        }
+        return mejor;
+    }
+
+    private static int distancia(EstadoJuego estado, int i) {
+        return Math.abs(estado.getX(i) - estado.getX(EstadoJuego.PROTA))
+             + Math.abs(estado.getY(i) - estado.getY(EstadoJuego.PROTA));
+    }
+}
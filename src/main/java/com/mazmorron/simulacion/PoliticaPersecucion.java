@@ -0,0 +1,89 @@
+package com.mazmorron.simulacion;
+
+import com.mazmorron.modelo.Enemigo;
+import com.mazmorron.modelo.Mapa;
+import com.mazmorron.modelo.ModeloJuego;
+import com.mazmorron.modelo.Prota;
+import com.mazmorron.modelo.TipoCelda;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Política que lleva al protagonista hacia el enemigo más cercano por el camino
+ * más corto, evitando las trampas siempre que exista otra ruta. Si no hay
+ * enemigos alcanzables se acerca en línea recta al más cercano o, si no hay
+ * ninguno, se mueve al azar.
+ */
+public class PoliticaPersecucion implements PoliticaProta {
+
+    private final PoliticaAleatoria alternativa = new PoliticaAleatoria();
+
+    @Override
+    public int[] elegir(ModeloJuego modelo, Random aleatorio) {
+        int[] paso = primerPaso(modelo, false);
+        if (paso == null) paso = primerPaso(modelo, true);
+        if (paso == null) paso = pasoDirecto(modelo);
+        return paso != null ? paso : alternativa.elegir(modelo, aleatorio);
+    }
+
+    /**
+     * Da un paso en línea recta hacia el enemigo más cercano según el índice espacial.
+     * @param modelo Modelo de la partida.
+     * @return Desplazamiento {dx, dy}, o null si no quedan enemigos.
+     */
+    private static int[] pasoDirecto(ModeloJuego modelo) {
+        Prota p = modelo.getProtagonista();
+        Mapa mapa = modelo.getMapa();
+        Enemigo e = modelo.buscarEnemigoMasCercano(p.getX(), p.getY(), mapa.getFilas() + mapa.getColumnas());
+        if (e == null) return null;
+        int dx = Integer.compare(e.getX(), p.getX());
+        int dy = Integer.compare(e.getY(), p.getY());
+        return dx != 0 ? new int[]{dx, 0} : new int[]{0, dy};
+    }
+
+    /**
+     * Busca en anchura desde el protagonista hasta la primera celda ocupada por
+     * un enemigo y devuelve la dirección del primer paso de ese camino.
+     * @param modelo Modelo de la partida.
+     * @param pisarTrampas True para permitir caminos que atraviesan trampas.
+     * @return Desplazamiento {dx, dy}, o null si no hay enemigo alcanzable.
+     */
+    private static int[] primerPaso(ModeloJuego modelo, boolean pisarTrampas) {
+        Mapa mapa = modelo.getMapa();
+        int filas = mapa.getFilas();
+        int columnas = mapa.getColumnas();
+        Prota p = modelo.getProtagonista();
+        int origen = p.getX() * columnas + p.getY();
+
+        // Para cada celda visitada se guarda la dirección del primer paso desde el origen
+        byte[] primera = new byte[filas * columnas];
+        Arrays.fill(primera, (byte) -1);
+        int[] cola = new int[filas * columnas];
+        int ini = 0, fin = 0;
+        cola[fin++] = origen;
+        primera[origen] = (byte) DIRECCIONES.length;
+
+        while (ini < fin) {
+            int actual = cola[ini++];
+            int x = actual / columnas;
+            int y = actual % columnas;
+            for (int d = 0; d < DIRECCIONES.length; d++) {
+                int nx = x + DIRECCIONES[d][0];
+                int ny = y + DIRECCIONES[d][1];
+                if (nx < 0 || ny < 0 || nx >= filas || ny >= columnas) continue;
+                int idx = nx * columnas + ny;
+                if (primera[idx] != -1) continue;
+                if (mapa.esMuro(nx, ny)) continue;
+                byte dir = actual == origen ? (byte) d : primera[actual];
+                if (mapa.getOcupante(nx, ny) instanceof Enemigo) {
+                    return DIRECCIONES[dir];
+                }
+                if (!pisarTrampas && mapa.getTipo(nx, ny) == TipoCelda.TRAMPA) continue;
+                primera[idx] = dir;
+                cola[fin++] = idx;
+            }
+        }
+        return null;
+    }
+}
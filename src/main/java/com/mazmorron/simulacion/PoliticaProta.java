@@ -0,0 +1,22 @@
+package com.mazmorron.simulacion;
+
+import com.mazmorron.modelo.ModeloJuego;
+
+import java.util.Random;
+
+/**
+ * Estrategia que decide el movimiento del protagonista en una partida simulada.
+ */
+public interface PoliticaProta {
+
+    /** Direcciones de movimiento del protagonista: arriba, abajo, izquierda, derecha. */
+    int[][] DIRECCIONES = {{-1, 0}, {1, 0}, {0, -1}, {0, 1}};
+
+    /**
+     * Elige el siguiente movimiento del protagonista.
+     * @param modelo Modelo de la partida en el turno del protagonista.
+     * @param aleatorio Generador de la partida, para desempates reproducibles.
+     * @return Desplazamiento {dx, dy}.
+     */
+    int[] elegir(ModeloJuego modelo, Random aleatorio);
+}
@@ -0,0 +1,231 @@
+package com.mazmorron.simulacion;
+
+import com.mazmorron.modelo.ModeloJuego;
+import com.mazmorron.modelo.RegistroPartida;
+import com.mazmorron.modelo.SerializadorPartida;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+/**
+ * Reproduce sin interfaz un {@link RegistroPartida} a toda velocidad, para
+ * reproducir errores y medir el rendimiento con partidas reales. Sin
+ * objetivo, simula todas las acciones y compara el estado con cada punto de
+ * control; una diferencia indica que la lógica ha cambiado o no es
+ * determinista. Con objetivo, salta al último punto de control anterior y
+ * solo simula las acciones que faltan hasta él. Los rebobinados cuentan como
+ * acciones y se deshacen con el historial del modelo, como en la partida.
+ *
+ * <p>Uso: {@code ReproductorPartida registro [accion]}</p>
+ */
+public class ReproductorPartida implements RegistroPartida.Oyente {
+
+    private final long objetivo;
+    private ModeloJuego modelo;
+    private int nivel;
+    private long acciones;
+    private int niveles;
+    private int controles;
+    private int divergencias;
+
+    private byte[] base;
+    // Códigos de acción pendientes desde la base; REBOBINAR tras las direcciones
+    private static final byte REBOBINAR = (byte) RegistroPartida.DIRECCIONES.length;
+    private byte[] pendientes = new byte[64];
+    private int numPendientes;
+
+    /**
+     * Crea un reproductor.
+     * @param objetivo Número de acciones a reproducir, o un valor negativo
+     *                 para reproducir y verificar el registro completo.
+     */
+    public ReproductorPartida(long objetivo) {
+        this.objetivo = objetivo;
+    }
+
+    /**
+     * Reproduce un registro.
+     * @param in Flujo del registro; no se cierra.
+     * @throws IOException Si el registro no es válido. Un registro cortado a
+     *         mitad de un registro se reproduce hasta el corte.
+     */
+    public void reproducir(InputStream in) throws IOException {
+        try {
+            RegistroPartida.recorrer(in, this);
+        } catch (EOFException e) {
+            System.err.println("Registro cortado tras " + acciones + " acciones; se reproduce hasta ahí.");
+        }
+        if (buscando() && base != null) {
+            cargar(base);
+            for (int i = 0; i < numPendientes; i++) {
+                if (pendientes[i] == REBOBINAR) {
+                    deshacer();
+                } else {
+                    int[] d = RegistroPartida.DIRECCIONES[pendientes[i]];
+                    aplicar(d[0], d[1]);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void alEmpezarNivel(byte[] partida) throws IOException {
+        niveles++;
+        if (buscando()) {
+            guardarBase(partida);
+        } else {
+            cargar(partida);
+        }
+    }
+
+    @Override
+    public void alControlar(byte[] partida) throws IOException {
+        controles++;
+        if (buscando()) {
+            guardarBase(partida);
+            return;
+        }
+        if (modelo == null || modelo.isTerminado() || modelo.getPersonajeActual() != modelo.getProtagonista()
+                || !Arrays.equals(RegistroPartida.instantanea(modelo, nivel), partida)) {
+            divergencias++;
+            System.err.println("Divergencia en el punto de control tras la acción " + acciones + "; se sigue desde él.");
+        }
+        // Los rebobinados posteriores no pasan de aquí: basta el historial desde este punto
+        cargar(partida);
+    }
+
+    @Override
+    public void alSaltar(byte[] partida) throws IOException {
+        if (buscando()) {
+            guardarBase(partida);
+        } else {
+            cargar(partida);
+        }
+    }
+
+    @Override
+    public void alActuar(int dx, int dy) {
+        acciones++;
+        if (!buscando()) {
+            aplicar(dx, dy);
+        } else if (acciones <= objetivo) {
+            pendiente((byte) RegistroPartida.codigo(dx, dy));
+        }
+    }
+
+    @Override
+    public void alRebobinar() {
+        acciones++;
+        if (!buscando()) {
+            deshacer();
+        } else if (acciones <= objetivo) {
+            pendiente(REBOBINAR);
+        }
+    }
+
+    private void pendiente(byte codigo) {
+        if (numPendientes == pendientes.length) pendientes = Arrays.copyOf(pendientes, 2 * numPendientes);
+        pendientes[numPendientes++] = codigo;
+    }
+
+    /** @return True si se busca una acción concreta en lugar de verificar todo el registro. */
+    private boolean buscando() {
+        return objetivo >= 0;
+    }
+
+    /**
+     * Toma una partida como punto de partida de la búsqueda si no se ha pasado del objetivo.
+     * @param partida Partida del registro.
+     */
+    private void guardarBase(byte[] partida) {
+        if (acciones > objetivo) return;
+        base = partida;
+        numPendientes = 0;
+    }
+
+    /**
+     * Restaura una partida del registro como estado actual.
+     * @param partida Bytes de la partida.
+     * @throws IOException Si la partida no es válida.
+     */
+    private void cargar(byte[] partida) throws IOException {
+        SerializadorPartida.Partida p = SerializadorPartida.leer(new ByteArrayInputStream(partida));
+        modelo = p.getModelo();
+        modelo.activarHistorial(Integer.MAX_VALUE);
+        nivel = p.getNivel();
+    }
+
+    /**
+     * Rebobina un turno registrado.
+     */
+    private void deshacer() {
+        if (modelo == null || !modelo.rebobinar()) divergencias++;
+    }
+
+    /**
+     * Aplica una acción registrada; los turnos enemigos se resuelven en el acto.
+     * @param dx Desplazamiento en X.
+     * @param dy Desplazamiento en Y.
+     */
+    private void aplicar(int dx, int dy) {
+        if (modelo == null || modelo.isTerminado() || modelo.getPersonajeActual() != modelo.getProtagonista()) {
+            divergencias++;
+            return;
+        }
+        modelo.accionProtagonista(dx, dy);
+    }
+
+    /** @return Modelo en el estado reproducido, o null si el registro no tenía niveles. */
+    public ModeloJuego getModelo() {
+        return modelo;
+    }
+
+    /** @return Índice del nivel de la aplicación del estado reproducido. */
+    public int getNivel() {
+        return nivel;
+    }
+
+    /** @return Puntos de control o acciones en que la reproducción se desvió del registro. */
+    public int getDivergencias() {
+        return divergencias;
+    }
+
+    /**
+     * Punto de entrada del reproductor. Termina con código 1 si hubo divergencias.
+     * @param args Ruta del registro y, opcionalmente, la acción hasta la que reproducir.
+     * @throws IOException Si no se puede leer el registro.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Uso: ReproductorPartida registro [accion]");
+            System.exit(2);
+        }
+        Path ruta = Paths.get(args[0]);
+        ReproductorPartida reproductor = new ReproductorPartida(args.length > 1 ? Long.parseLong(args[1]) : -1);
+        long inicio = System.nanoTime();
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(ruta))) {
+            reproductor.reproducir(in);
+        }
+        double segundos = (System.nanoTime() - inicio) / 1e9;
+
+        System.out.printf("Registro %s%n", ruta);
+        System.out.printf("  niveles: %d  acciones: %d  puntos de control: %d  divergencias: %d  (%.0f acciones/s)%n",
+            reproductor.niveles, reproductor.acciones, reproductor.controles, reproductor.divergencias,
+            reproductor.acciones / segundos);
+        ModeloJuego m = reproductor.modelo;
+        if (m != null) {
+            System.out.printf("  estado: nivel %d  ronda %d  salud %d  posición %d,%d  enemigos %d%s%n",
+                reproductor.nivel + 1, m.getTurnoActual(), m.getProtagonista().getSalud(),
+                m.getProtagonista().getX(), m.getProtagonista().getY(), m.getEnemigos().size(),
+                m.isTerminado() ? (m.isVictoria() ? "  victoria" : "  derrota") : "");
+        }
+        if (reproductor.divergencias > 0) System.exit(1);
+    }
+}
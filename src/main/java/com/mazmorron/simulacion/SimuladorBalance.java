@@ -0,0 +1,200 @@
+package com.mazmorron.simulacion;
+
+import com.mazmorron.modelo.Azar;
+import com.mazmorron.modelo.LectorNivel;
+import com.mazmorron.modelo.ModeloJuego;
+import com.mazmorron.modelo.PlantillaNivel;
+import com.mazmorron.modelo.Prota;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Simulador de Monte Carlo para equilibrar niveles y enemigos.
+ * Juega muchas partidas sin interfaz gráfica por cada par de ficheros de mapa y
+ * enemigos, repartiéndolas entre todos los núcleos, e informa de la tasa de
+ * victoria, los turnos hasta ganar y el daño recibido. Cada partida usa una
+ * semilla derivada de la semilla global, de modo que el informe es idéntico
+ * para la misma semilla sea cual sea el número de hilos.
+ *
+ * <p>Uso: {@code SimuladorBalance [partidas] [semilla] [hilos] [persecucion|aleatoria|anticipacion] [aleatorio|salud,ataque,defensa,velocidad]}</p>
+ */
+public class SimuladorBalance {
+
+    /** Acciones máximas del protagonista antes de dar una partida por abandonada. */
+    private static final int MAX_ACCIONES = 10_000;
+
+    static final String[][] NIVELES = {
+        {"/mapas/nivel1.txt", "/enemigos/enemigos1.txt"},
+        {"/mapas/nivel2.txt", "/enemigos/enemigos2.txt"},
+        {"/mapas/nivel3.txt", "/enemigos/enemigos3.txt"}
+    };
+
+    private final int partidas;
+    private final long semilla;
+    private final PoliticaProta politica;
+    private final int[] repartoFijo;
+
+    /**
+     * Crea un simulador.
+     * @param partidas Partidas a jugar por nivel.
+     * @param semilla Semilla global de la simulación.
+     * @param politica Política de movimiento del protagonista.
+     * @param repartoFijo Estadísticas {salud, ataque, defensa, velocidad} del
+     *                    protagonista, o null para repartirlas al azar en cada partida.
+     */
+    public SimuladorBalance(int partidas, long semilla, PoliticaProta politica, int[] repartoFijo) {
+        if (repartoFijo != null && repartoFijo[0] + repartoFijo[1] + repartoFijo[2] + repartoFijo[3] > Prota.MAX_PUNTOS) {
+            throw new IllegalArgumentException("El reparto supera los " + Prota.MAX_PUNTOS + " puntos.");
+        }
+        this.partidas = partidas;
+        this.semilla = semilla;
+        this.politica = politica;
+        this.repartoFijo = repartoFijo;
+    }
+
+    /**
+     * Simula todas las partidas de un nivel en el pool indicado. Todas las
+     * partidas parten de la misma plantilla, que se lee una sola vez.
+     * @param nivel Plantilla del nivel.
+     * @param indiceNivel Índice del nivel, usado para derivar las semillas.
+     * @param pool Pool de hilos donde repartir las partidas.
+     * @return Estadísticas agregadas del nivel.
+     */
+    public EstadisticasNivel simularNivel(PlantillaNivel nivel, int indiceNivel, ForkJoinPool pool) {
+        return pool.submit(() -> IntStream.range(0, partidas).parallel().collect(
+            EstadisticasNivel::new,
+            (est, i) -> jugar(nivel, mezclar(semilla ^ mezclar(indiceNivel + 1) ^ i), est),
+            EstadisticasNivel::combinar
+        )).join();
+    }
+
+    /**
+     * Juega una partida completa y agrega su resultado.
+     * @param nivel Plantilla del nivel.
+     * @param semillaPartida Semilla de la partida.
+     * @param est Acumulador donde agregar el resultado.
+     */
+    private void jugar(PlantillaNivel nivel, long semillaPartida, EstadisticasNivel est) {
+        Random aleatorio = new Random(semillaPartida);
+        int[] s = repartoFijo != null ? repartoFijo : repartirPuntos(aleatorio);
+        Prota prota = new Prota("Simulado", s[0], s[1], s[2], s[3]);
+        prota.setPosicion(1, 1);
+
+        ModeloJuego modelo = new ModeloJuego();
+        modelo.setAleatorio(new Azar(mezclar(semillaPartida)));
+        modelo.setProtagonista(prota);
+        modelo.cargarPlantilla(nivel);
+        modelo.colocarProtagonista();
+        modelo.turnoSiguiente();
+
+        int acciones = 0;
+        while (!modelo.isTerminado() && acciones++ < MAX_ACCIONES) {
+            int[] d = politica.elegir(modelo, aleatorio);
+            modelo.accionProtagonista(d[0], d[1]);
+        }
+        est.agregar(modelo.isVictoria(), modelo.isTerminado(), modelo.getTurnoActual(),
+            s[0] - Math.max(0, prota.getSalud()));
+    }
+
+    /**
+     * Reparte al azar los puntos disponibles entre las cuatro estadísticas,
+     * con al menos un punto en cada una.
+     * @param aleatorio Generador de la partida.
+     * @return Estadísticas {salud, ataque, defensa, velocidad}.
+     */
+    static int[] repartirPuntos(Random aleatorio) {
+        int libres = Prota.MAX_PUNTOS - 4;
+        int[] cortes = {aleatorio.nextInt(libres + 1), aleatorio.nextInt(libres + 1), aleatorio.nextInt(libres + 1)};
+        Arrays.sort(cortes);
+        return new int[]{
+            cortes[0] + 1,
+            cortes[1] - cortes[0] + 1,
+            cortes[2] - cortes[1] + 1,
+            libres - cortes[2] + 1
+        };
+    }
+
+    /**
+     * Función de mezcla de SplitMix64 para derivar semillas independientes.
+     * @param z Valor de entrada.
+     * @return Valor mezclado.
+     */
+    static long mezclar(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Lee un nivel de texto del classpath.
+     * @param rutaMapa Ruta del mapa.
+     * @param rutaEnemigos Ruta del fichero de enemigos.
+     * @return Plantilla del nivel.
+     * @throws IOException Si no se encuentra, no se puede leer o está mal formado.
+     */
+    static PlantillaNivel leerNivel(String rutaMapa, String rutaEnemigos) throws IOException {
+        try (LectorNivel mapa = LectorNivel.de(SimuladorBalance.class.getResourceAsStream(rutaMapa), rutaMapa);
+             LectorNivel enemigos = LectorNivel.de(SimuladorBalance.class.getResourceAsStream(rutaEnemigos), rutaEnemigos)) {
+            return PlantillaNivel.desdeTexto(mapa, enemigos);
+        }
+    }
+
+    /**
+     * Punto de entrada del simulador.
+     * @param args Partidas, semilla, hilos, política y reparto, todos opcionales.
+     * @throws IOException Si no se pueden leer los niveles.
+     */
+    public static void main(String[] args) throws IOException {
+        int partidas = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        long semilla = args.length > 1 ? Long.parseLong(args[1]) : 1L;
+        int hilos = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        String nombrePolitica = args.length > 3 ? args[3] : "persecucion";
+        PoliticaProta politica = switch (nombrePolitica) {
+            case "aleatoria" -> new PoliticaAleatoria();
+            case "anticipacion" -> new PoliticaAnticipacion(8, 4);
+            default -> new PoliticaPersecucion();
+        };
+        int[] reparto = null;
+        if (args.length > 4 && !args[4].equals("aleatorio")) {
+            String[] p = args[4].split(",");
+            reparto = new int[]{Integer.parseInt(p[0]), Integer.parseInt(p[1]),
+                                Integer.parseInt(p[2]), Integer.parseInt(p[3])};
+        }
+
+        SimuladorBalance simulador = new SimuladorBalance(partidas, semilla, politica, reparto);
+        ForkJoinPool pool = new ForkJoinPool(hilos);
+        try {
+            for (int n = 0; n < NIVELES.length; n++) {
+                PlantillaNivel nivel = leerNivel(NIVELES[n][0], NIVELES[n][1]);
+                long inicio = System.nanoTime();
+                EstadisticasNivel est = simulador.simularNivel(nivel, n, pool);
+                double segundos = (System.nanoTime() - inicio) / 1e9;
+                imprimir(NIVELES[n][0], NIVELES[n][1], est, segundos);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Muestra por consola el informe de un nivel.
+     * @param mapa Ruta del mapa.
+     * @param enemigos Ruta del fichero de enemigos.
+     * @param est Estadísticas del nivel.
+     * @param segundos Tiempo empleado en la simulación.
+     */
+    private static void imprimir(String mapa, String enemigos, EstadisticasNivel est, double segundos) {
+        System.out.printf("Nivel %s + %s%n", mapa, enemigos);
+        System.out.printf("  partidas: %d  victorias: %.2f%%  sin terminar: %d  (%.0f partidas/s)%n",
+            est.getPartidas(), est.getTasaVictoria() * 100, est.getAbandonadas(), est.getPartidas() / segundos);
+        System.out.printf("  turnos hasta ganar: media %.2f  p50 %d  p90 %d  p99 %d%n",
+            est.getMediaTurnosVictoria(), est.percentilTurnosVictoria(0.5),
+            est.percentilTurnosVictoria(0.9), est.percentilTurnosVictoria(0.99));
+        System.out.printf("  daño recibido: media %.2f  p50 %d  p90 %d  p99 %d%n",
+            est.getMediaDanio(), est.percentilDanio(0.5), est.percentilDanio(0.9), est.percentilDanio(0.99));
+    }
+}
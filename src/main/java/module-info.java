@@ -2,6 +2,8 @@ module com.dungeonmaze {
     requires javafx.controls;
     requires javafx.fxml;
     requires javafx.graphics;
+    requires jdk.jfr;
+    requires jdk.management;
 
     opens com.mazmorron.controlador to javafx.fxml;
 